@@ -3,6 +3,7 @@ package constraints;
 import java.util.ArrayList;
 
 import vrp.AccumulatedWeightNodesVR;
+import vrp.Constants;
 import vrp.IConstraintVR;
 import vrp.VRManager;
 import vrp.VarRoutesVR;
@@ -12,6 +13,8 @@ public class ContainerCapacityConstraint implements IConstraintVR {
 	private VarRoutesVR XR;
 	private AccumulatedWeightNodesVR accContainerInvr;
 	private int violations;
+	// violations of each route, violations is their sum
+	private int[] routeViolations;
 	
 	public ContainerCapacityConstraint(VarRoutesVR XR, AccumulatedWeightNodesVR accContainerInvr){
 		this.XR = XR;
@@ -29,207 +32,285 @@ public class ContainerCapacityConstraint implements IConstraintVR {
 	public void initPropagation() {
 		// TODO Auto-generated method stub
 		violations = 0;
+		routeViolations = new int[XR.getNbRoutes()+1];
+		for(int k = 1; k <= XR.getNbRoutes(); k++)
+			update(k);
+	}
+	
+	// recompute the violations of route k, the route is walked only if its max accumulated weight exceeds 2
+	private void update(int k){
+		int vio = 0;
+		Point t = XR.getTerminatingPointOfRoute(k);
+		if(accContainerInvr.getMaxSumWeights(k, 0, XR.index(t) - 1) > 2){
+			for(Point p = XR.getStartingPointOfRoute(k); p != t; p = XR.next(p))
+				vio += excess(accContainerInvr.getSumWeights(p));
+		}
+		setRouteViolations(k, vio);
+	}
+	
+	public void setRouteViolations(int k, int vio){
+		violations += vio - routeViolations[k];
+		routeViolations[k] = vio;
+	}
+	
+	public static int excess(double w){
+		int wY = (int)w;
+		return wY > 2 ? wY - 2 : 0;
+	}
+	
+	private void updateOldRoute(Point x){
+		int k = XR.oldRoute(x);
+		if(k != Constants.NULL_POINT)
+			update(k);
 	}
 
 	@Override
 	public void propagateTwoOptMoveOneRoute(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateOnePointMove(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoPointsMove(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove1(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove2(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove3(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove4(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove5(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove6(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove7(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove8(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateOrOptMove1(Point x1, Point x2, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x1);
+		updateOldRoute(x2);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateOrOptMove2(Point x1, Point x2, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x1);
+		updateOldRoute(x2);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateThreeOptMove1(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove2(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove3(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove4(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove5(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove6(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove7(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove8(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateCrossExchangeMove(Point x1, Point y1, Point x2,
 			Point y2) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x1);
+		updateOldRoute(y1);
+		updateOldRoute(x2);
+		updateOldRoute(y2);
 	}
 
 	@Override
 	public void propagateTwoPointsMove(Point x1, Point x2, Point y1, Point y2) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x1);
+		updateOldRoute(x2);
+		updateOldRoute(y1);
+		updateOldRoute(y2);
 	}
 
 	@Override
 	public void propagateThreePointsMove(Point x1, Point x2, Point x3,
 			Point y1, Point y2, Point y3) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x1);
+		updateOldRoute(x2);
+		updateOldRoute(x3);
+		updateOldRoute(y1);
+		updateOldRoute(y2);
+		updateOldRoute(y3);
 	}
 
 	@Override
 	public void propagateFourPointsMove(Point x1, Point x2, Point x3, Point x4,
 			Point y1, Point y2, Point y3, Point y4) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x1);
+		updateOldRoute(x2);
+		updateOldRoute(x3);
+		updateOldRoute(x4);
+		updateOldRoute(y1);
+		updateOldRoute(y2);
+		updateOldRoute(y3);
+		updateOldRoute(y4);
 	}
 
 	@Override
 	public void propagateKPointsMove(ArrayList<Point> x, ArrayList<Point> y) {
 		// TODO Auto-generated method stub
-		
+		for(Point p : x)
+			updateOldRoute(p);
+		for(Point p : y)
+			updateOldRoute(p);
 	}
 
 	@Override
 	public void propagateAddOnePoint(Point x, Point y) {
 		// TODO Auto-generated method stub
-		violations = 0;
-		int r = XR.route(y);
-		for(Point p = XR.getStartingPointOfRoute(r); p != XR.getTerminatingPointOfRoute(r); p = XR.next(p)){
-			int wY = (int)(accContainerInvr.getSumWeights(p));
-			if(wY > 2)
-				violations += wY - 2;
-		}
+		update(XR.route(y));
 	}
 
 	@Override
 	public void propagateRemoveOnePoint(Point x) {
 		// TODO Auto-generated method stub
-		violations = 0;
+		update(XR.oldRoute(x));
 	}
 
 	@Override
 	public void propagateAddTwoPoints(Point x1, Point y1, Point x2, Point y2) {
 		// TODO Auto-generated method stub
-		violations = 0;
-		int r = XR.route(y1);
-		for(Point p = XR.getStartingPointOfRoute(r); p != XR.getTerminatingPointOfRoute(r); p = XR.next(p)){
-			int wY = (int)(accContainerInvr.getSumWeights(p));
-			if(wY > 2)
-				violations += wY - 2;
-		}
+		update(XR.route(y1));
 	}
 
 	@Override
 	public void propagateRemoveTwoPoints(Point x1, Point x2) {
 		// TODO Auto-generated method stub
-		violations = 0;
+		update(XR.oldRoute(x1));
 	}
 
 	@Override
 	public void propagateAddRemovePoints(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
+	}
+
+	@Override
+	public void propagateRoutes(ArrayList<Integer> r, ArrayList<Point> removed) {
+		for(int k : r)
+			update(k);
 	}
 
 	@Override
@@ -241,6 +322,7 @@ public class ContainerCapacityConstraint implements IConstraintVR {
 	@Override
 	public int violations() {
 		// TODO Auto-generated method stub
+		XR.getVRManager().flush();
 		return violations;
 	}
 
@@ -281,9 +363,41 @@ public class ContainerCapacityConstraint implements IConstraintVR {
 	}
 
 	@Override
+	// the route of x becomes its points up to x followed by the points after y, and conversely,
+	// the sums of the moved points are shifted by the difference of the sums at x and y
 	public int evaluateTwoOptMove5(Point x, Point y) {
 		// TODO Auto-generated method stub
-		return 0;
+		XR.getVRManager().flush();
+		int kx = XR.route(x);
+		int ky = XR.route(y);
+		double d = accContainerInvr.getSumWeights(x) - accContainerInvr.getSumWeights(y);
+		int vio = prefixViolations(kx, x) + suffixViolations(ky, XR.next(y), d)
+				+ prefixViolations(ky, y) + suffixViolations(kx, XR.next(x), -d);
+		return vio - routeViolations[kx] - routeViolations[ky];
+	}
+	
+	// violations of the points of route k up to x, walked only if the prefix may be violated
+	private int prefixViolations(int k, Point x){
+		if(accContainerInvr.getMaxSumWeightsTo(k, XR.index(x)) <= 2)
+			return 0;
+		int vio = 0;
+		for(Point p = XR.getStartingPointOfRoute(k); ; p = XR.next(p)){
+			vio += excess(accContainerInvr.getSumWeights(p));
+			if(p == x)
+				return vio;
+		}
+	}
+	
+	// violations of the points of route k from v to the terminating point (excluded) once their sums
+	// are shifted by d, walked only if the suffix may be violated
+	private int suffixViolations(int k, Point v, double d){
+		Point t = XR.getTerminatingPointOfRoute(k);
+		if(v == t || accContainerInvr.getMaxSumWeightsFrom(k, XR.index(v)) + d <= 2)
+			return 0;
+		int vio = 0;
+		for(Point p = v; p != t; p = XR.next(p))
+			vio += excess(accContainerInvr.getSumWeights(p) + d);
+		return vio;
 	}
 
 	@Override
@@ -398,17 +512,12 @@ public class ContainerCapacityConstraint implements IConstraintVR {
 
 	@Override
 	public int evaluateAddOnePoint(Point x, Point y) {
-		// TODO Auto-generated method stub
-		int vio = 0;
-
-		for(Point p = y; p != XR.getTerminatingPointOfRoute(XR.route(y)); p = XR.next(p)){
-			int wY = (int)(accContainerInvr.getSumWeights(p) 
-					+ accContainerInvr.getWeights(x));
-			if(wY > 2)
-				vio += wY - 2;
-		}
-		
-		return vio;
+		XR.getVRManager().flush();
+		ArrayList<Point> X = new ArrayList<Point>();
+		ArrayList<Point> Y = new ArrayList<Point>();
+		X.add(x);
+		Y.add(y);
+		return evaluateAddPoints(X, Y);
 	}
 
 	@Override
@@ -419,22 +528,53 @@ public class ContainerCapacityConstraint implements IConstraintVR {
 
 	@Override
 	public int evaluateAddTwoPoints(Point x1, Point y1, Point x2, Point y2) {
-		// TODO Auto-generated method stub
-		int vio = 0;
-		for(Point p = y1; p != XR.next(y2); p = XR.next(p)){
-			int wY1 = (int)(accContainerInvr.getSumWeights(p) + accContainerInvr.getWeights(x1));
-			if(wY1 > 2)
-				vio += wY1 - 2;
+		XR.getVRManager().flush();
+		ArrayList<Point> X = new ArrayList<Point>();
+		ArrayList<Point> Y = new ArrayList<Point>();
+		X.add(x1);
+		Y.add(y1);
+		X.add(x2);
+		Y.add(y1 == y2 ? x1 : y2);
+		return evaluateAddPoints(X, Y);
+	}
+
+	@Override
+	public int evaluateAddPoints(ArrayList<Point> x, ArrayList<Point> y) {
+		XR.getVRManager().flush();
+		// violations of the modified route after the move, minus the current violations: the unchanged
+		// parts of the route between two anchors have their accumulated weights shifted by a same amount d
+		// and are only walked when their max accumulated weight + d may exceed 2
+		Point v = XR.getFirstAnchor(y);
+		int k = XR.route(v);
+		Point t = XR.getTerminatingPointOfRoute(k);
+		int vio = routeViolations[k];
+		double w = accContainerInvr.getSumWeights(v);
+		while(true){
+			Point nv = XR.nextAfterAddPoints(v, x, y);
+			if(nv == t)
+				break;
+			if(XR.route(nv) == Constants.NULL_POINT){
+				w += accContainerInvr.getWeights(nv);
+				vio += excess(w);
+				v = nv;
+				continue;
+			}
+			Point a = XR.getNextAnchor(nv, y);
+			if(a == null)
+				a = XR.prev(t);
+			double d = w + accContainerInvr.getWeights(nv) - accContainerInvr.getSumWeights(nv);
+			if(d != 0 && accContainerInvr.getMaxSumWeights(k, XR.index(nv), XR.index(a)) + Math.max(d, 0) > 2){
+				for(Point p = nv; ; p = XR.next(p)){
+					double s = accContainerInvr.getSumWeights(p);
+					vio += excess(s + d) - excess(s);
+					if(p == a)
+						break;
+				}
+			}
+			w = accContainerInvr.getSumWeights(a) + d;
+			v = a;
 		}
-		for(Point p = y2; p != XR.getTerminatingPointOfRoute(XR.route(y1)); p = XR.next(p)){
-			int wY2 = (int)(accContainerInvr.getSumWeights(p) 
-					+ accContainerInvr.getWeights(x1)
-					+ accContainerInvr.getWeights(x2));
-			if(wY2 > 2)
-				vio += wY2 - 2;
-		}
-		
-		return vio;
+		return vio - violations;
 	}
 
 	@Override
@@ -3,6 +3,7 @@ package constraints;
 import java.util.ArrayList;
 
 import vrp.AccumulatedWeightNodesVR;
+import vrp.Constants;
 import vrp.IConstraintVR;
 import vrp.VRManager;
 import vrp.VarRoutesVR;
@@ -13,6 +14,8 @@ public class ContainerCarriedByTrailerConstraint implements IConstraintVR {
 	private AccumulatedWeightNodesVR accContainerInvr;
 	private AccumulatedWeightNodesVR accMoocInvr;
 	private int violations;
+	// violations of each route, violations is their sum
+	private int[] routeViolations;
 	
 	public ContainerCarriedByTrailerConstraint(VarRoutesVR XR, 
 			AccumulatedWeightNodesVR accContainerInvr,
@@ -33,209 +36,288 @@ public class ContainerCarriedByTrailerConstraint implements IConstraintVR {
 	public void initPropagation() {
 		// TODO Auto-generated method stub
 		violations = 0;
+		routeViolations = new int[XR.getNbRoutes()+1];
+		for(int k = 1; k <= XR.getNbRoutes(); k++)
+			update(k);
+	}
+	
+	// recompute the violations of route k, the route is walked only if some position may carry more
+	// containers than trailers
+	private void update(int k){
+		int vio = 0;
+		Point t = XR.getTerminatingPointOfRoute(k);
+		int last = XR.index(t) - 1;
+		if(accContainerInvr.getMaxSumWeights(k, 0, last) - accMoocInvr.getMinSumWeights(k, 0, last) > 0){
+			for(Point p = XR.getStartingPointOfRoute(k); p != t; p = XR.next(p))
+				vio += excess(accContainerInvr.getSumWeights(p), accMoocInvr.getSumWeights(p));
+		}
+		setRouteViolations(k, vio);
+	}
+	
+	public void setRouteViolations(int k, int vio){
+		violations += vio - routeViolations[k];
+		routeViolations[k] = vio;
+	}
+	
+	public static int excess(double c, double m){
+		int cY1 = (int)c;
+		int mY1 = (int)m;
+		return mY1 < cY1 ? cY1 - mY1 : 0;
+	}
+	
+	private void updateOldRoute(Point x){
+		int k = XR.oldRoute(x);
+		if(k != Constants.NULL_POINT)
+			update(k);
 	}
 
 	@Override
 	public void propagateTwoOptMoveOneRoute(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateOnePointMove(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoPointsMove(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove1(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove2(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove3(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove4(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove5(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove6(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove7(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateTwoOptMove8(Point x, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateOrOptMove1(Point x1, Point x2, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x1);
+		updateOldRoute(x2);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateOrOptMove2(Point x1, Point x2, Point y) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x1);
+		updateOldRoute(x2);
+		updateOldRoute(y);
 	}
 
 	@Override
 	public void propagateThreeOptMove1(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove2(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove3(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove4(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove5(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove6(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove7(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateThreeOptMove8(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
 	}
 
 	@Override
 	public void propagateCrossExchangeMove(Point x1, Point y1, Point x2,
 			Point y2) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x1);
+		updateOldRoute(y1);
+		updateOldRoute(x2);
+		updateOldRoute(y2);
 	}
 
 	@Override
 	public void propagateTwoPointsMove(Point x1, Point x2, Point y1, Point y2) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x1);
+		updateOldRoute(x2);
+		updateOldRoute(y1);
+		updateOldRoute(y2);
 	}
 
 	@Override
 	public void propagateThreePointsMove(Point x1, Point x2, Point x3,
 			Point y1, Point y2, Point y3) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x1);
+		updateOldRoute(x2);
+		updateOldRoute(x3);
+		updateOldRoute(y1);
+		updateOldRoute(y2);
+		updateOldRoute(y3);
 	}
 
 	@Override
 	public void propagateFourPointsMove(Point x1, Point x2, Point x3, Point x4,
 			Point y1, Point y2, Point y3, Point y4) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x1);
+		updateOldRoute(x2);
+		updateOldRoute(x3);
+		updateOldRoute(x4);
+		updateOldRoute(y1);
+		updateOldRoute(y2);
+		updateOldRoute(y3);
+		updateOldRoute(y4);
 	}
 
 	@Override
 	public void propagateKPointsMove(ArrayList<Point> x, ArrayList<Point> y) {
 		// TODO Auto-generated method stub
-		
+		for(Point p : x)
+			updateOldRoute(p);
+		for(Point p : y)
+			updateOldRoute(p);
 	}
 
 	@Override
 	public void propagateAddOnePoint(Point x, Point y) {
 		// TODO Auto-generated method stub
-		violations = 0;
-		int r = XR.route(y);
-		for(Point p = XR.getStartingPointOfRoute(r); p != XR.getTerminatingPointOfRoute(r); p = XR.next(p)){
-			int cY1 = (int)(accContainerInvr.getSumWeights(p));
-			int mY1 = (int)(accMoocInvr.getSumWeights(p));
-			if(mY1 < cY1)
-				violations += cY1 - mY1;
-		}
+		update(XR.route(y));
 	}
 
 	@Override
 	public void propagateRemoveOnePoint(Point x) {
 		// TODO Auto-generated method stub
-		violations = 0;
+		update(XR.oldRoute(x));
 	}
 
 	@Override
 	public void propagateAddTwoPoints(Point x1, Point y1, Point x2, Point y2) {
 		// TODO Auto-generated method stub
-		violations = 0;
-		int r = XR.route(y1);
-		for(Point p = XR.getStartingPointOfRoute(r); p != XR.getTerminatingPointOfRoute(r); p = XR.next(p)){
-			int cY1 = (int)(accContainerInvr.getSumWeights(p));
-			int mY1 = (int)(accMoocInvr.getSumWeights(p));
-			if(mY1 < cY1)
-				violations += cY1 - mY1;
-		}
+		update(XR.route(y1));
 	}
 
 	@Override
 	public void propagateRemoveTwoPoints(Point x1, Point x2) {
 		// TODO Auto-generated method stub
-		violations = 0;
+		update(XR.oldRoute(x1));
 	}
 
 	@Override
 	public void propagateAddRemovePoints(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
-		
+		updateOldRoute(x);
+		updateOldRoute(y);
+		updateOldRoute(z);
+	}
+
+	@Override
+	public void propagateRoutes(ArrayList<Integer> r, ArrayList<Point> removed) {
+		for(int k : r)
+			update(k);
 	}
 
 	@Override
@@ -247,6 +329,7 @@ public class ContainerCarriedByTrailerConstraint implements IConstraintVR {
 	@Override
 	public int violations() {
 		// TODO Auto-generated method stub
+		XR.getVRManager().flush();
 		return violations;
 	}
 
@@ -287,9 +370,46 @@ public class ContainerCarriedByTrailerConstraint implements IConstraintVR {
 	}
 
 	@Override
+	// the route of x becomes its points up to x followed by the points after y, and conversely,
+	// the sums of the moved points are shifted by the difference of the sums at x and y
 	public int evaluateTwoOptMove5(Point x, Point y) {
 		// TODO Auto-generated method stub
-		return 0;
+		XR.getVRManager().flush();
+		int kx = XR.route(x);
+		int ky = XR.route(y);
+		double dc = accContainerInvr.getSumWeights(x) - accContainerInvr.getSumWeights(y);
+		double dm = accMoocInvr.getSumWeights(x) - accMoocInvr.getSumWeights(y);
+		int vio = prefixViolations(kx, x) + suffixViolations(ky, XR.next(y), dc, dm)
+				+ prefixViolations(ky, y) + suffixViolations(kx, XR.next(x), -dc, -dm);
+		return vio - routeViolations[kx] - routeViolations[ky];
+	}
+	
+	// violations of the points of route k up to x, walked only if the prefix may be violated
+	private int prefixViolations(int k, Point x){
+		int i = XR.index(x);
+		if(accContainerInvr.getMaxSumWeightsTo(k, i) - accMoocInvr.getMinSumWeightsTo(k, i) <= 0)
+			return 0;
+		int vio = 0;
+		for(Point p = XR.getStartingPointOfRoute(k); ; p = XR.next(p)){
+			vio += excess(accContainerInvr.getSumWeights(p), accMoocInvr.getSumWeights(p));
+			if(p == x)
+				return vio;
+		}
+	}
+	
+	// violations of the points of route k from v to the terminating point (excluded) once their sums
+	// are shifted by dc and dm, walked only if the suffix may be violated
+	private int suffixViolations(int k, Point v, double dc, double dm){
+		Point t = XR.getTerminatingPointOfRoute(k);
+		if(v == t)
+			return 0;
+		int i = XR.index(v);
+		if(accContainerInvr.getMaxSumWeightsFrom(k, i) + dc - accMoocInvr.getMinSumWeightsFrom(k, i) - dm <= 0)
+			return 0;
+		int vio = 0;
+		for(Point p = v; p != t; p = XR.next(p))
+			vio += excess(accContainerInvr.getSumWeights(p) + dc, accMoocInvr.getSumWeights(p) + dm);
+		return vio;
 	}
 
 	@Override
@@ -404,16 +524,12 @@ public class ContainerCarriedByTrailerConstraint implements IConstraintVR {
 
 	@Override
 	public int evaluateAddOnePoint(Point x, Point y) {
-		// TODO Auto-generated method stub
-		int vio = 0;
-
-		for(Point p = y; p != XR.getTerminatingPointOfRoute(XR.route(y)); p = XR.next(p)){
-			int cY1 = (int)(accContainerInvr.getSumWeights(p) + accContainerInvr.getWeights(x));
-			int mY1 = (int)(accMoocInvr.getSumWeights(p) + accMoocInvr.getWeights(x));
-			if(mY1 < cY1)
-				vio += cY1 - mY1;
-		}
-		return vio;
+		XR.getVRManager().flush();
+		ArrayList<Point> X = new ArrayList<Point>();
+		ArrayList<Point> Y = new ArrayList<Point>();
+		X.add(x);
+		Y.add(y);
+		return evaluateAddPoints(X, Y);
 	}
 
 	@Override
@@ -424,27 +540,61 @@ public class ContainerCarriedByTrailerConstraint implements IConstraintVR {
 
 	@Override
 	public int evaluateAddTwoPoints(Point x1, Point y1, Point x2, Point y2) {
-		// TODO Auto-generated method stub
-		int vio = 0;
-
-//		for(Point p = y1; p != XR.next(y2); p = XR.next(p)){
-//			int cY1 = (int)(accContainerInvr.getSumWeights(p) + accContainerInvr.getWeights(x1));
-//			int mY1 = (int)(accMoocInvr.getSumWeights(p) + accMoocInvr.getWeights(x1));
-//			if(mY1 < cY1)
-//				vio += cY1 - mY1;
-//		}
-//		for(Point p = y2; p != XR.getTerminatingPointOfRoute(XR.route(y1)); p = XR.next(p)){
-//			int cY2 = (int)(accContainerInvr.getSumWeights(p) 
-//					+ accContainerInvr.getWeights(x1)
-//					+ accContainerInvr.getWeights(x2));
-//			int mY2 = (int)(accMoocInvr.getSumWeights(p) 
-//					+ accMoocInvr.getWeights(x1)
-//					+ accMoocInvr.getWeights(x2));
-//			if(mY2 < cY2)
-//				vio += cY2 - mY2;
-//		}
-		
-		return vio;
+		XR.getVRManager().flush();
+		ArrayList<Point> X = new ArrayList<Point>();
+		ArrayList<Point> Y = new ArrayList<Point>();
+		X.add(x1);
+		Y.add(y1);
+		X.add(x2);
+		Y.add(y1 == y2 ? x1 : y2);
+		return evaluateAddPoints(X, Y);
+	}
+
+	@Override
+	public int evaluateAddPoints(ArrayList<Point> x, ArrayList<Point> y) {
+		XR.getVRManager().flush();
+		// violations of the modified route after the move, minus the current violations: the unchanged
+		// parts of the route between two anchors have their accumulated weights shifted by same amounts
+		// dc and dm and are only walked when they may carry more containers than trailers
+		Point v = XR.getFirstAnchor(y);
+		int k = XR.route(v);
+		Point t = XR.getTerminatingPointOfRoute(k);
+		int vio = routeViolations[k];
+		double c = accContainerInvr.getSumWeights(v);
+		double m = accMoocInvr.getSumWeights(v);
+		while(true){
+			Point nv = XR.nextAfterAddPoints(v, x, y);
+			if(nv == t)
+				break;
+			if(XR.route(nv) == Constants.NULL_POINT){
+				c += accContainerInvr.getWeights(nv);
+				m += accMoocInvr.getWeights(nv);
+				vio += excess(c, m);
+				v = nv;
+				continue;
+			}
+			Point a = XR.getNextAnchor(nv, y);
+			if(a == null)
+				a = XR.prev(t);
+			double dc = c + accContainerInvr.getWeights(nv) - accContainerInvr.getSumWeights(nv);
+			double dm = m + accMoocInvr.getWeights(nv) - accMoocInvr.getSumWeights(nv);
+			int from = XR.index(nv);
+			int to = XR.index(a);
+			if(dc != dm && accContainerInvr.getMaxSumWeights(k, from, to) - accMoocInvr.getMinSumWeights(k, from, to)
+					+ Math.max(dc - dm, 0) > 0){
+				for(Point p = nv; ; p = XR.next(p)){
+					double sc = accContainerInvr.getSumWeights(p);
+					double sm = accMoocInvr.getSumWeights(p);
+					vio += excess(sc + dc, sm + dm) - excess(sc, sm);
+					if(p == a)
+						break;
+				}
+			}
+			c = accContainerInvr.getSumWeights(a) + dc;
+			m = accMoocInvr.getSumWeights(a) + dm;
+			v = a;
+		}
+		return vio - violations;
 	}
 
 	@Override
@@ -1,20 +1,23 @@
 package models.output;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 
-import vrp.VRManager;
+import vrp.ValueRoutesVR;
 import vrp.VarRoutesVR;
 import vrp.entities.Point;
 
+// snapshot of a solution of the search: the routes are kept as the next/prev/route arrays of XR
 public class TruckContainerSolution {
-    private ArrayList<ArrayList<Point>> _route;
+	private VarRoutesVR _XR;
+	private ValueRoutesVR _routes;
 	private ArrayList<Point> _rejectPickupPoints;
 	private ArrayList<Point> _rejectDeliveryPoints;
-	private HashMap<Integer, Integer> _group2marked;
-	private HashMap<Point, Integer> _point2Group;
+	private BitSet _markedGroups;
+	// group of each point ordinal, shared with the solver (not modified by the search)
+	private int[] _point2Group;
 
 	private double _cost;
 	private int _nbTrucks;
@@ -22,77 +25,48 @@ public class TruckContainerSolution {
 	
 	public TruckContainerSolution(VarRoutesVR XR, ArrayList<Point> rejectPickupPoints, 
 			ArrayList<Point> rejectDeliveryPoints, double cost, int nbTrucks, int nbReject,
-			HashMap<Point, Integer> point2Group, HashMap<Integer, Integer> group2marked){
-		this._rejectPickupPoints = new ArrayList<Point>();
-		this._rejectDeliveryPoints = new ArrayList<Point>();
-		this._group2marked = new HashMap<Integer, Integer>();
-		this._point2Group = new HashMap<Point, Integer>();
-		
-		for(int i=0; i<rejectPickupPoints.size(); i++){
-			_rejectPickupPoints.add(rejectPickupPoints.get(i));
-		}
-		
-		for(int i=0; i<rejectDeliveryPoints.size(); i++){
-			_rejectDeliveryPoints.add(rejectDeliveryPoints.get(i));
-		}
-		
-		for(int key : group2marked.keySet()){
-			_group2marked.put(key, group2marked.get(key));
-		}
-		
-		for(Point key : point2Group.keySet()){
-			_point2Group.put(key, point2Group.get(key));
-		}
-		
-		_route = new ArrayList<ArrayList<Point>>();
-		
-		int K = XR.getNbRoutes();
-		
-		for(int k=1; k<=K; k++){
-			ArrayList<Point> route_k = new ArrayList<Point>();
-			Point x = XR.getStartingPointOfRoute(k);
-			for(; x != XR.getTerminatingPointOfRoute(k); x = XR.next(x)){
-				route_k.add(x);
-			}
-			route_k.add(x);
-			_route.add(route_k);
-		}
+			int[] point2Group, BitSet markedGroups){
+		this._rejectPickupPoints = new ArrayList<Point>(rejectPickupPoints);
+		this._rejectDeliveryPoints = new ArrayList<Point>(rejectDeliveryPoints);
+		this._markedGroups = (BitSet)markedGroups.clone();
+		this._point2Group = point2Group;
+		this._XR = XR;
+		this._routes = new ValueRoutesVR(XR);
 		
 		this._cost = cost;
 		this._nbTrucks = nbTrucks;
 		this._nbReject = nbReject;
 	}
 	
+	// restore the routes in XR, the invariants are recomputed once
 	public void copy2XR(VarRoutesVR XR){
-		int K = XR.getNbRoutes();
-		VRManager mgr = XR.getVRManager();
-		mgr.performRemoveAllClientPoints();
-		
-		for(int k=1; k<=K; k++){
-			ArrayList<Point> route_k = _route.get(k-1);
-			for(int i=0; i<route_k.size()-2; i++){
-				mgr.performAddOnePoint(route_k.get(i+1),route_k.get(i));
-			}
-		}
+		XR.setValue(_routes);
 	}
 
+	// points of each route, from its starting point to its terminating point
 	public ArrayList<ArrayList<Point>> get_route() {
-		return _route;
-	}
-
-	public void set_route(ArrayList<ArrayList<Point>> _route) {
-		this._route = _route;
+		ArrayList<ArrayList<Point>> route = new ArrayList<ArrayList<Point>>();
+		for(int k=1; k<=_XR.getNbRoutes(); k++){
+			ArrayList<Point> route_k = new ArrayList<Point>();
+			Point x = _XR.getStartingPointOfRoute(k);
+			for(; x != _XR.getTerminatingPointOfRoute(k); x = _routes.next(x)){
+				route_k.add(x);
+			}
+			route_k.add(x);
+			route.add(route_k);
+		}
+		return route;
 	}
 
 	public ArrayList<Point> get_rejectPickupPoints() {
 		return _rejectPickupPoints;
 	}
 
-	public HashMap<Point, Integer> get_point2Group() {
+	public int[] get_point2Group() {
 		return _point2Group;
 	}
 
-	public void set_point2Group(HashMap<Point, Integer> _point2Group) {
+	public void set_point2Group(int[] _point2Group) {
 		this._point2Group = _point2Group;
 	}
 
@@ -132,21 +106,21 @@ public class TruckContainerSolution {
 		this._nbReject = _nbReject;
 	}
 
-	public HashMap<Integer, Integer> get_group2marked() {
-		return _group2marked;
+	public BitSet get_markedGroups() {
+		return _markedGroups;
 	}
 
-	public void set_group2marked(HashMap<Integer, Integer> _group2marked) {
-		this._group2marked = _group2marked;
+	public void set_markedGroups(BitSet _markedGroups) {
+		this._markedGroups = _markedGroups;
 	}
 	
 	public int getNbRejectedRequests(){
 		Set<Integer> grs = new HashSet<Integer>();
 		for(int i = 0; i < _rejectPickupPoints.size(); i++){
 			Point pickup = _rejectPickupPoints.get(i);
-			int groupId = _point2Group.get(pickup);
+			int groupId = _point2Group[pickup.getIndex()];
 			
-			if(_group2marked.get(groupId) == 1)
+			if(_markedGroups.get(groupId))
 				continue;
 			grs.add(groupId);
 		}
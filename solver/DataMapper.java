@@ -22,7 +22,9 @@ public class DataMapper {
     public String[] locationCodes;
     public HashMap<String, Integer> mLocationCode2Index;
     public double[][] distance;
-    public double[][] travelTime;
+    public int[][] travelTime;
+    // shortest travel times between the locations, computed at their first use
+    public ShortestTravelTimes shortestTravelTimes;
     
     public HashMap<String, Truck> mCode2Truck;
     public HashMap<String, Mooc> mCode2Mooc;
@@ -64,6 +66,7 @@ public class DataMapper {
             solver.mLocationCode2Index = this.mLocationCode2Index;
             solver.distance = this.distance;
             solver.travelTime = this.travelTime;
+            solver.shortestTravelTimes = this.shortestTravelTimes;
             solver.mCode2Truck = this.mCode2Truck;
             solver.mCode2Mooc = this.mCode2Mooc;
             solver.mCode2Container = this.mCode2Container;
@@ -167,15 +170,16 @@ public class DataMapper {
     private void processDistanceAndTravelTime() {
         int size = locationCodes.length;
         distance = new double[size][size];
-        travelTime = new double[size][size];
+        travelTime = new int[size][size];
         
         for (int i = 0; i < input.getDistance().length; i++) {
             DistanceElement e = input.getDistance()[i];
             int is = mLocationCode2Index.get(e.getSrcCode());
             int id = mLocationCode2Index.get(e.getDestCode());
             distance[is][id] = e.getDistance();
-            travelTime[is][id] = e.getTravelTime();
+            travelTime[is][id] = (int) e.getTravelTime();
         }
+        shortestTravelTimes = new ShortestTravelTimes(travelTime);
     }
     
     private void processDepotContainers() {
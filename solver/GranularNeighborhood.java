@@ -0,0 +1,63 @@
+package solver;
+
+import java.util.BitSet;
+
+import vrp.entities.ArcWeightsManager;
+import vrp.entities.Point;
+
+/**
+ * Granular neighborhood of the insertion operators: inserting a point v between p and its successor n
+ * is only considered when one of the arcs p -> v, v -> n is granular, that is it stays at the location
+ * of its origin or leads to one of the k nearest other locations of its origin (by travel time, by
+ * index in case of ties), and its end can still be served in time after its origin.
+ * The neighbors are selected from the travel times when the neighborhood is built, only for a
+ * search which uses it.
+ */
+public class GranularNeighborhood {
+	private final ArcWeightsManager awm;
+	private final int[] earliestAllowedArrivalTime;
+	private final int[] serviceDuration;
+	private final int[] lastestAllowedArrivalTime;
+	// near[a].get(b) iff location b is a or one of the k nearest other locations of location a
+	private final BitSet[] near;
+
+	public GranularNeighborhood(TruckContainerSolver solver, int k) {
+		this.awm = solver.awm;
+		this.earliestAllowedArrivalTime = solver.earliestAllowedArrivalTime;
+		this.serviceDuration = solver.serviceDuration;
+		this.lastestAllowedArrivalTime = solver.lastestAllowedArrivalTime;
+		int L = solver.travelTime.length;
+		near = new BitSet[L];
+		int[] nearest = new int[Math.min(k, L)];
+		for (int a = 0; a < L; a++) {
+			int[] tt = solver.travelTime[a];
+			// nearest[0..n-1] are the nearest other locations of a seen so far, by increasing travel time
+			int n = 0;
+			for (int b = 0; b < L; b++) {
+				if (b == a || (n == nearest.length && (n == 0 || tt[b] >= tt[nearest[n - 1]])))
+					continue;
+				int j = n < nearest.length ? n++ : n - 1;
+				for (; j > 0 && tt[nearest[j - 1]] > tt[b]; j--)
+					nearest[j] = nearest[j - 1];
+				nearest[j] = b;
+			}
+			near[a] = new BitSet(L);
+			near[a].set(a);
+			for (int j = 0; j < n; j++)
+				near[a].set(nearest[j]);
+		}
+	}
+
+	public boolean isGranularArc(Point a, Point b) {
+		if (!near[awm.getLocation(a)].get(awm.getLocation(b)))
+			return false;
+		int i = a.getIndex();
+		return earliestAllowedArrivalTime[i] + serviceDuration[i] + awm.getWeight(a, b)
+				<= lastestAllowedArrivalTime[b.getIndex()];
+	}
+
+	// inserting v right-after p, n being the successor of p
+	public boolean isCandidate(Point v, Point p, Point n) {
+		return isGranularArc(p, v) || isGranularArc(v, n);
+	}
+}
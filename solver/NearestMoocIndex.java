@@ -0,0 +1,90 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import vrp.Constants;
+import vrp.entities.ArcWeightsManager;
+import vrp.entities.Point;
+
+/**
+ * Start points of the trailers by increasing travel time from each location. The free trailer
+ * minimizing the detour p -> trailer -> v is found by scanning them in this order from the location of p,
+ * until the travel time to the next trailer plus the smallest travel time from a trailer to v
+ * cannot improve the best detour found.
+ */
+public class NearestMoocIndex {
+	private final TruckContainerSolver solver;
+	private final ArcWeightsManager awm;
+	private final int[][] weights;
+	// moocLocation[i] is the location of solver.startMoocPoints.get(i)
+	private final int[] moocLocation;
+	// order[a] lists the positions in solver.startMoocPoints by increasing travel time from location a,
+	// by position in case of ties
+	private final int[][] order;
+	// minFromMooc[b] is the smallest travel time from the location of a trailer to location b
+	private final int[] minFromMooc;
+
+	public NearestMoocIndex(TruckContainerSolver solver) {
+		this.solver = solver;
+		this.awm = solver.awm;
+		this.weights = awm.getWeight();
+		int M = solver.startMoocPoints.size();
+		int L = weights.length;
+		moocLocation = new int[M];
+		for (int i = 0; i < M; i++)
+			moocLocation[i] = awm.getLocation(solver.startMoocPoints.get(i));
+
+		order = new int[L][];
+		minFromMooc = new int[L];
+		Integer[] o = new Integer[M];
+		for (int a = 0; a < L; a++) {
+			final int[] wa = weights[a];
+			for (int i = 0; i < M; i++)
+				o[i] = i;
+			Arrays.sort(o, new Comparator<Integer>() {
+				public int compare(Integer i, Integer j) {
+					int wi = wa[moocLocation[i]];
+					int wj = wa[moocLocation[j]];
+					return wi != wj ? Integer.compare(wi, wj) : Integer.compare(i, j);
+				}
+			});
+			order[a] = new int[M];
+			for (int i = 0; i < M; i++)
+				order[a][i] = o[i];
+
+			minFromMooc[a] = Integer.MAX_VALUE;
+			for (int i = 0; i < M; i++)
+				minFromMooc[a] = Math.min(minFromMooc[a], weights[moocLocation[i]][a]);
+		}
+	}
+
+	/**
+	 * The start point of the free trailer (its group is not marked, it is not on a route and not in
+	 * excluded) minimizing the travel time from p to it and from it to v, the first one in
+	 * solver.startMoocPoints in case of ties, null if there is no free trailer.
+	 */
+	public Point getBestStartMooc(Point p, Point v, ArrayList<Point> excluded) {
+		int[] wp = weights[awm.getLocation(p)];
+		int lv = awm.getLocation(v);
+		int[] o = order[awm.getLocation(p)];
+		int best = -1;
+		double min_d = Double.MAX_VALUE;
+		for (int k = 0; k < o.length; k++) {
+			int i = o[k];
+			if ((double) wp[moocLocation[i]] + minFromMooc[lv] > min_d)
+				break;
+			Point stMooc = solver.startMoocPoints.get(i);
+			if (solver.markedGroups.get(solver.getGroup(stMooc)) || solver.XR.route(stMooc) != Constants.NULL_POINT
+					|| (excluded != null && excluded.contains(stMooc)))
+				continue;
+			double d = (double) wp[moocLocation[i]] + weights[moocLocation[i]][lv];
+			if (d < min_d || (d == min_d && i < best)) {
+				min_d = d;
+				best = i;
+			}
+		}
+		return best < 0 ? null : solver.startMoocPoints.get(best);
+	}
+}
@@ -0,0 +1,41 @@
+package solver;
+
+// kind of a point of the model, stored as a byte (ordinal) per point ordinal in
+// TruckContainerSolver.pointKind
+public enum PointKind {
+	START_TRUCK(TruckContainerSolver.START_TRUCK),
+	END_TRUCK(TruckContainerSolver.END_TRUCK),
+	START_MOOC(TruckContainerSolver.START_MOOC),
+	END_MOOC(TruckContainerSolver.END_MOOC),
+	START_CONT(TruckContainerSolver.START_CONT),
+	END_CONT(TruckContainerSolver.END_CONT),
+	PORT_PICKUP_EMPTYCONT(TruckContainerSolver.PORT_PICKUP_EMPTYCONT),
+	PORT_PICKUP_FULLCONT(TruckContainerSolver.PORT_PICKUP_FULLCONT),
+	PORT_DELIVERY_EMPTYCONT(TruckContainerSolver.PORT_DELIVERY_EMPTYCONT),
+	PORT_DELIVERY_FULLCONT(TruckContainerSolver.PORT_DELIVERY_FULLCONT),
+	WH_PICKUP_EMPTYCONT(TruckContainerSolver.WH_PICKUP_EMPTYCONT),
+	WH_PICKUP_FULLCONT(TruckContainerSolver.WH_PICKUP_FULLCONT),
+	WH_DELIVERY_EMPTYCONT(TruckContainerSolver.WH_DELIVERY_EMPTYCONT),
+	WH_DELIVERY_FULLCONT(TruckContainerSolver.WH_DELIVERY_FULLCONT);
+
+	private static final PointKind[] KINDS = values();
+
+	// type string written in the output routes
+	private final String code;
+
+	PointKind(String code){
+		this.code = code;
+	}
+	public String getCode(){
+		return code;
+	}
+	public byte toByte(){
+		return (byte)ordinal();
+	}
+	public static PointKind fromByte(byte b){
+		return KINDS[b];
+	}
+	public boolean isMooc(){
+		return this == START_MOOC || this == END_MOOC;
+	}
+}
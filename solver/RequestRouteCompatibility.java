@@ -0,0 +1,53 @@
+package solver;
+
+import java.util.BitSet;
+
+import vrp.entities.ArcWeightsManager;
+import vrp.entities.Point;
+
+/**
+ * Request x route compatibility of the time windows: route r may host the request of a pickup point
+ * only if, leaving the starting point of its truck at the start of the working time, the pickup and
+ * then the delivery point can be reached before their latest arrival times along the shortest paths
+ * of the travel times. Any insertion in the route reaches them later, so that the insertion operators
+ * skip the incompatible routes without scanning them.
+ * The bound only depends on the starting point of the route, whose arrival time is fixed, so that
+ * the index is computed once and holds whatever the route contains.
+ */
+public class RequestRouteCompatibility {
+	// routes[i].get(r) iff route r may host the request whose pickup point has ordinal i
+	private final BitSet[] routes;
+
+	public RequestRouteCompatibility(TruckContainerSolver solver) {
+		ArcWeightsManager awm = solver.awm;
+		int[][] sp = solver.shortestTravelTimes.get();
+		int K = solver.XR.getNbRoutes();
+		routes = new BitSet[solver.XR.getTotalNbPoints()];
+		for (int i = 0; i < solver.pickupPoints.size(); i++) {
+			Point pickup = solver.pickupPoints.get(i);
+			Point delivery = solver.pickup2Delivery.get(pickup);
+			int ip = pickup.getIndex();
+			int id = delivery.getIndex();
+			int lp = awm.getLocation(pickup);
+			int ld = awm.getLocation(delivery);
+			BitSet B = new BitSet(K + 1);
+			for (int r = 1; r <= K; r++) {
+				Point st = solver.XR.getStartingPointOfRoute(r);
+				int is = st.getIndex();
+				double t = solver.earliestAllowedArrivalTime[is] + solver.serviceDuration[is]
+						+ sp[awm.getLocation(st)][lp];
+				if (t > solver.lastestAllowedArrivalTime[ip])
+					continue;
+				t = Math.max(t, solver.earliestAllowedArrivalTime[ip]) + solver.serviceDuration[ip] + sp[lp][ld];
+				if (t > solver.lastestAllowedArrivalTime[id])
+					continue;
+				B.set(r);
+			}
+			routes[ip] = B;
+		}
+	}
+
+	public boolean isCompatible(Point pickup, int r) {
+		return routes[pickup.getIndex()].get(r);
+	}
+}
@@ -0,0 +1,413 @@
+package solver;
+
+import java.util.ArrayList;
+
+import constraints.ContainerCapacityConstraint;
+import constraints.ContainerCarriedByTrailerConstraint;
+import constraints.MoocCapacityConstraint;
+import vrp.AccumulatedWeightNodesVR;
+import vrp.CBLSVR;
+import vrp.Constants;
+import vrp.InvariantVR;
+import vrp.VRManager;
+import vrp.VarRoutesVR;
+import vrp.entities.ArcWeightsManager;
+import vrp.entities.Point;
+import vrp.functions.TotalCostVR;
+import vrp.invariants.EarliestArrivalTimeVR;
+import vrp.constraints.CEarliestArrivalTimeVR;
+
+// propagates the moves into the invariants and constraints of the model in place of them:
+// each route modified by a move is copied into an array of ordinals, then a forward pass computes
+// the arrival times, the accumulated container and trailer weights, the cost and the violations,
+// and a backward pass the forward time slacks and the reverse costs. The evaluations are still
+// done by the individual invariants, on the arrays maintained here
+public class RouteKernelVR implements InvariantVR {
+	private VarRoutesVR XR;
+	private ArcWeightsManager awm;
+	private EarliestArrivalTimeVR eat;
+	private CEarliestArrivalTimeVR cEarliest;
+	private AccumulatedWeightNodesVR accContainerInvr;
+	private AccumulatedWeightNodesVR accMoocInvr;
+	private TotalCostVR cost;
+	private ContainerCapacityConstraint capContCtr;
+	private MoocCapacityConstraint capMoocCtr;
+	private ContainerCarriedByTrailerConstraint contmoocCtr;
+
+	// indexed by point ordinal
+	private int[] earliestAllowedArrivalTime;
+	private int[] serviceDuration;
+	private int[] latestAllowedArrivalTime;
+	private double[] arrivalTime;
+	private double[] waitingTime;
+	private double[] forwardSlack;
+	private double[] sumContainer;
+	private double[] sumMooc;
+	private double[] costRight;
+	private double[] costLeft;
+
+	// seq[0..n) are the ordinals of the points of the route being recomputed
+	private int[] seq;
+	// routes modified by the current move
+	private boolean[] marked;
+	private int[] markedRoutes;
+	private int nbMarked;
+
+	public RouteKernelVR(VarRoutesVR XR, ArcWeightsManager awm, int[] latestAllowedArrivalTime,
+			EarliestArrivalTimeVR eat, CEarliestArrivalTimeVR cEarliest,
+			AccumulatedWeightNodesVR accContainerInvr, AccumulatedWeightNodesVR accMoocInvr, TotalCostVR cost,
+			ContainerCapacityConstraint capContCtr, MoocCapacityConstraint capMoocCtr,
+			ContainerCarriedByTrailerConstraint contmoocCtr) {
+		this.XR = XR;
+		this.awm = awm;
+		this.latestAllowedArrivalTime = latestAllowedArrivalTime;
+		this.eat = eat;
+		this.cEarliest = cEarliest;
+		this.accContainerInvr = accContainerInvr;
+		this.accMoocInvr = accMoocInvr;
+		this.cost = cost;
+		this.capContCtr = capContCtr;
+		this.capMoocCtr = capMoocCtr;
+		this.contmoocCtr = contmoocCtr;
+		VRManager mgr = XR.getVRManager();
+		mgr.unpost(eat);
+		mgr.unpost(cEarliest);
+		mgr.unpost(accContainerInvr);
+		mgr.unpost(accMoocInvr);
+		mgr.unpost(capContCtr);
+		mgr.unpost(capMoocCtr);
+		mgr.unpost(contmoocCtr);
+		mgr.unpost(cost);
+		mgr.post(this);
+	}
+
+	public VRManager getVRManager() {
+		return XR.getVRManager();
+	}
+
+	public void initPropagation() {
+		eat.initPropagation();
+		cEarliest.initPropagation();
+		accContainerInvr.initPropagation();
+		accMoocInvr.initPropagation();
+		capContCtr.initPropagation();
+		capMoocCtr.initPropagation();
+		contmoocCtr.initPropagation();
+		cost.initPropagation();
+
+		// the arrays may have been reallocated by the initializations
+		earliestAllowedArrivalTime = eat.getEarliestAllowedArrivalTime();
+		serviceDuration = eat.getServiceDuration();
+		arrivalTime = eat.getEarliestArrivalTime();
+		waitingTime = eat.getWaitingTime();
+		forwardSlack = eat.getForwardSlack();
+		sumContainer = accContainerInvr.getSumWeights();
+		sumMooc = accMoocInvr.getSumWeights();
+		costRight = cost.getCostRight();
+		costLeft = cost.getCostLeft();
+		seq = new int[XR.getTotalNbPoints()];
+		marked = new boolean[XR.getNbRoutes() + 1];
+		markedRoutes = new int[XR.getNbRoutes()];
+		nbMarked = 0;
+	}
+
+	// recompute route k
+	private void update(int k) {
+		int n = 0;
+		for (int u = XR.getStartingIndexOfRoute(k); u != Constants.NULL_POINT; u = XR.next(u))
+			seq[n++] = u;
+		int s = seq[0];
+		int t = seq[n - 1];
+		double oldCost = costRight[t];
+
+		arrivalTime[s] = earliestAllowedArrivalTime[s];
+		waitingTime[s] = 0;
+		costRight[s] = 0;
+		int vioCont = 0;
+		int vioMooc = 0;
+		int vioContMooc = 0;
+		for (int i = 0; i < n; i++) {
+			int v = seq[i];
+			if (i > 0) {
+				int u = seq[i - 1];
+				double d = awm.getWeight(u, v);
+				double a = arrivalTime[u] + serviceDuration[u] + d;
+				if (earliestAllowedArrivalTime[v] > a) {
+					arrivalTime[v] = earliestAllowedArrivalTime[v];
+					waitingTime[v] = arrivalTime[v] - a;
+				} else {
+					arrivalTime[v] = a;
+					waitingTime[v] = 0;
+				}
+				sumContainer[v] = sumContainer[u] + accContainerInvr.getWeights(v);
+				sumMooc[v] = sumMooc[u] + accMoocInvr.getWeights(v);
+				costRight[v] = costRight[u] + d;
+			}
+			// the terminating point is only checked by the evaluations
+			if (i < n - 1) {
+				cEarliest.updateViolations(v, arrivalTime[v]);
+				vioCont += ContainerCapacityConstraint.excess(sumContainer[v]);
+				vioMooc += MoocCapacityConstraint.excess(sumMooc[v]);
+				vioContMooc += ContainerCarriedByTrailerConstraint.excess(sumContainer[v], sumMooc[v]);
+			}
+		}
+
+		costLeft[t] = 0;
+		forwardSlack[t] = latestSlack(t);
+		for (int i = n - 2; i >= 0; i--) {
+			int v = seq[i];
+			int nv = seq[i + 1];
+			costLeft[v] = costLeft[nv] + awm.getWeight(nv, v);
+			double f = latestSlack(v);
+			forwardSlack[v] = waitingTime[nv] + forwardSlack[nv] < f ? waitingTime[nv] + forwardSlack[nv] : f;
+		}
+		// an empty route costs nothing
+		if (n == 2)
+			costRight[t] = costLeft[s] = 0;
+
+		accContainerInvr.updateTree(k, seq, n);
+		accMoocInvr.updateTree(k, seq, n);
+		capContCtr.setRouteViolations(k, vioCont);
+		capMoocCtr.setRouteViolations(k, vioMooc);
+		contmoocCtr.setRouteViolations(k, vioContMooc);
+		cost.addValue(costRight[t] - oldCost);
+	}
+
+	private double latestSlack(int v) {
+		return (latestAllowedArrivalTime == null ? Constants.MAX_INT : latestAllowedArrivalTime[v])
+				- arrivalTime[v];
+	}
+
+	// the route of x before the move is modified, x is no longer on a route if it has been removed
+	private void mark(Point x) {
+		if (x == null || x == CBLSVR.NULL_POINT)
+			return;
+		int k = XR.oldRoute(x);
+		if (k == Constants.NULL_POINT)
+			return;
+		if (XR.route(x) == Constants.NULL_POINT)
+			clear(XR.getIndex(x));
+		if (!marked[k]) {
+			marked[k] = true;
+			markedRoutes[nbMarked++] = k;
+		}
+	}
+
+	private void clear(int i) {
+		cEarliest.clearViolations(i);
+		sumContainer[i] = 0;
+		sumMooc[i] = 0;
+		costRight[i] = costLeft[i] = 0;
+	}
+
+	private void updateMarked() {
+		for (int i = 0; i < nbMarked; i++) {
+			update(markedRoutes[i]);
+			marked[markedRoutes[i]] = false;
+		}
+		nbMarked = 0;
+	}
+
+	public void propagateTwoOptMoveOneRoute(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateOnePointMove(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoPointsMove(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove1(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove2(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove3(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove4(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove5(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove6(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove7(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove8(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateOrOptMove1(Point x1, Point x2, Point y) {
+		mark(x1);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateOrOptMove2(Point x1, Point x2, Point y) {
+		mark(x1);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove1(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove2(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove3(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove4(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove5(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove6(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove7(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove8(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateCrossExchangeMove(Point x1, Point y1, Point x2, Point y2) {
+		mark(x1);
+		mark(x2);
+		updateMarked();
+	}
+
+	public void propagateTwoPointsMove(Point x1, Point x2, Point y1, Point y2) {
+		mark(x1);
+		mark(x2);
+		mark(y1);
+		mark(y2);
+		updateMarked();
+	}
+
+	public void propagateThreePointsMove(Point x1, Point x2, Point x3, Point y1, Point y2, Point y3) {
+		mark(x1);
+		mark(x2);
+		mark(x3);
+		mark(y1);
+		mark(y2);
+		mark(y3);
+		updateMarked();
+	}
+
+	public void propagateFourPointsMove(Point x1, Point x2, Point x3, Point x4, Point y1, Point y2, Point y3,
+			Point y4) {
+		mark(x1);
+		mark(x2);
+		mark(x3);
+		mark(x4);
+		mark(y1);
+		mark(y2);
+		mark(y3);
+		mark(y4);
+		updateMarked();
+	}
+
+	public void propagateKPointsMove(ArrayList<Point> x, ArrayList<Point> y) {
+		for (Point p : x)
+			mark(p);
+		for (Point p : y)
+			mark(p);
+		updateMarked();
+	}
+
+	public void propagateAddOnePoint(Point x, Point y) {
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateRemoveOnePoint(Point x) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateAddTwoPoints(Point x1, Point y1, Point x2, Point y2) {
+		mark(y1);
+		mark(y2);
+		updateMarked();
+	}
+
+	public void propagateRemoveTwoPoints(Point x1, Point x2) {
+		mark(x1);
+		mark(x2);
+		updateMarked();
+	}
+
+	// remove x from its route, add y between z and next[z]
+	public void propagateAddRemovePoints(Point x, Point y, Point z) {
+		mark(x);
+		mark(z);
+		updateMarked();
+	}
+
+	public void propagateRoutes(ArrayList<Integer> r, ArrayList<Point> removed) {
+		for (Point p : removed)
+			clear(XR.getIndex(p));
+		for (int k : r)
+			update(k);
+	}
+
+	public String name() {
+		return "RouteKernelVR";
+	}
+}
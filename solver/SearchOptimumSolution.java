@@ -1,6 +1,10 @@
 package solver;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import solver.init.FPIUSInit;
 import vrp.Constants;
@@ -9,11 +13,357 @@ import vrp.entities.Point;
 public class SearchOptimumSolution {
 	TruckContainerSolver tcs;
 	private final FPIUSInit initialSolutionBuilder;
+	// scans the routes concurrently in the insertion operators when tcs.nThreads > 1
+	private final ForkJoinPool pool;
 	
 	public SearchOptimumSolution(TruckContainerSolver tcs){
 		super();
 		this.tcs = tcs;
 		this.initialSolutionBuilder = new FPIUSInit();
+		this.pool = tcs.nThreads > 1 ? new ForkJoinPool(tcs.nThreads) : null;
+		this.insertionCache = new CachedScan[2][tcs.XR.getTotalNbPoints()][];
+		this.granularNeighborhood = tcs.nbNeighbors > 0 ? new GranularNeighborhood(tcs, tcs.nbNeighbors) : null;
+	}
+	
+	// a feasible insertion of a request: pickup right-after p, delivery right-after q, changing the
+	// objective by delta
+	private static class InsertionCandidate {
+		final Point p;
+		final Point q;
+		final double delta;
+		
+		InsertionCandidate(Point p, Point q, double delta){
+			this.p = p;
+			this.q = q;
+			this.delta = delta;
+		}
+	}
+	
+	// the feasible insertions of a request in a route (none if it cannot be inserted there), valid as
+	// long as the route and the trailers available to planMoocToRoutes are the same as at the scan
+	private static class CachedScan {
+		int version;
+		int trailerVersion;
+		// points of the route at the scan but its terminating point, the entry stays valid if the
+		// route is rebuilt as it was
+		int[] sequence;
+		ArrayList<InsertionCandidate> candidates;
+	}
+	
+	// insertionCache[g][i][r] is the last scan of route r for the request whose pickup point has ordinal i,
+	// restricted to the granular neighborhood if g = 1
+	private final CachedScan[][][] insertionCache;
+	// positions considered first by the insertion operators when tcs.nbNeighbors > 0
+	private final GranularNeighborhood granularNeighborhood;
+	// trailers which planMoocToRoutes may use, and the number of times they changed
+	private BitSet availableTrailers;
+	private int trailerVersion;
+	
+	/**
+	 * Feasible insertions of the request (pickup, delivery) in route r, in the order of the scan,
+	 * with the change of the objective for each of them. The moves are built in x, y and only evaluated,
+	 * so that several routes can be scanned at the same time with their own x, y.
+	 * With a granular neighborhood, only the insertions of the neighborhood are scanned if granular,
+	 * and only the others if not: the pickup and the delivery (unless right-after the pickup) are then
+	 * both at positions of the neighborhood in the former case, and not in the latter.
+	 */
+	private ArrayList<InsertionCandidate> scanRoute(int r, Point pickup, Point delivery,
+			ArrayList<Point> x, ArrayList<Point> y, boolean granular){
+		ArrayList<InsertionCandidate> L = new ArrayList<InsertionCandidate>();
+		Point st = tcs.XR.getStartingPointOfRoute(r);
+		for(Point p = st; p != tcs.XR.getTerminatingPointOfRoute(r); p = tcs.XR.next(p)){
+			boolean gp = granularNeighborhood != null && granularNeighborhood.isCandidate(pickup, p, tcs.XR.next(p));
+			if(granular && !gp)
+				continue;
+			for(Point q = p; q != tcs.XR.getTerminatingPointOfRoute(r); q = tcs.XR.next(q)){
+				if(granularNeighborhood != null && granular != (gp
+						&& (q == p || granularNeighborhood.isCandidate(delivery, q, tcs.XR.next(q)))))
+					continue;
+				initialSolutionBuilder.buildInsertionMove(tcs, pickup, p, delivery, q, x, y);
+				if(initialSolutionBuilder.screenTimeWindows(tcs, x, y)
+						&& tcs.S.violations() + tcs.S.evaluateAddPoints(x, y) == 0){
+					L.add(new InsertionCandidate(p, q, tcs.objective.evaluateAddPoints(x, y)));
+				}
+			}
+		}
+		return L;
+	}
+	
+	// the cached scan of route r for the request, null if it is out of date
+	private ArrayList<InsertionCandidate> lookup(Point pickup, int r, boolean granular){
+		CachedScan[] C = insertionCache[granular ? 1 : 0][pickup.getIndex()];
+		CachedScan c = C == null ? null : C[r];
+		if(c == null || c.trailerVersion != trailerVersion)
+			return null;
+		int v = tcs.XR.getVersion(r);
+		if(c.version != v){
+			// the route has been modified, it may have been rebuilt as it was (trailers removed and
+			// inserted again, rollback of the search)
+			Point t = tcs.XR.getTerminatingPointOfRoute(r);
+			if(tcs.XR.index(t) != c.sequence.length)
+				return null;
+			int j = 0;
+			for(Point p = tcs.XR.getStartingPointOfRoute(r); p != t; p = tcs.XR.next(p)){
+				if(p.getIndex() != c.sequence[j++])
+					return null;
+			}
+			c.version = v;
+		}
+		return c.candidates;
+	}
+	
+	private void store(Point pickup, int r, ArrayList<InsertionCandidate> candidates, boolean granular){
+		CachedScan[][] G = insertionCache[granular ? 1 : 0];
+		CachedScan[] C = G[pickup.getIndex()];
+		if(C == null){
+			C = new CachedScan[tcs.XR.getNbRoutes() + 1];
+			G[pickup.getIndex()] = C;
+		}
+		CachedScan c = C[r];
+		if(c == null){
+			c = new CachedScan();
+			C[r] = c;
+		}
+		Point t = tcs.XR.getTerminatingPointOfRoute(r);
+		c.version = tcs.XR.getVersion(r);
+		c.trailerVersion = trailerVersion;
+		c.sequence = new int[tcs.XR.index(t)];
+		int j = 0;
+		for(Point p = tcs.XR.getStartingPointOfRoute(r); p != t; p = tcs.XR.next(p))
+			c.sequence[j++] = p.getIndex();
+		c.candidates = candidates;
+	}
+	
+	// the cached scans are dropped when the trailers available to the requests change
+	private void updateAvailableTrailers(){
+		BitSet B = new BitSet(tcs.startMoocPoints.size());
+		for(int i = 0; i < tcs.startMoocPoints.size(); i++){
+			Point stMooc = tcs.startMoocPoints.get(i);
+			if(!tcs.markedGroups.get(tcs.getGroup(stMooc)) && tcs.XR.route(stMooc) == Constants.NULL_POINT)
+				B.set(i);
+		}
+		if(!B.equals(availableTrailers)){
+			availableTrailers = B;
+			trailerVersion++;
+		}
+	}
+	
+	/**
+	 * The feasible insertions of the request in all the routes: element r-1 holds those of route r.
+	 * Only the routes modified since their last scan for the request are scanned again: the
+	 * evaluations only depend on the route and on the available trailers as long as no time window
+	 * is violated (the capacity constraints are evaluated on the route itself, which is what makes
+	 * the scans usable while the trailers are removed from the routes).
+	 * The routes which are not compatible with the request (tcs.compatibility) are not scanned.
+	 * The operators reduce them route after route in the order of the sequential scan, so that
+	 * the chosen insertion does not depend on the number of threads.
+	 * With a granular neighborhood, the other insertions are only scanned if none of the granular
+	 * ones is feasible, which gives the same result as scanning all of them.
+	 */
+	private ArrayList<ArrayList<InsertionCandidate>> scanRoutes(Point pickup, Point delivery,
+			ArrayList<Point> x, ArrayList<Point> y){
+		if(granularNeighborhood != null){
+			ArrayList<ArrayList<InsertionCandidate>> C = scanRoutes(pickup, delivery, x, y, true);
+			for(ArrayList<InsertionCandidate> L : C){
+				if(!L.isEmpty())
+					return C;
+			}
+		}
+		return scanRoutes(pickup, delivery, x, y, false);
+	}
+	
+	private ArrayList<ArrayList<InsertionCandidate>> scanRoutes(final Point pickup, final Point delivery,
+			ArrayList<Point> x, ArrayList<Point> y, final boolean granular){
+		int K = tcs.XR.getNbRoutes();
+		boolean cached = tcs.cEarliest.violations() == 0;
+		if(cached)
+			updateAvailableTrailers();
+		ArrayList<ArrayList<InsertionCandidate>> C = new ArrayList<ArrayList<InsertionCandidate>>();
+		ArrayList<Integer> toScan = new ArrayList<Integer>();
+		for(int r = 1; r <= K; r++){
+			Point st = tcs.XR.getStartingPointOfRoute(r);
+			int groupTruck = tcs.getGroup(st);
+			ArrayList<InsertionCandidate> L = null;
+			if((tcs.markedGroups.get(groupTruck) 
+					&& tcs.XR.index(tcs.XR.getTerminatingPointOfRoute(r)) <= 1)
+					|| !tcs.compatibility.isCompatible(pickup, r))
+				L = new ArrayList<InsertionCandidate>();
+			else if(cached)
+				L = lookup(pickup, r, granular);
+			if(L == null)
+				toScan.add(r);
+			C.add(L);
+		}
+		if(pool == null || toScan.size() <= 1){
+			for(int r : toScan)
+				C.set(r - 1, scanRoute(r, pickup, delivery, x, y, granular));
+		}else{
+			// the evaluations below only read the invariants: bring them up to date before the workers start
+			tcs.mgr.flush();
+			ArrayList<Callable<ArrayList<InsertionCandidate>>> tasks = new ArrayList<Callable<ArrayList<InsertionCandidate>>>();
+			for(int r : toScan){
+				final int k = r;
+				tasks.add(new Callable<ArrayList<InsertionCandidate>>(){
+					public ArrayList<InsertionCandidate> call(){
+						return scanRoute(k, pickup, delivery, new ArrayList<Point>(), new ArrayList<Point>(), granular);
+					}
+				});
+			}
+			try{
+				List<Future<ArrayList<InsertionCandidate>>> F = pool.invokeAll(tasks);
+				for(int i = 0; i < toScan.size(); i++)
+					C.set(toScan.get(i) - 1, F.get(i).get());
+			}catch(InterruptedException | ExecutionException e){
+				// invokeAll has waited for all the tasks: the routes are scanned again by this thread,
+				// which gives the same candidates, or throws the failure of a worker to the operator
+				System.out.println("SearchOptimumSolution::scanRoutes, exception " + e + ", routes scanned sequentially");
+				if(e instanceof InterruptedException)
+					Thread.currentThread().interrupt();
+				for(int r : toScan)
+					C.set(r - 1, scanRoute(r, pickup, delivery, x, y, granular));
+			}
+		}
+		if(cached){
+			for(int r : toScan)
+				store(pickup, r, C.get(r - 1), granular);
+		}
+		return C;
+	}
+	
+	// an insertion of the request in route r, position pos of the scan of the route, with a lower
+	// bound of its change of the objective
+	private static class BoundedInsertion {
+		final Point p;
+		final Point q;
+		final int r;
+		final int pos;
+		final double bound;
+		
+		BoundedInsertion(Point p, Point q, int r, int pos, double bound){
+			this.p = p;
+			this.q = q;
+			this.r = r;
+			this.pos = pos;
+			this.bound = bound;
+		}
+	}
+	
+	/**
+	 * The best feasible insertion of the request, null if there is none: the smallest change of the
+	 * objective, the first one in the order of scanRoutes in case of ties.
+	 * The insertions of the routes which are not cached are evaluated by increasing lower bound of
+	 * their change of the objective, until the bound exceeds the best change found, instead of all
+	 * being evaluated with their trailers. The travel times do not satisfy the triangle inequality, so
+	 * that the bound follows the shortest paths: the segment of the new route between two consecutive
+	 * points of the route costs at least the shortest path through the pickup and the delivery it
+	 * contains, whatever trailer points are added to it, and any other arc can at most be replaced by
+	 * a shortest path.
+	 */
+	private InsertionCandidate bestInsertion(Point pickup, Point delivery, ArrayList<Point> x, ArrayList<Point> y){
+		if(granularNeighborhood != null){
+			InsertionCandidate c = bestInsertion(pickup, delivery, x, y, true);
+			if(c != null)
+				return c;
+		}
+		return bestInsertion(pickup, delivery, x, y, false);
+	}
+	
+	private InsertionCandidate bestInsertion(Point pickup, Point delivery, ArrayList<Point> x, ArrayList<Point> y,
+			boolean granular){
+		int K = tcs.XR.getNbRoutes();
+		boolean cached = tcs.cEarliest.violations() == 0;
+		if(cached)
+			updateAvailableTrailers();
+		InsertionCandidate best = null;
+		int bestR = 0;
+		int bestPos = 0;
+		ArrayList<BoundedInsertion> B = new ArrayList<BoundedInsertion>();
+		for(int r = 1; r <= K; r++){
+			Point st = tcs.XR.getStartingPointOfRoute(r);
+			if((tcs.markedGroups.get(tcs.getGroup(st))
+					&& tcs.XR.index(tcs.XR.getTerminatingPointOfRoute(r)) <= 1)
+					|| !tcs.compatibility.isCompatible(pickup, r))
+				continue;
+			ArrayList<InsertionCandidate> L = cached ? lookup(pickup, r, granular) : null;
+			if(L != null){
+				for(int i = 0; i < L.size(); i++){
+					InsertionCandidate c = L.get(i);
+					if(best == null || c.delta < best.delta){
+						best = c;
+						bestR = r;
+						bestPos = i;
+					}
+				}
+			}else
+				boundInsertions(r, pickup, delivery, granular, B);
+		}
+		Collections.sort(B, new Comparator<BoundedInsertion>(){
+			public int compare(BoundedInsertion a, BoundedInsertion b){
+				if(a.bound != b.bound)
+					return Double.compare(a.bound, b.bound);
+				return a.r != b.r ? Integer.compare(a.r, b.r) : Integer.compare(a.pos, b.pos);
+			}
+		});
+		for(BoundedInsertion b : B){
+			if(best != null && b.bound > best.delta)
+				break;
+			initialSolutionBuilder.buildInsertionMove(tcs, pickup, b.p, delivery, b.q, x, y);
+			if(initialSolutionBuilder.screenTimeWindows(tcs, x, y)
+					&& tcs.S.violations() + tcs.S.evaluateAddPoints(x, y) == 0){
+				double delta = tcs.objective.evaluateAddPoints(x, y);
+				if(best == null || delta < best.delta
+						|| (delta == best.delta && (b.r < bestR || (b.r == bestR && b.pos < bestPos)))){
+					best = new InsertionCandidate(b.p, b.q, delta);
+					bestR = b.r;
+					bestPos = b.pos;
+				}
+			}
+		}
+		return best;
+	}
+	
+	// appends to B the insertions of the request scanned by scanRoute in route r, with their bounds
+	private void boundInsertions(int r, Point pickup, Point delivery, boolean granular, ArrayList<BoundedInsertion> B){
+		int[][] sp = tcs.shortestTravelTimes.get();
+		int lp = tcs.awm.getLocation(pickup);
+		int ld = tcs.awm.getLocation(delivery);
+		Point t = tcs.XR.getTerminatingPointOfRoute(r);
+		// the arcs of the route replaced by shortest paths
+		double slack = 0;
+		for(Point p = tcs.XR.getStartingPointOfRoute(r); p != t; p = tcs.XR.next(p))
+			slack += arcSlack(sp, p);
+		int pos = 0;
+		for(Point p = tcs.XR.getStartingPointOfRoute(r); p != t; p = tcs.XR.next(p)){
+			Point np = tcs.XR.next(p);
+			int lpp = tcs.awm.getLocation(p);
+			int lnp = tcs.awm.getLocation(np);
+			boolean gp = granularNeighborhood != null && granularNeighborhood.isCandidate(pickup, p, np);
+			for(Point q = p; q != t; q = tcs.XR.next(q)){
+				pos++;
+				if(granular && !gp)
+					continue;
+				if(granularNeighborhood != null && granular != (gp
+						&& (q == p || granularNeighborhood.isCandidate(delivery, q, tcs.XR.next(q)))))
+					continue;
+				double bound;
+				if(q == p)
+					bound = sp[lpp][lp] + sp[lp][ld] + sp[ld][lnp] - tcs.awm.getWeight(p, np) - arcSlack(sp, p);
+				else{
+					Point nq = tcs.XR.next(q);
+					int lq = tcs.awm.getLocation(q);
+					bound = sp[lpp][lp] + sp[lp][lnp] - tcs.awm.getWeight(p, np) - arcSlack(sp, p)
+							+ sp[lq][ld] + sp[ld][tcs.awm.getLocation(nq)] - tcs.awm.getWeight(q, nq) - arcSlack(sp, q);
+				}
+				B.add(new BoundedInsertion(p, q, r, pos, bound + slack));
+			}
+		}
+	}
+	
+	// change of the cost if the arc leaving p is replaced by a shortest path of sp, at most 0
+	private double arcSlack(int[][] sp, Point p){
+		Point np = tcs.XR.next(p);
+		return Math.min(0, sp[tcs.awm.getLocation(p)][tcs.awm.getLocation(np)]
+				- tcs.awm.getWeight(p, np));
 	}
 	
 	public void allRemoval(){
@@ -26,12 +376,11 @@ public class SearchOptimumSolution {
 				tcs.rejectDeliveryPoints.add(tcs.pickup2Delivery.get(pickup));
 			}
 		}
-		for(int k : tcs.group2marked.keySet())
-			tcs.group2marked.put(k, 0);
+		tcs.markedGroups.clear();
 	}
 	
 	public void routeRemoval(){
-		Random r = new Random();
+		Random r = tcs.random;
 		int k = r.nextInt(tcs.XR.getNbRoutes()) + 1;
 		System.out.println("routeRemoval: index of removed route = " + k);
 		Point x = tcs.XR.getStartingPointOfRoute(k);
@@ -40,22 +389,21 @@ public class SearchOptimumSolution {
 			x = next_x;
 			next_x = tcs.XR.next(x);
 			tcs.mgr.performRemoveOnePoint(x);
-			tcs.group2marked.put(tcs.point2Group.get(x), 0);
-			if(tcs.point2Type.get(x) != tcs.START_MOOC
-				&& tcs.point2Type.get(x) != tcs.END_MOOC){	
+			tcs.markedGroups.clear(tcs.getGroup(x));
+			if(!tcs.getKind(x).isMooc()){	
 				if(tcs.pickup2Delivery.keySet().contains(x))
 					tcs.rejectPickupPoints.add(x);
 				else 
 					tcs.rejectDeliveryPoints.add(x);
+				tcs.nChosed.put(x, tcs.nChosed.get(x)+1);
 			}
-			tcs.nChosed.put(x, tcs.nChosed.get(x)+1);
 		}
-		int groupTruck = tcs.point2Group.get(tcs.XR.getStartingPointOfRoute(k));
-		tcs.group2marked.put(groupTruck, 0);
+		int groupTruck = tcs.getGroup(tcs.XR.getStartingPointOfRoute(k));
+		tcs.markedGroups.clear(groupTruck);
 	}
 
 	public void randomRequestRemoval(){
-		Random R = new Random();
+		Random R = tcs.random;
 		int n = R.nextInt(tcs.upper_removal-tcs.lower_removal+1) + tcs.lower_removal;
 		System.out.println("randomReqRemoval:number of removed request = " + n);
 		if(n >= tcs.pickupPoints.size()){
@@ -67,8 +415,7 @@ public class SearchOptimumSolution {
 					tcs.rejectDeliveryPoints.add(tcs.pickup2Delivery.get(pickup));
 				}
 			}
-			for(int k : tcs.group2marked.keySet())
-				tcs.group2marked.put(k, 0);
+			tcs.markedGroups.clear();
 		}
 		else{
 			int i = 0;
@@ -88,11 +435,11 @@ public class SearchOptimumSolution {
 				tcs.mgr.performRemoveTwoPoints(pickup, delivery);
 				tcs.rejectPickupPoints.add(pickup);
 				tcs.rejectDeliveryPoints.add(delivery);
-				tcs.group2marked.put(tcs.point2Group.get(pickup), 0);
-				tcs.group2marked.put(tcs.point2Group.get(delivery), 0);
+				tcs.markedGroups.clear(tcs.getGroup(pickup));
+				tcs.markedGroups.clear(tcs.getGroup(delivery));
 				if(tcs.XR.index(tcs.XR.getTerminatingPointOfRoute(ridx)) <= 1){
-					int groupTruck = tcs.point2Group.get(tcs.XR.getStartingPointOfRoute(ridx));
-					tcs.group2marked.put(groupTruck, 0);
+					int groupTruck = tcs.getGroup(tcs.XR.getStartingPointOfRoute(ridx));
+					tcs.markedGroups.clear(groupTruck);
 				}
 				i++;
 				tcs.nChosed.put(pickup, tcs.nChosed.get(pickup)+1);
@@ -102,7 +449,7 @@ public class SearchOptimumSolution {
 	}
 	
 	public void shaw_removal(){
-		Random R = new Random();
+		Random R = tcs.random;
 		int nRemove = R.nextInt(tcs.upper_removal-tcs.lower_removal+1) + tcs.lower_removal;
 		
 		System.out.println("Shaw removal : number of request removed = " + nRemove);
@@ -145,22 +492,22 @@ public class SearchOptimumSolution {
 			System.out.println(r1 + " " + inRemove);
 			System.out.println(routeOfR1);
 			double arrivalTimeR1 = tcs.eat.getEarliestArrivalTime(tcs.XR.prev(r1))+
-					tcs.serviceDuration.get(tcs.XR.prev(r1))+
+					tcs.serviceDuration[tcs.XR.prev(r1).getIndex()]+
 					tcs.awm.getDistance(tcs.XR.prev(r1), r1);
 			
-			double serviceTimeR1 = 1.0*tcs.earliestAllowedArrivalTime.get(r1);
+			double serviceTimeR1 = 1.0*tcs.earliestAllowedArrivalTime[r1.getIndex()];
 			serviceTimeR1 = arrivalTimeR1 > serviceTimeR1 ? arrivalTimeR1 : serviceTimeR1;
 			
-			double depatureTimeR1 = serviceTimeR1 + tcs.serviceDuration.get(r1);
+			double depatureTimeR1 = serviceTimeR1 + tcs.serviceDuration[r1.getIndex()];
 			
 			double arrivalTimeDR1 = tcs.eat.getEarliestArrivalTime(tcs.XR.prev(dr1))+
-					tcs.serviceDuration.get(tcs.XR.prev(dr1))+
+					tcs.serviceDuration[tcs.XR.prev(dr1).getIndex()]+
 					tcs.awm.getDistance(tcs.XR.prev(dr1), dr1);
 			
-			double serviceTimeDR1 = 1.0*tcs.earliestAllowedArrivalTime.get(dr1);
+			double serviceTimeDR1 = 1.0*tcs.earliestAllowedArrivalTime[dr1.getIndex()];
 			serviceTimeDR1 = arrivalTimeDR1 > serviceTimeDR1 ? arrivalTimeDR1 : serviceTimeDR1;
 			
-			double depatureTimeDR1 = serviceTimeDR1 + tcs.serviceDuration.get(dr1);
+			double depatureTimeDR1 = serviceTimeDR1 + tcs.serviceDuration[dr1.getIndex()];
 			
 			tcs.rejectPickupPoints.add(r1);
 			tcs.rejectDeliveryPoints.add(dr1);
@@ -168,13 +515,13 @@ public class SearchOptimumSolution {
 			tcs.nChosed.put(dr1, tcs.nChosed.get(dr1)+1);
 			
 			int ridx = tcs.XR.route(r1);
-			tcs.group2marked.put(tcs.point2Group.get(r1), 0);
-			tcs.group2marked.put(tcs.point2Group.get(dr1), 0);
+			tcs.markedGroups.clear(tcs.getGroup(r1));
+			tcs.markedGroups.clear(tcs.getGroup(dr1));
 			tcs.mgr.performRemoveTwoPoints(r1, dr1);
 			
 			if(tcs.XR.index(tcs.XR.getTerminatingPointOfRoute(ridx)) <= 1){
-				int groupTruck = tcs.point2Group.get(tcs.XR.getStartingPointOfRoute(ridx));
-				tcs.group2marked.put(groupTruck, 0);
+				int groupTruck = tcs.getGroup(tcs.XR.getStartingPointOfRoute(ridx));
+				tcs.markedGroups.clear(groupTruck);
 			}
 			/*
 			 * find the request is the most related with r1
@@ -182,32 +529,33 @@ public class SearchOptimumSolution {
 			for(int k=1; k<=tcs.XR.getNbRoutes(); k++){
 				Point x = tcs.XR.getStartingPointOfRoute(k);
 				for(x = tcs.XR.next(x); x != tcs.XR.getTerminatingPointOfRoute(k); x = tcs.XR.next(x)){
-					if(!tcs.removeAllowed.get(x))
-						continue;
+					// the trailers of the routes the iteration has not modified are still on them
 					Point dX = tcs.pickup2Delivery.get(x);
 					if(dX == null)
 						continue;
+					if(!tcs.removeAllowed.get(x))
+						continue;
 					
 					/*
 					 * Compute arrival time of x and its delivery dX
 					 */
 					double arrivalTimeX = tcs.eat.getEarliestArrivalTime(tcs.XR.prev(x))+
-							tcs.serviceDuration.get(tcs.XR.prev(x))+
+							tcs.serviceDuration[tcs.XR.prev(x).getIndex()]+
 							tcs.awm.getDistance(tcs.XR.prev(x), x);
 					
-					double serviceTimeX = 1.0*tcs.earliestAllowedArrivalTime.get(x);
+					double serviceTimeX = 1.0*tcs.earliestAllowedArrivalTime[x.getIndex()];
 					serviceTimeX = arrivalTimeX > serviceTimeX ? arrivalTimeX : serviceTimeX;
 					
-					double depatureTimeX = serviceTimeX + tcs.serviceDuration.get(x);
+					double depatureTimeX = serviceTimeX + tcs.serviceDuration[x.getIndex()];
 					
 					double arrivalTimeDX =  tcs.eat.getEarliestArrivalTime(tcs.XR.prev(dX))+
-							tcs.serviceDuration.get(tcs.XR.prev(dX))+
+							tcs.serviceDuration[tcs.XR.prev(dX).getIndex()]+
 							tcs.awm.getDistance(tcs.XR.prev(dX), dX);
 					
-					double serviceTimeDX = 1.0*tcs.earliestAllowedArrivalTime.get(dX);
+					double serviceTimeDX = 1.0*tcs.earliestAllowedArrivalTime[dX.getIndex()];
 					serviceTimeDX = arrivalTimeDX > serviceTimeDX ? arrivalTimeDX : serviceTimeDX;
 					
-					double depatureTimeDX = serviceTimeDX + tcs.serviceDuration.get(dX);
+					double depatureTimeDX = serviceTimeDX + tcs.serviceDuration[dX.getIndex()];
 					
 					/*
 					 * Compute related between r1 and x
@@ -241,7 +589,7 @@ public class SearchOptimumSolution {
 	}
 	
 	public void worst_removal(){
-		Random R = new Random();
+		Random R = tcs.random;
 		int nRemove = R.nextInt(tcs.upper_removal-tcs.lower_removal+1) + tcs.lower_removal;
 		System.out.println("worstRemoval: nRemove = " + nRemove);
 		
@@ -258,14 +606,14 @@ public class SearchOptimumSolution {
 				Point x = tcs.XR.getStartingPointOfRoute(k);
 				for(x = tcs.XR.next(x); x != tcs.XR.getTerminatingPointOfRoute(k); x = tcs.XR.next(x)){
 					
-					if(!tcs.removeAllowed.get(x))
-						continue;
-					
 					Point dX = tcs.pickup2Delivery.get(x);
 					if(dX == null){
 						continue;
 					}
 					
+					if(!tcs.removeAllowed.get(x))
+						continue;
+					
 					double cost = tcs.objective.evaluateRemoveTwoPoints(x, dX);
 					if(cost > maxCost){
 						maxCost = cost;
@@ -284,12 +632,12 @@ public class SearchOptimumSolution {
 			tcs.nChosed.put(removedDelivery, tcs.nChosed.get(removedDelivery)+1);
 			tcs.nChosed.put(removedPickup, tcs.nChosed.get(removedPickup)+1);
 			
-			tcs.group2marked.put(tcs.point2Group.get(removedPickup), 0);
-			tcs.group2marked.put(tcs.point2Group.get(removedDelivery), 0);	
+			tcs.markedGroups.clear(tcs.getGroup(removedPickup));
+			tcs.markedGroups.clear(tcs.getGroup(removedDelivery));	
 			tcs.mgr.performRemoveTwoPoints(removedPickup, removedDelivery);
 			if(tcs.XR.index(tcs.XR.getTerminatingPointOfRoute(ridx)) <= 1){
-				int groupTruck = tcs.point2Group.get(tcs.XR.getStartingPointOfRoute(ridx));
-				tcs.group2marked.put(groupTruck, 0);
+				int groupTruck = tcs.getGroup(tcs.XR.getStartingPointOfRoute(ridx));
+				tcs.markedGroups.clear(groupTruck);
 			}
 		}
 	}
@@ -326,12 +674,18 @@ public class SearchOptimumSolution {
 	public void greedyInsertion(){
 		System.out.println("greedyInsertion");
 		int c = 0;
+		ArrayList<Point> x = new ArrayList<Point>();
+		ArrayList<Point> y = new ArrayList<Point>();
 		for(int i = 0; i < tcs.rejectPickupPoints.size(); i++){
+			// interrupted (initialization of a member of PortfolioSearch at the time limit): the other
+			// requests stay rejected
+			if(Thread.currentThread().isInterrupted())
+				break;
 			Point pickup = tcs.rejectPickupPoints.get(i);
-			int groupId = tcs.point2Group.get(pickup);
+			int groupId = tcs.getGroup(pickup);
 			
 			if(tcs.XR.route(pickup) != Constants.NULL_POINT
-				|| tcs.group2marked.get(groupId) == 1)
+				|| tcs.markedGroups.get(groupId))
 				continue;
 			//System.out.println(c++);
 			Point delivery = tcs.pickup2Delivery.get(pickup);
@@ -339,34 +693,23 @@ public class SearchOptimumSolution {
 			Point pre_pick = null;
 			Point pre_delivery = null;
 			double best_objective = Double.MAX_VALUE;
-			for(int r = 1; r <= tcs.XR.getNbRoutes(); r++){
-				Point st = tcs.XR.getStartingPointOfRoute(r);
-				
-				int groupTruck = tcs.point2Group.get(st);
-				if(tcs.group2marked.get(groupTruck) == 1 
-						&& tcs.XR.index(tcs.XR.getTerminatingPointOfRoute(r)) <= 1)
-					continue;
-				for(Point p = st; p != tcs.XR.getTerminatingPointOfRoute(r); p = tcs.XR.next(p)){
-					for(Point q = p; q != tcs.XR.getTerminatingPointOfRoute(r); q = tcs.XR.next(q)){
-//						if((tcs.XR.prev(p)!= null && tcs.XR.prev(p).getID() % 2 == 1
-//								&& p.getID() % 2 == 1
-//								&& pickup.getID() % 2 == 1)
-//								|| (tcs.XR.next(p) != null && tcs.XR.next(p).getID() % 2 == 1
-//								&& p.getID() % 2 == 1
-//								&& pickup.getID() % 2 == 1))
-//								System.out.println("bug");
-						tcs.mgr.performAddTwoPoints(pickup, p, delivery, q);
-							initialSolutionBuilder.insertMoocToRoutes(tcs, r);
-						if(tcs.S.violations() == 0){
-							double cost = tcs.objective.getValue();
-							if( cost < best_objective){
-								best_objective = cost;
-								pre_pick = p;
-								pre_delivery = q;
-							}
+			double value = tcs.objective.getValue();
+			if(pool == null){
+				// evaluated one at a time: only the insertions which may be the best are evaluated
+				InsertionCandidate cand = bestInsertion(pickup, delivery, x, y);
+				if(cand != null){
+					pre_pick = cand.p;
+					pre_delivery = cand.q;
+				}
+			}else{
+				for(ArrayList<InsertionCandidate> L : scanRoutes(pickup, delivery, x, y)){
+					for(InsertionCandidate cand : L){
+						double cost = value + cand.delta;
+						if( cost < best_objective){
+							best_objective = cost;
+							pre_pick = cand.p;
+							pre_delivery = cand.q;
 						}
-						tcs.mgr.performRemoveTwoPoints(pickup, delivery);
-							initialSolutionBuilder.removeMoocOnRoutes(tcs, r);
 					}
 				}
 			}
@@ -375,13 +718,13 @@ public class SearchOptimumSolution {
 				Point st = tcs.XR.getStartingPointOfRoute(tcs.XR.route(pre_pick));
 				tcs.rejectPickupPoints.remove(pickup);
 				tcs.rejectDeliveryPoints.remove(delivery);
-				int groupTruck = tcs.point2Group.get(st);
-				tcs.group2marked.put(groupTruck, 1);
-				tcs.group2marked.put(groupId, 1);
+				int groupTruck = tcs.getGroup(st);
+				tcs.markedGroups.set(groupTruck);
+				tcs.markedGroups.set(groupId);
 				i--;
 			}
 		}
-		initialSolutionBuilder.insertMoocForAllRoutes(tcs);
+		initialSolutionBuilder.insertMoocForChangedRoutes(tcs);
 	}
 	
 	public void greedyInsertionWithNoise(){
@@ -398,76 +741,58 @@ public class SearchOptimumSolution {
 //			}
 //		}
 		
+		ArrayList<Point> x = new ArrayList<Point>();
+		ArrayList<Point> y = new ArrayList<Point>();
 		for(int i = 0; i < tcs.rejectPickupPoints.size(); i++){
 			Point pickup = tcs.rejectPickupPoints.get(i);
-			int groupId = tcs.point2Group.get(pickup);
+			int groupId = tcs.getGroup(pickup);
 			
 			if(tcs.XR.route(pickup) != Constants.NULL_POINT
-				|| tcs.group2marked.get(groupId) == 1)
+				|| tcs.markedGroups.get(groupId))
 				continue;
 			Point delivery = tcs.pickup2Delivery.get(pickup);
 			//add the request to route
 			Point pre_pick = null;
 			Point pre_delivery = null;
 			double best_objective = Double.MAX_VALUE;
-			for(int r = 1; r <= tcs.XR.getNbRoutes(); r++){
-				Point st = tcs.XR.getStartingPointOfRoute(r);
-
-				int groupTruck = tcs.point2Group.get(st);
-
-				if(tcs.group2marked.get(groupTruck) == 1 && tcs.XR.index(tcs.XR.getTerminatingPointOfRoute(r)) <= 1)
-					continue;
-				
-				for(Point p = st; p != tcs.XR.getTerminatingPointOfRoute(r); p = tcs.XR.next(p)){
-					for(Point q = p; q != tcs.XR.getTerminatingPointOfRoute(r); q = tcs.XR.next(q)){
-//						if((tcs.XR.prev(p)!= null && tcs.XR.prev(p).getID() % 2 == 1
-//								&& p.getID() % 2 == 1
-//								&& pickup.getID() % 2 == 1)
-//								|| (tcs.XR.next(p) != null && tcs.XR.next(p).getID() % 2 == 1
-//								&& p.getID() % 2 == 1
-//								&& pickup.getID() % 2 == 1))
-//								System.out.println("bug");
-						tcs.mgr.performAddTwoPoints(pickup, p, delivery, q);
-						initialSolutionBuilder.insertMoocToRoutes(tcs, r);
-						
-						if(tcs.S.violations() == 0){
-							double cost = tcs.objective.getValue();
-							double ran = Math.random()*2-1;
-							cost += TruckContainerSolver.MAX_TRAVELTIME*0.1*ran;
-							if( cost < best_objective){
-								best_objective = cost;
-								pre_pick = p;
-								pre_delivery = q;
-							}
-						}
-						tcs.mgr.performRemoveTwoPoints(pickup, delivery);
-						initialSolutionBuilder.removeMoocOnRoutes(tcs, r);
+			double value = tcs.objective.getValue();
+			for(ArrayList<InsertionCandidate> L : scanRoutes(pickup, delivery, x, y)){
+				for(InsertionCandidate cand : L){
+					double cost = value + cand.delta;
+					double ran = tcs.random.nextDouble()*2-1;
+					cost += tcs.maxTravelTime*0.1*ran;
+					if( cost < best_objective){
+						best_objective = cost;
+						pre_pick = cand.p;
+						pre_delivery = cand.q;
 					}
 				}
 			}
 			if(pre_pick != null && pre_delivery != null){
 				tcs.mgr.performAddTwoPoints(pickup, pre_pick, delivery, pre_delivery);
 				Point st = tcs.XR.getStartingPointOfRoute(tcs.XR.route(pre_pick));
-				int groupTruck = tcs.point2Group.get(st);
-				tcs.group2marked.put(groupTruck, 1);
+				int groupTruck = tcs.getGroup(st);
+				tcs.markedGroups.set(groupTruck);
 				tcs.rejectPickupPoints.remove(pickup);
 				tcs.rejectDeliveryPoints.remove(delivery);
-				tcs.group2marked.put(groupId, 1);
+				tcs.markedGroups.set(groupId);
 				i--;
 			}
 		}
-		initialSolutionBuilder.insertMoocForAllRoutes(tcs);
+		initialSolutionBuilder.insertMoocForChangedRoutes(tcs);
 	}
 	
 	public void regret_n_insertion(int n){
 		System.out.println("regret insertion n = " + n);
 		
+		ArrayList<Point> x = new ArrayList<Point>();
+		ArrayList<Point> y = new ArrayList<Point>();
 		for(int i = 0; i < tcs.rejectPickupPoints.size(); i++){
 			Point pickup = tcs.rejectPickupPoints.get(i);
-			int groupId = tcs.point2Group.get(pickup);
+			int groupId = tcs.getGroup(pickup);
 			
 			if(tcs.XR.route(pickup) != Constants.NULL_POINT
-				|| tcs.group2marked.get(groupId) == 1)
+				|| tcs.markedGroups.get(groupId))
 				continue;
 			Point delivery = tcs.pickup2Delivery.get(pickup);
 			//add the request to route
@@ -480,73 +805,55 @@ public class SearchOptimumSolution {
 				n_best_objective[it] = Double.MAX_VALUE;
 			}
 
-			for(int r = 1; r <= tcs.XR.getNbRoutes(); r++){
-				Point st = tcs.XR.getStartingPointOfRoute(r);
-				int groupTruck = tcs.point2Group.get(st);
-
-				if(tcs.group2marked.get(groupTruck) == 1 && tcs.XR.index(tcs.XR.getTerminatingPointOfRoute(r)) <= 1)
-					continue;
-				
-				for(Point p = st; p != tcs.XR.getTerminatingPointOfRoute(r); p = tcs.XR.next(p)){
-					for(Point q = p; q != tcs.XR.getTerminatingPointOfRoute(r); q = tcs.XR.next(q)){
-//						if((tcs.XR.prev(p)!= null && tcs.XR.prev(p).getID() % 2 == 1
-//								&& p.getID() % 2 == 1
-//								&& pickup.getID() % 2 == 1)
-//								|| (tcs.XR.next(p) != null && tcs.XR.next(p).getID() % 2 == 1
-//								&& p.getID() % 2 == 1
-//								&& pickup.getID() % 2 == 1))
-//								System.out.println("bug");
-						tcs.mgr.performAddTwoPoints(pickup, p, delivery, q);
-						initialSolutionBuilder.insertMoocToRoutes(tcs, r);
-						if(tcs.S.violations() == 0){
-							double cost = tcs.objective.getValue();
-							for(int it=0; it<n; it++){
-								if(n_best_objective[it] > cost){
-									for(int it2 = n-1; it2 > it; it2--){
-										n_best_objective[it2] = n_best_objective[it2-1];
-									}
-									n_best_objective[it] = cost;
-									break;
-								}
-							}
-							double regret_value = 0;
-							for(int it=1; it<n; it++){
-								regret_value += Math.abs(n_best_objective[it] - n_best_objective[0]);
-							}
-							if(regret_value > best_regret_value){
-								best_regret_value = regret_value;
-								pre_pick = p;
-								pre_delivery = q;
+			double value = tcs.objective.getValue();
+			for(ArrayList<InsertionCandidate> L : scanRoutes(pickup, delivery, x, y)){
+				for(InsertionCandidate cand : L){
+					double cost = value + cand.delta;
+					for(int it=0; it<n; it++){
+						if(n_best_objective[it] > cost){
+							for(int it2 = n-1; it2 > it; it2--){
+								n_best_objective[it2] = n_best_objective[it2-1];
 							}
+							n_best_objective[it] = cost;
+							break;
 						}
-						tcs.mgr.performRemoveTwoPoints(pickup, delivery);
-						initialSolutionBuilder.removeMoocOnRoutes(tcs, r);
+					}
+					double regret_value = 0;
+					for(int it=1; it<n; it++){
+						regret_value += Math.abs(n_best_objective[it] - n_best_objective[0]);
+					}
+					if(regret_value > best_regret_value){
+						best_regret_value = regret_value;
+						pre_pick = cand.p;
+						pre_delivery = cand.q;
 					}
 				}
 			}
 			if(pre_pick != null && pre_delivery != null){
 				tcs.mgr.performAddTwoPoints(pickup, pre_pick, delivery, pre_delivery);
 				Point st = tcs.XR.getStartingPointOfRoute(tcs.XR.route(pre_pick));
-				int groupTruck = tcs.point2Group.get(st);
-				tcs.group2marked.put(groupTruck, 1);
+				int groupTruck = tcs.getGroup(st);
+				tcs.markedGroups.set(groupTruck);
 				tcs.rejectPickupPoints.remove(pickup);
 				tcs.rejectDeliveryPoints.remove(delivery);
-				tcs.group2marked.put(groupId, 1);
+				tcs.markedGroups.set(groupId);
 				i--;
 			}
 		}
-		initialSolutionBuilder.insertMoocForAllRoutes(tcs);
+		initialSolutionBuilder.insertMoocForChangedRoutes(tcs);
 	}
 	
 	public void first_possible_insertion(){
 		System.out.println("first_possible_insertion");
 		
+		ArrayList<Point> x = new ArrayList<Point>();
+		ArrayList<Point> y = new ArrayList<Point>();
 		for(int i = 0; i < tcs.rejectPickupPoints.size(); i++){
 			Point pickup = tcs.rejectPickupPoints.get(i);
-			int groupId = tcs.point2Group.get(pickup);
+			int groupId = tcs.getGroup(pickup);
 			
 			if(tcs.XR.route(pickup) != Constants.NULL_POINT
-				|| tcs.group2marked.get(groupId) == 1)
+				|| tcs.markedGroups.get(groupId))
 				continue;
 			Point delivery = tcs.pickup2Delivery.get(pickup);
 			//add the request to route
@@ -558,8 +865,10 @@ public class SearchOptimumSolution {
 				if(finded)
 					break;
 				Point st = tcs.XR.getStartingPointOfRoute(r);
-				int groupTruck = tcs.point2Group.get(st);
-				if(tcs.group2marked.get(groupTruck) == 1 && tcs.XR.index(tcs.XR.getTerminatingPointOfRoute(r)) <= 1)
+				int groupTruck = tcs.getGroup(st);
+				if(tcs.markedGroups.get(groupTruck) && tcs.XR.index(tcs.XR.getTerminatingPointOfRoute(r)) <= 1)
+					continue;
+				if(!tcs.compatibility.isCompatible(pickup, r))
 					continue;
 				
 				for(Point p = st; p != tcs.XR.getTerminatingPointOfRoute(r); p = tcs.XR.next(p)){
@@ -573,28 +882,26 @@ public class SearchOptimumSolution {
 //								&& p.getID() % 2 == 1
 //								&& pickup.getID() % 2 == 1))
 //								System.out.println("bug");
-						tcs.mgr.performAddTwoPoints(pickup, p, delivery, q);
-						initialSolutionBuilder.insertMoocToRoutes(tcs, r);
-						if(tcs.S.violations() == 0){
-							double cost = tcs.objective.getValue();
+						initialSolutionBuilder.buildInsertionMove(tcs, pickup, p, delivery, q, x, y);
+						if(initialSolutionBuilder.screenTimeWindows(tcs, x, y)
+								&& tcs.S.violations() + tcs.S.evaluateAddPoints(x, y) == 0){
+							double cost = tcs.objective.getValue() + tcs.objective.evaluateAddPoints(x, y);
 							if( cost < best_objective){
-								initialSolutionBuilder.removeMoocOnRoutes(tcs, r);
-								tcs.group2marked.put(groupTruck, 1);
+								tcs.mgr.performAddTwoPoints(pickup, p, delivery, q);
+								tcs.markedGroups.set(groupTruck);
 								tcs.rejectPickupPoints.remove(pickup);
 								tcs.rejectDeliveryPoints.remove(delivery);
-								tcs.group2marked.put(groupId, 1);
+								tcs.markedGroups.set(groupId);
 								finded = true;
 								i--;
 								break;
 							}
 						}
-						tcs.mgr.performRemoveTwoPoints(pickup, delivery);
-						initialSolutionBuilder.removeMoocOnRoutes(tcs, r);
 					}
 				}
 			}
 		}
-		initialSolutionBuilder.insertMoocForAllRoutes(tcs);
+		initialSolutionBuilder.insertMoocForChangedRoutes(tcs);
 	}
 	
 	public void sort_before_insertion(int iInsertion){
@@ -609,39 +916,31 @@ public class SearchOptimumSolution {
 			case 3: first_possible_insertion(); break;
 		}
 		
-		Collections.shuffle(tcs.rejectPickupPoints);
+		Collections.shuffle(tcs.rejectPickupPoints, tcs.random);
 	}
 	
+	// sorts the rejected requests by increasing time flexibility, then by ordinal of their pickup
+	// point, so that the order does not depend on the hash codes of the points
 	private void sort_reject_people(){
-		HashMap<Point, Integer> time_flexibility = new HashMap<Point, Integer>();
-		
-		for(int i = 0; i < tcs.rejectPickupPoints.size(); i++){
-			Point pickup = tcs.rejectPickupPoints.get(i);
+		final int[] time_flexibility = new int[tcs.XR.getTotalNbPoints()];
+		ArrayList<Point> rejectPointSorted = new ArrayList<Point>();
+		for(Point pickup : new LinkedHashSet<Point>(tcs.rejectPickupPoints)){
 			Point delivery = tcs.pickup2Delivery.get(pickup);
 			
-			int lp = tcs.lastestAllowedArrivalTime.get(pickup);
-			int ud = tcs.earliestAllowedArrivalTime.get(delivery);
+			int lp = tcs.lastestAllowedArrivalTime[pickup.getIndex()];
+			int ud = tcs.earliestAllowedArrivalTime[delivery.getIndex()];
 			
-			time_flexibility.put(pickup, ud-lp);
+			time_flexibility[pickup.getIndex()] = ud-lp;
+			rejectPointSorted.add(pickup);
 		}
 		
-		List<Point> keys = new ArrayList<Point>(time_flexibility.keySet());
-		List<Integer> values = new ArrayList<Integer>(time_flexibility.values());
-		Collections.sort(values);
-		
-		ArrayList<Point> rejectPointSorted = new ArrayList<Point>();
-		for(int i = 0; i < values.size(); i++){
-			int v = values.get(i);
-			for(int j = 0; j < keys.size(); j++){
-				Point p = keys.get(j);
-				int vs = time_flexibility.get(p);
-				if(vs == v){
-					rejectPointSorted.add(p);
-					keys.remove(p);
-					break;
-				}
+		Collections.sort(rejectPointSorted, new Comparator<Point>(){
+			public int compare(Point a, Point b){
+				int fa = time_flexibility[a.getIndex()];
+				int fb = time_flexibility[b.getIndex()];
+				return fa != fb ? Integer.compare(fa, fb) : Integer.compare(a.getIndex(), b.getIndex());
 			}
-		}
+		});
 		tcs.rejectPickupPoints = rejectPointSorted;
 	}
 }
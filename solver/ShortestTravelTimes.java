@@ -0,0 +1,44 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Shortest travel times between the locations through any locations: the travel times do not
+ * satisfy the triangle inequality. They are computed by Floyd-Warshall, in O(L^3) for L locations,
+ * at the first call of get(), so that reading the data does not pay for them, and only once for
+ * the solvers sharing the data (createSolverOnSameData).
+ */
+public class ShortestTravelTimes {
+	private final int[][] travelTime;
+	// shortest[i][j] is the shortest travel time from location i to location j, null until computed
+	private int[][] shortest;
+
+	public ShortestTravelTimes(int[][] travelTime) {
+		this.travelTime = travelTime;
+	}
+
+	public synchronized int[][] get() {
+		if (shortest == null)
+			shortest = compute();
+		return shortest;
+	}
+
+	private int[][] compute() {
+		int size = travelTime.length;
+		int[][] sp = new int[size][];
+		for (int i = 0; i < size; i++)
+			sp[i] = Arrays.copyOf(travelTime[i], size);
+		for (int k = 0; k < size; k++) {
+			int[] tk = sp[k];
+			for (int i = 0; i < size; i++) {
+				int[] ti = sp[i];
+				int tik = ti[k];
+				for (int j = 0; j < size; j++) {
+					if (tik + tk[j] < ti[j])
+						ti[j] = tik + tk[j];
+				}
+			}
+		}
+		return sp;
+	}
+}
@@ -1,11 +1,13 @@
 package solver;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 
 import models.equipments.Container;
 import models.equipments.Mooc;
 import models.equipments.Truck;
+import models.input.ConfigParam;
 import models.places.DepotContainer;
 import models.places.DepotMooc;
 import models.places.DepotTruck;
@@ -15,15 +17,18 @@ import models.requests.ExportEmptyRequests;
 import models.requests.ExportLadenRequests;
 import models.requests.ImportEmptyRequests;
 import models.requests.ImportLadenRequests;
-import vrp.entities.ArcWeightsManager;
-import vrp.entities.NodeWeightsManager;
 import vrp.entities.Point;
 import vrp.utils.DateTimeUtils;
 
 public class TruckContainerInitializer {
+	// exEmptyPickupLocations[i] are the container depots where export-empty request i may take its
+	// container, imEmptyDeliveryLocations[i] those where import-empty request i may return it
+	private ArrayList<ArrayList<String>> exEmptyPickupLocations;
+	private ArrayList<ArrayList<String>> imEmptyDeliveryLocations;
 
 	public void init(TruckContainerSolver solver) {
 		loadRequestsAndCounts(solver);
+		computeEmptyContainerAlternatives(solver);
 		initCollections(solver);
 
 		int id = 0;
@@ -37,7 +42,8 @@ public class TruckContainerInitializer {
 		cursor = buildImportEmptyRequestPoints(solver, cursor);
 		cursor = buildImportLadenRequestPoints(solver, cursor);
 
-		buildWeightManagersAndMaxTravelTime(solver);
+		solver.nGroups = cursor.groupId;
+		solver.markedGroups = new BitSet(solver.nGroups + 1);
 	}
 
 	private void loadRequestsAndCounts(TruckContainerSolver solver) {
@@ -53,9 +59,14 @@ public class TruckContainerInitializer {
 
 	private void initCollections(TruckContainerSolver solver) {
 		solver.points = new ArrayList<Point>();
-		solver.earliestAllowedArrivalTime = new HashMap<Point, Integer>();
-		solver.serviceDuration = new HashMap<Point, Integer>();
-		solver.lastestAllowedArrivalTime = new HashMap<Point, Integer>();
+		int n = countPoints(solver);
+		solver.pointKind = new byte[n];
+		solver.earliestAllowedArrivalTime = new int[n];
+		solver.serviceDuration = new int[n];
+		solver.lastestAllowedArrivalTime = new int[n];
+		solver.point2Group = new int[n];
+		solver.point2moocWeight = new int[n];
+		solver.point2containerWeight = new int[n];
 
 		solver.pickupPoints = new ArrayList<Point>();
 		solver.deliveryPoints = new ArrayList<Point>();
@@ -65,7 +76,6 @@ public class TruckContainerInitializer {
 		solver.stopPoints = new ArrayList<Point>();
 		solver.startMoocPoints = new ArrayList<Point>();
 		solver.stopMoocPoints = new ArrayList<Point>();
-		solver.point2Type = new HashMap<Point, String>();
 
 		solver.pickup2Delivery = new HashMap<Point, Point>();
 		solver.delivery2Pickup = new HashMap<Point, Point>();
@@ -76,20 +86,116 @@ public class TruckContainerInitializer {
 		solver.startPoint2Truck = new HashMap<Point, Truck>();
 		solver.startPoint2Mooc = new HashMap<Point, Mooc>();
 
-		solver.point2Group = new HashMap<Point, Integer>();
-		solver.group2marked = new HashMap<Integer, Integer>();
-
 		solver.group2EE = new HashMap<Integer, ExportEmptyRequests>();
 		solver.group2EL = new HashMap<Integer, ExportLadenRequests>();
 		solver.group2IE = new HashMap<Integer, ImportEmptyRequests>();
 		solver.group2IL = new HashMap<Integer, ImportLadenRequests>();
 
-		solver.point2moocWeight = new HashMap<Point, Integer>();
-		solver.point2containerWeight = new HashMap<Point, Integer>();
-
 		solver.route2DeliveryMooc = new HashMap<Integer, Point>();
 	}
 
+	/**
+	 * The container of an export-empty request may be taken at the depot of any non-imported container,
+	 * and the container of an import-empty request returned at any container depot: each alternative
+	 * is a pickup/delivery pair of the request, all the pairs of a request sharing its group.
+	 * The containers of the same depot give the same points, so that there is one alternative per
+	 * location, and an alternative which no truck can serve in time is dropped (the first one is kept
+	 * if none can, so that the request is still reported unscheduled).
+	 */
+	private void computeEmptyContainerAlternatives(TruckContainerSolver solver) {
+		ConfigParam params = solver.input.getParams();
+		exEmptyPickupLocations = new ArrayList<ArrayList<String>>();
+		for (int i = 0; i < solver.exEmptyRequests.length; i++) {
+			ExportEmptyRequests R = solver.exEmptyRequests[i];
+			String wh = solver.mCode2Warehouse.get(R.getWareHouseCode()).getLocationCode();
+			int early = dateTime2Int(R.getEarlyDateTimePickupAtDepot(), 0);
+			int latest = dateTime2Int(R.getLateDateTimePickupAtDepot(), solver.INF_TIME);
+			int whLatest = dateTime2Int(R.getLateDateTimeLoadAtWarehouse(), solver.INF_TIME);
+			ArrayList<String> L = new ArrayList<String>();
+			for (int j = 0; j < solver.input.getContainers().length; j++) {
+				Container c = solver.input.getContainers()[j];
+				if (c.isImportedContainer() || L.contains(c.getDepotContainerCode()))
+					continue;
+				if (L.isEmpty() || canBeServedInTime(solver, c.getDepotContainerCode(), early, latest,
+						params.getLinkEmptyContainerDuration(), wh, whLatest))
+					L.add(c.getDepotContainerCode());
+			}
+			if (L.size() > 1 && !canBeServedInTime(solver, L.get(0), early, latest,
+					params.getLinkEmptyContainerDuration(), wh, whLatest))
+				L.remove(0);
+			exEmptyPickupLocations.add(L);
+		}
+
+		imEmptyDeliveryLocations = new ArrayList<ArrayList<String>>();
+		for (int i = 0; i < solver.imEmptyRequests.length; i++) {
+			ImportEmptyRequests R = solver.imEmptyRequests[i];
+			String wh = solver.mCode2Warehouse.get(R.getWareHouseCode()).getLocationCode();
+			int early = dateTime2Int(R.getEarlyDateTimeAttachAtWarehouse(), 0);
+			int depotLatest = dateTime2Int(R.getLateDateTimeReturnEmptyAtDepot(), solver.INF_TIME);
+			ArrayList<String> L = new ArrayList<String>();
+			for (int j = 0; j < solver.input.getDepotContainers().length; j++) {
+				DepotContainer depotCont = solver.input.getDepotContainers()[j];
+				if (L.contains(depotCont.getLocationCode()))
+					continue;
+				if (L.isEmpty() || canBeServedInTime(solver, wh, early, solver.INF_TIME,
+						params.getLinkEmptyContainerDuration(), depotCont.getLocationCode(), depotLatest))
+					L.add(depotCont.getLocationCode());
+			}
+			if (L.size() > 1 && !canBeServedInTime(solver, wh, early, solver.INF_TIME,
+					params.getLinkEmptyContainerDuration(), L.get(0), depotLatest))
+				L.remove(0);
+			imEmptyDeliveryLocations.add(L);
+		}
+	}
+
+	// true if a truck leaving its depot at its start working time can reach the pickup location
+	// before latest and then the delivery location before deliveryLatest, along the shortest paths
+	private boolean canBeServedInTime(TruckContainerSolver solver, String pickup, int early, int latest,
+			int service, String delivery, int deliveryLatest) {
+		int[][] sp = solver.shortestTravelTimes.get();
+		int ip = solver.getLocationIndex(pickup);
+		int id = solver.getLocationIndex(delivery);
+		for (int k = 0; k < solver.nVehicle; k++) {
+			Truck truck = solver.input.getTrucks()[k];
+			double t = dateTime2Int(truck.getStartWorkingTime(), 0)
+					+ sp[solver.getLocationIndex(truck.getDepotTruckLocationCode())][ip];
+			if (t > latest)
+				continue;
+			if (Math.max(t, early) + service + sp[ip][id] <= deliveryLatest)
+				return true;
+		}
+		return false;
+	}
+
+	private int dateTime2Int(String dateTime, int defaultValue) {
+		if (dateTime == null)
+			return defaultValue;
+		return (int) (DateTimeUtils.dateTime2Int(dateTime));
+	}
+
+	// number of points created by the build*Points methods below
+	private int countPoints(TruckContainerSolver solver) {
+		int n = 0;
+		for (int i = 0; i < solver.input.getTrucks().length; i++)
+			n += 2 * solver.input.getTrucks()[i].getReturnDepotCodes().length;
+		for (int i = 0; i < solver.input.getMoocs().length; i++)
+			n += 2 * solver.input.getMoocs()[i].getReturnDepotCodes().length;
+		for (int i = 0; i < solver.exEmptyRequests.length; i++)
+			n += 2 * exEmptyPickupLocations.get(i).size();
+		n += 2 * solver.exLadenRequests.length;
+		for (int i = 0; i < solver.imEmptyRequests.length; i++)
+			n += 2 * imEmptyDeliveryLocations.get(i).size();
+		n += 2 * solver.imLadenRequests.length;
+		return n;
+	}
+
+	// appends p to solver.points and returns its position, which is also the ordinal p gets
+	// when TruckContainerModelBuilder registers solver.points (in this order) to VarRoutesVR
+	private int addPoint(TruckContainerSolver solver, Point p) {
+		solver.points.add(p);
+		return solver.points.size() - 1;
+	}
+
 	private IdAndGroup buildTruckPoints(TruckContainerSolver solver, IdAndGroup cursor) {
 		int id = cursor.id;
 		int groupId = cursor.groupId;
@@ -97,42 +203,41 @@ public class TruckContainerInitializer {
 		for (int i = 0; i < solver.nVehicle; i++) {
 			Truck truck = solver.input.getTrucks()[i];
 			groupId++;
-			solver.group2marked.put(groupId, 0);
 			for (int j = 0; j < truck.getReturnDepotCodes().length; j++) {
 				id++;
 				Point sp = new Point(id, truck.getDepotTruckLocationCode());
 
-				solver.points.add(sp);
+				int iSp = addPoint(solver, sp);
 				solver.startPoints.add(sp);
-				solver.point2Type.put(sp, TruckContainerSolver.START_TRUCK);
+				solver.pointKind[iSp] = PointKind.START_TRUCK.toByte();
 				solver.startPoint2Truck.put(sp, truck);
 
-				solver.point2Group.put(sp, groupId);
+				solver.point2Group[iSp] = groupId;
 
-				solver.earliestAllowedArrivalTime.put(sp,
-						(int) (DateTimeUtils.dateTime2Int(truck.getStartWorkingTime())));
-				solver.serviceDuration.put(sp, 0);
-				solver.lastestAllowedArrivalTime.put(sp, solver.INF_TIME);
+				solver.earliestAllowedArrivalTime[iSp] =
+						(int) (DateTimeUtils.dateTime2Int(truck.getStartWorkingTime()));
+				solver.serviceDuration[iSp] = 0;
+				solver.lastestAllowedArrivalTime[iSp] = solver.INF_TIME;
 
 				id++;
 				DepotTruck depotTruck = solver.mCode2DepotTruck.get(truck.getReturnDepotCodes()[j]);
 				Point tp = new Point(id, depotTruck.getLocationCode());
-				solver.points.add(tp);
+				int iTp = addPoint(solver, tp);
 				solver.stopPoints.add(tp);
-				solver.point2Type.put(tp, TruckContainerSolver.END_TRUCK);
+				solver.pointKind[iTp] = PointKind.END_TRUCK.toByte();
 
-				solver.point2Group.put(tp, groupId);
+				solver.point2Group[iTp] = groupId;
 
-				solver.earliestAllowedArrivalTime.put(tp,
-						(int) (DateTimeUtils.dateTime2Int(solver.input.getTrucks()[i].getStartWorkingTime())));
-				solver.serviceDuration.put(tp, 0);
-				solver.lastestAllowedArrivalTime.put(tp, solver.INF_TIME);
+				solver.earliestAllowedArrivalTime[iTp] =
+						(int) (DateTimeUtils.dateTime2Int(solver.input.getTrucks()[i].getStartWorkingTime()));
+				solver.serviceDuration[iTp] = 0;
+				solver.lastestAllowedArrivalTime[iTp] = solver.INF_TIME;
 
-				solver.point2moocWeight.put(sp, 0);
-				solver.point2moocWeight.put(tp, 0);
+				solver.point2moocWeight[iSp] = 0;
+				solver.point2moocWeight[iTp] = 0;
 
-				solver.point2containerWeight.put(sp, 0);
-				solver.point2containerWeight.put(tp, 0);
+				solver.point2containerWeight[iSp] = 0;
+				solver.point2containerWeight[iTp] = 0;
 			}
 		}
 
@@ -146,42 +251,41 @@ public class TruckContainerInitializer {
 		for (int i = 0; i < solver.input.getMoocs().length; i++) {
 			Mooc mooc = solver.input.getMoocs()[i];
 			groupId++;
-			solver.group2marked.put(groupId, 0);
 			for (int j = 0; j < mooc.getReturnDepotCodes().length; j++) {
 				id++;
 				Point sp = new Point(id, mooc.getDepotMoocLocationCode());
-				solver.points.add(sp);
+				int iSp = addPoint(solver, sp);
 				solver.startMoocPoints.add(sp);
-				solver.point2Type.put(sp, TruckContainerSolver.START_MOOC);
+				solver.pointKind[iSp] = PointKind.START_MOOC.toByte();
 				solver.startPoint2Mooc.put(sp, mooc);
 
-				solver.point2Group.put(sp, groupId);
+				solver.point2Group[iSp] = groupId;
 
-				solver.earliestAllowedArrivalTime.put(sp, 0);
-				solver.serviceDuration.put(sp, solver.input.getParams().getLinkMoocDuration());
-				solver.lastestAllowedArrivalTime.put(sp, solver.INF_TIME);
+				solver.earliestAllowedArrivalTime[iSp] = 0;
+				solver.serviceDuration[iSp] = solver.input.getParams().getLinkMoocDuration();
+				solver.lastestAllowedArrivalTime[iSp] = solver.INF_TIME;
 
 				id++;
 				String moocCode = mooc.getReturnDepotCodes()[j];
 				DepotMooc depotMooc = solver.mCode2DepotMooc.get(moocCode);
 				Point tp = new Point(id, depotMooc.getLocationCode());
-				solver.points.add(tp);
+				int iTp = addPoint(solver, tp);
 				solver.stopMoocPoints.add(tp);
-				solver.point2Type.put(tp, TruckContainerSolver.END_MOOC);
-				solver.point2Group.put(tp, groupId);
+				solver.pointKind[iTp] = PointKind.END_MOOC.toByte();
+				solver.point2Group[iTp] = groupId;
 
-				solver.earliestAllowedArrivalTime.put(tp, 0);
-				solver.serviceDuration.put(tp, 0);
-				solver.lastestAllowedArrivalTime.put(tp, solver.INF_TIME);
+				solver.earliestAllowedArrivalTime[iTp] = 0;
+				solver.serviceDuration[iTp] = 0;
+				solver.lastestAllowedArrivalTime[iTp] = solver.INF_TIME;
 
 				solver.start2stopMoocPoint.put(sp, tp);
 				solver.stop2startMoocPoint.put(tp, sp);
 
-				solver.point2moocWeight.put(sp, 2);
-				solver.point2moocWeight.put(tp, -2);
+				solver.point2moocWeight[iSp] = 2;
+				solver.point2moocWeight[iTp] = -2;
 
-				solver.point2containerWeight.put(sp, 0);
-				solver.point2containerWeight.put(tp, 0);
+				solver.point2containerWeight[iSp] = 0;
+				solver.point2containerWeight[iTp] = 0;
 			}
 		}
 
@@ -194,23 +298,16 @@ public class TruckContainerInitializer {
 
 		for (int i = 0; i < solver.exEmptyRequests.length; i++) {
 			groupId++;
-			solver.group2marked.put(groupId, 0);
 			solver.group2EE.put(groupId, solver.exEmptyRequests[i]);
-			for (int j = 0; j < solver.input.getContainers().length; j++) {
-				Container c = solver.input.getContainers()[j];
-				if (c.isImportedContainer())
-					continue;
-
-				// kept for parity with original implementation
-				DepotContainer depotCont = solver.mCode2DepotContainer.get(c.getDepotContainerCode());
+			for (String depotContainerCode : exEmptyPickupLocations.get(i)) {
 				id++;
-				Point pickup = new Point(id, c.getDepotContainerCode());
+				Point pickup = new Point(id, depotContainerCode);
 				id++;
 				Warehouse wh = solver.mCode2Warehouse.get(solver.exEmptyRequests[i].getWareHouseCode());
 				Point delivery = new Point(id, wh.getLocationCode());
 
-				solver.points.add(pickup);
-				solver.points.add(delivery);
+				int iPickup = addPoint(solver, pickup);
+				int iDelivery = addPoint(solver, delivery);
 
 				solver.pickupPoints.add(pickup);
 				solver.deliveryPoints.add(delivery);
@@ -218,25 +315,25 @@ public class TruckContainerInitializer {
 				solver.pickup2Delivery.put(pickup, delivery);
 				solver.delivery2Pickup.put(delivery, pickup);
 
-				solver.point2moocWeight.put(pickup, 0);
+				solver.point2moocWeight[iPickup] = 0;
 				if (solver.exEmptyRequests[i].getIsBreakRomooc())
-					solver.point2moocWeight.put(delivery, -2);
+					solver.point2moocWeight[iDelivery] = -2;
 				else
-					solver.point2moocWeight.put(delivery, 0);
+					solver.point2moocWeight[iDelivery] = 0;
 
-				solver.point2containerWeight.put(pickup, 1);
-				solver.point2containerWeight.put(delivery, -1);
+				solver.point2containerWeight[iPickup] = 1;
+				solver.point2containerWeight[iDelivery] = -1;
 				if (solver.exEmptyRequests[i].getContainerType() != null
 						&& solver.exEmptyRequests[i].getContainerType().equals("40")) {
-					solver.point2containerWeight.put(pickup, 2);
-					solver.point2containerWeight.put(delivery, -2);
+					solver.point2containerWeight[iPickup] = 2;
+					solver.point2containerWeight[iDelivery] = -2;
 				}
 
-				solver.point2Type.put(pickup, TruckContainerSolver.START_CONT);
-				solver.point2Type.put(delivery, TruckContainerSolver.WH_DELIVERY_EMPTYCONT);
+				solver.pointKind[iPickup] = PointKind.START_CONT.toByte();
+				solver.pointKind[iDelivery] = PointKind.WH_DELIVERY_EMPTYCONT.toByte();
 
-				solver.point2Group.put(pickup, groupId);
-				solver.point2Group.put(delivery, groupId);
+				solver.point2Group[iPickup] = groupId;
+				solver.point2Group[iDelivery] = groupId;
 
 				int early = 0;
 				int latest = solver.INF_TIME;
@@ -244,9 +341,9 @@ public class TruckContainerInitializer {
 					early = (int) (DateTimeUtils.dateTime2Int(solver.exEmptyRequests[i].getEarlyDateTimePickupAtDepot()));
 				if (solver.exEmptyRequests[i].getLateDateTimePickupAtDepot() != null)
 					latest = (int) (DateTimeUtils.dateTime2Int(solver.exEmptyRequests[i].getLateDateTimePickupAtDepot()));
-				solver.earliestAllowedArrivalTime.put(pickup, early);
-				solver.serviceDuration.put(pickup, solver.input.getParams().getLinkEmptyContainerDuration());
-				solver.lastestAllowedArrivalTime.put(pickup, latest);
+				solver.earliestAllowedArrivalTime[iPickup] = early;
+				solver.serviceDuration[iPickup] = solver.input.getParams().getLinkEmptyContainerDuration();
+				solver.lastestAllowedArrivalTime[iPickup] = latest;
 
 				early = 0;
 				latest = solver.INF_TIME;
@@ -254,9 +351,9 @@ public class TruckContainerInitializer {
 					early = (int) (DateTimeUtils.dateTime2Int(solver.exEmptyRequests[i].getEarlyDateTimeLoadAtWarehouse()));
 				if (solver.exEmptyRequests[i].getLateDateTimeLoadAtWarehouse() != null)
 					latest = (int) (DateTimeUtils.dateTime2Int(solver.exEmptyRequests[i].getLateDateTimeLoadAtWarehouse()));
-				solver.earliestAllowedArrivalTime.put(delivery, early);
-				solver.serviceDuration.put(delivery, (int) (solver.input.getParams().getUnlinkEmptyContainerDuration()));
-				solver.lastestAllowedArrivalTime.put(delivery, latest);
+				solver.earliestAllowedArrivalTime[iDelivery] = early;
+				solver.serviceDuration[iDelivery] = (int) (solver.input.getParams().getUnlinkEmptyContainerDuration());
+				solver.lastestAllowedArrivalTime[iDelivery] = latest;
 			}
 		}
 
@@ -269,7 +366,6 @@ public class TruckContainerInitializer {
 
 		for (int i = 0; i < solver.exLadenRequests.length; i++) {
 			groupId++;
-			solver.group2marked.put(groupId, 0);
 			solver.group2EL.put(groupId, solver.exLadenRequests[i]);
 			id++;
 			Warehouse wh = solver.mCode2Warehouse.get(solver.exLadenRequests[i].getWareHouseCode());
@@ -278,8 +374,8 @@ public class TruckContainerInitializer {
 			Port port = solver.mCode2Port.get(solver.exLadenRequests[i].getPortCode());
 			Point delivery = new Point(id, port.getLocationCode());
 
-			solver.points.add(pickup);
-			solver.points.add(delivery);
+			int iPickup = addPoint(solver, pickup);
+			int iDelivery = addPoint(solver, delivery);
 
 			solver.pickupPoints.add(pickup);
 			solver.deliveryPoints.add(delivery);
@@ -287,24 +383,24 @@ public class TruckContainerInitializer {
 			solver.pickup2Delivery.put(pickup, delivery);
 			solver.delivery2Pickup.put(delivery, pickup);
 
-			solver.point2Type.put(pickup, TruckContainerSolver.WH_PICKUP_FULLCONT);
-			solver.point2Type.put(delivery, TruckContainerSolver.PORT_DELIVERY_FULLCONT);
+			solver.pointKind[iPickup] = PointKind.WH_PICKUP_FULLCONT.toByte();
+			solver.pointKind[iDelivery] = PointKind.PORT_DELIVERY_FULLCONT.toByte();
 
-			solver.point2Group.put(pickup, groupId);
-			solver.point2Group.put(delivery, groupId);
+			solver.point2Group[iPickup] = groupId;
+			solver.point2Group[iDelivery] = groupId;
 
-			solver.point2moocWeight.put(pickup, 0);
+			solver.point2moocWeight[iPickup] = 0;
 			if (solver.exLadenRequests[i].getIsBreakRomooc())
-				solver.point2moocWeight.put(delivery, -2);
+				solver.point2moocWeight[iDelivery] = -2;
 			else
-				solver.point2moocWeight.put(delivery, 0);
+				solver.point2moocWeight[iDelivery] = 0;
 
-			solver.point2containerWeight.put(pickup, 1);
-			solver.point2containerWeight.put(delivery, -1);
+			solver.point2containerWeight[iPickup] = 1;
+			solver.point2containerWeight[iDelivery] = -1;
 			if (solver.exLadenRequests[i].getContainerType() != null
 					&& solver.exLadenRequests[i].getContainerType().equals("40")) {
-				solver.point2containerWeight.put(pickup, 2);
-				solver.point2containerWeight.put(delivery, -2);
+				solver.point2containerWeight[iPickup] = 2;
+				solver.point2containerWeight[iDelivery] = -2;
 			}
 
 			int early = 0;
@@ -312,17 +408,17 @@ public class TruckContainerInitializer {
 			if (solver.exLadenRequests[i].getEarlyDateTimeAttachAtWarehouse() != null)
 				early = (int) (DateTimeUtils.dateTime2Int(solver.exLadenRequests[i].getEarlyDateTimeAttachAtWarehouse()));
 
-			solver.earliestAllowedArrivalTime.put(pickup, early);
-			solver.serviceDuration.put(pickup, solver.input.getParams().getLinkLoadedContainerDuration());
-			solver.lastestAllowedArrivalTime.put(pickup, latest);
+			solver.earliestAllowedArrivalTime[iPickup] = early;
+			solver.serviceDuration[iPickup] = solver.input.getParams().getLinkLoadedContainerDuration();
+			solver.lastestAllowedArrivalTime[iPickup] = latest;
 
 			early = 0;
 			latest = solver.INF_TIME;
 			if (solver.exLadenRequests[i].getLateDateTimeUnloadAtPort() != null)
 				latest = (int) (DateTimeUtils.dateTime2Int(solver.exLadenRequests[i].getLateDateTimeUnloadAtPort()));
-			solver.earliestAllowedArrivalTime.put(delivery, early);
-			solver.serviceDuration.put(delivery, (int) (solver.input.getParams().getUnlinkLoadedContainerDuration()));
-			solver.lastestAllowedArrivalTime.put(delivery, latest);
+			solver.earliestAllowedArrivalTime[iDelivery] = early;
+			solver.serviceDuration[iDelivery] = (int) (solver.input.getParams().getUnlinkLoadedContainerDuration());
+			solver.lastestAllowedArrivalTime[iDelivery] = latest;
 		}
 
 		return new IdAndGroup(id, groupId);
@@ -334,19 +430,17 @@ public class TruckContainerInitializer {
 
 		for (int i = 0; i < solver.imEmptyRequests.length; i++) {
 			groupId++;
-			solver.group2marked.put(groupId, 0);
 			solver.group2IE.put(groupId, solver.imEmptyRequests[i]);
-			for (int j = 0; j < solver.input.getDepotContainers().length; j++) {
-				DepotContainer depotCont = solver.input.getDepotContainers()[j];
+			for (String depotLocationCode : imEmptyDeliveryLocations.get(i)) {
 				id++;
 				Warehouse wh = solver.mCode2Warehouse.get(solver.imEmptyRequests[i].getWareHouseCode());
 				Point pickup = new Point(id, wh.getLocationCode());
 				id++;
 
-				Point delivery = new Point(id, depotCont.getLocationCode());
+				Point delivery = new Point(id, depotLocationCode);
 
-				solver.points.add(pickup);
-				solver.points.add(delivery);
+				int iPickup = addPoint(solver, pickup);
+				int iDelivery = addPoint(solver, delivery);
 
 				solver.pickupPoints.add(pickup);
 				solver.deliveryPoints.add(delivery);
@@ -354,39 +448,39 @@ public class TruckContainerInitializer {
 				solver.pickup2Delivery.put(pickup, delivery);
 				solver.delivery2Pickup.put(delivery, pickup);
 
-				solver.point2moocWeight.put(pickup, 0);
-				solver.point2moocWeight.put(delivery, 0);
+				solver.point2moocWeight[iPickup] = 0;
+				solver.point2moocWeight[iDelivery] = 0;
 
-				solver.point2containerWeight.put(pickup, 1);
-				solver.point2containerWeight.put(delivery, -1);
+				solver.point2containerWeight[iPickup] = 1;
+				solver.point2containerWeight[iDelivery] = -1;
 				if (solver.imEmptyRequests[i].getContainerType() != null
 						&& solver.imEmptyRequests[i].getContainerType().equals("40")) {
-					solver.point2containerWeight.put(pickup, 2);
-					solver.point2containerWeight.put(delivery, -2);
+					solver.point2containerWeight[iPickup] = 2;
+					solver.point2containerWeight[iDelivery] = -2;
 				}
 
-				solver.point2Type.put(pickup, TruckContainerSolver.WH_PICKUP_EMPTYCONT);
-				solver.point2Type.put(delivery, TruckContainerSolver.END_CONT);
+				solver.pointKind[iPickup] = PointKind.WH_PICKUP_EMPTYCONT.toByte();
+				solver.pointKind[iDelivery] = PointKind.END_CONT.toByte();
 
-				solver.point2Group.put(pickup, groupId);
-				solver.point2Group.put(delivery, groupId);
+				solver.point2Group[iPickup] = groupId;
+				solver.point2Group[iDelivery] = groupId;
 
 				int early = 0;
 				int latest = solver.INF_TIME;
 				if (solver.imEmptyRequests[i].getEarlyDateTimeAttachAtWarehouse() != null)
 					early = (int) (DateTimeUtils.dateTime2Int(solver.imEmptyRequests[i].getEarlyDateTimeAttachAtWarehouse()));
-				solver.earliestAllowedArrivalTime.put(pickup, early);
-				solver.serviceDuration.put(pickup, solver.input.getParams().getLinkEmptyContainerDuration());
-				solver.lastestAllowedArrivalTime.put(pickup, latest);
+				solver.earliestAllowedArrivalTime[iPickup] = early;
+				solver.serviceDuration[iPickup] = solver.input.getParams().getLinkEmptyContainerDuration();
+				solver.lastestAllowedArrivalTime[iPickup] = latest;
 
 				early = 0;
 				latest = solver.INF_TIME;
 
 				if (solver.imEmptyRequests[i].getLateDateTimeReturnEmptyAtDepot() != null)
 					latest = (int) (DateTimeUtils.dateTime2Int(solver.imEmptyRequests[i].getLateDateTimeReturnEmptyAtDepot()));
-				solver.earliestAllowedArrivalTime.put(delivery, early);
-				solver.serviceDuration.put(delivery, (int) (solver.input.getParams().getUnlinkEmptyContainerDuration()));
-				solver.lastestAllowedArrivalTime.put(delivery, latest);
+				solver.earliestAllowedArrivalTime[iDelivery] = early;
+				solver.serviceDuration[iDelivery] = (int) (solver.input.getParams().getUnlinkEmptyContainerDuration());
+				solver.lastestAllowedArrivalTime[iDelivery] = latest;
 			}
 		}
 
@@ -399,7 +493,6 @@ public class TruckContainerInitializer {
 
 		for (int i = 0; i < solver.imLadenRequests.length; i++) {
 			groupId++;
-			solver.group2marked.put(groupId, 0);
 			solver.group2IL.put(groupId, solver.imLadenRequests[i]);
 			id++;
 			Port port = solver.mCode2Port.get(solver.imLadenRequests[i].getPortCode());
@@ -409,8 +502,8 @@ public class TruckContainerInitializer {
 			Warehouse wh = solver.mCode2Warehouse.get(solver.imLadenRequests[i].getWareHouseCode());
 			Point delivery = new Point(id, wh.getLocationCode());
 
-			solver.points.add(pickup);
-			solver.points.add(delivery);
+			int iPickup = addPoint(solver, pickup);
+			int iDelivery = addPoint(solver, delivery);
 
 			solver.pickupPoints.add(pickup);
 			solver.deliveryPoints.add(delivery);
@@ -418,25 +511,25 @@ public class TruckContainerInitializer {
 			solver.pickup2Delivery.put(pickup, delivery);
 			solver.delivery2Pickup.put(delivery, pickup);
 
-			solver.point2moocWeight.put(pickup, 0);
+			solver.point2moocWeight[iPickup] = 0;
 			if (solver.imLadenRequests[i].getIsBreakRomooc())
-				solver.point2moocWeight.put(delivery, -2);
+				solver.point2moocWeight[iDelivery] = -2;
 			else
-				solver.point2moocWeight.put(delivery, 0);
+				solver.point2moocWeight[iDelivery] = 0;
 
-			solver.point2containerWeight.put(pickup, 1);
-			solver.point2containerWeight.put(delivery, -1);
+			solver.point2containerWeight[iPickup] = 1;
+			solver.point2containerWeight[iDelivery] = -1;
 			if (solver.imLadenRequests[i].getContainerType() != null
 					&& solver.imLadenRequests[i].getContainerType().equals("40")) {
-				solver.point2containerWeight.put(pickup, 2);
-				solver.point2containerWeight.put(delivery, -2);
+				solver.point2containerWeight[iPickup] = 2;
+				solver.point2containerWeight[iDelivery] = -2;
 			}
 
-			solver.point2Type.put(pickup, TruckContainerSolver.PORT_PICKUP_FULLCONT);
-			solver.point2Type.put(delivery, TruckContainerSolver.WH_DELIVERY_FULLCONT);
+			solver.pointKind[iPickup] = PointKind.PORT_PICKUP_FULLCONT.toByte();
+			solver.pointKind[iDelivery] = PointKind.WH_DELIVERY_FULLCONT.toByte();
 
-			solver.point2Group.put(pickup, groupId);
-			solver.point2Group.put(delivery, groupId);
+			solver.point2Group[iPickup] = groupId;
+			solver.point2Group[iDelivery] = groupId;
 
 			int early = 0;
 			int latest = solver.INF_TIME;
@@ -444,9 +537,9 @@ public class TruckContainerInitializer {
 				early = (int) (DateTimeUtils.dateTime2Int(solver.imLadenRequests[i].getEarlyDateTimePickupAtPort()));
 			if (solver.imLadenRequests[i].getLateDateTimePickupAtPort() != null)
 				latest = (int) (DateTimeUtils.dateTime2Int(solver.imLadenRequests[i].getLateDateTimePickupAtPort()));
-			solver.earliestAllowedArrivalTime.put(pickup, early);
-			solver.serviceDuration.put(pickup, solver.input.getParams().getLinkLoadedContainerDuration());
-			solver.lastestAllowedArrivalTime.put(pickup, latest);
+			solver.earliestAllowedArrivalTime[iPickup] = early;
+			solver.serviceDuration[iPickup] = solver.input.getParams().getLinkLoadedContainerDuration();
+			solver.lastestAllowedArrivalTime[iPickup] = latest;
 
 			early = 0;
 			latest = solver.INF_TIME;
@@ -455,32 +548,14 @@ public class TruckContainerInitializer {
 			if (solver.imLadenRequests[i].getLateDateTimeUnloadAtWarehouse() != null)
 				latest = (int) (DateTimeUtils.dateTime2Int(solver.imLadenRequests[i].getLateDateTimeUnloadAtWarehouse()));
 
-			solver.earliestAllowedArrivalTime.put(delivery, early);
-			solver.serviceDuration.put(delivery, (int) (solver.input.getParams().getUnlinkLoadedContainerDuration()));
-			solver.lastestAllowedArrivalTime.put(delivery, latest);
+			solver.earliestAllowedArrivalTime[iDelivery] = early;
+			solver.serviceDuration[iDelivery] = (int) (solver.input.getParams().getUnlinkLoadedContainerDuration());
+			solver.lastestAllowedArrivalTime[iDelivery] = latest;
 		}
 
 		return new IdAndGroup(id, groupId);
 	}
 
-	private void buildWeightManagersAndMaxTravelTime(TruckContainerSolver solver) {
-		solver.nwMooc = new NodeWeightsManager(solver.points);
-		solver.nwContainer = new NodeWeightsManager(solver.points);
-		solver.awm = new ArcWeightsManager(solver.points);
-		double max_time = Double.MIN_VALUE;
-		for (int i = 0; i < solver.points.size(); i++) {
-			for (int j = 0; j < solver.points.size(); j++) {
-				double tmp_cost = solver.getTravelTime(solver.points.get(i).getLocationCode(),
-						solver.points.get(j).getLocationCode());
-				solver.awm.setWeight(solver.points.get(i), solver.points.get(j), tmp_cost);
-				max_time = tmp_cost > max_time ? tmp_cost : max_time;
-			}
-			solver.nwMooc.setWeight(solver.points.get(i), solver.point2moocWeight.get(solver.points.get(i)));
-			solver.nwContainer.setWeight(solver.points.get(i), solver.point2containerWeight.get(solver.points.get(i)));
-		}
-		TruckContainerSolver.MAX_TRAVELTIME = max_time;
-	}
-
 	private static final class IdAndGroup {
 		final int id;
 		final int groupId;
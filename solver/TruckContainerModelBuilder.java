@@ -7,10 +7,13 @@ import vrp.AccumulatedWeightNodesVR;
 import vrp.ConstraintSystemVR;
 import vrp.VRManager;
 import vrp.VarRoutesVR;
+import vrp.entities.ArcWeightsManager;
 import vrp.entities.LexMultiValues;
+import vrp.entities.NodeWeightsManager;
 import vrp.entities.Point;
 import vrp.functions.TotalCostVR;
 import vrp.invariants.EarliestArrivalTimeVR;
+import vrp.invariants.TimeSegmentsVR;
 import vrp.constraints.CEarliestArrivalTimeVR;
 
 public class TruckContainerModelBuilder {
@@ -18,7 +21,10 @@ public class TruckContainerModelBuilder {
 		createCoreVrpObjects(solver);
 		registerRoutes(solver);
 		registerClientPoints(solver);
+		buildWeightManagersAndMaxTravelTime(solver);
+		solver.moocIndex = new NearestMoocIndex(solver);
 		buildTimeWindows(solver);
+		solver.compatibility = new RequestRouteCompatibility(solver);
 		buildAccumulators(solver);
 		buildConstraintsAndObjective(solver);
 	}
@@ -34,23 +40,59 @@ public class TruckContainerModelBuilder {
 			solver.XR.addRoute(solver.startPoints.get(i), solver.stopPoints.get(i));
 	}
 
+	// points are registered in the order of solver.points (the truck points come first and are
+	// already registered as routes), so that the ordinal of a point is its position in solver.points
+	// and the arrays built by TruckContainerInitializer are indexed by ordinal
 	private void registerClientPoints(TruckContainerSolver solver) {
-		for (int i = 0; i < solver.pickupPoints.size(); ++i) {
-			Point pickup = solver.pickupPoints.get(i);
-			Point delivery = solver.deliveryPoints.get(i);
-			solver.XR.addClientPoint(pickup);
-			solver.XR.addClientPoint(delivery);
+		for (int i = 0; i < solver.points.size(); ++i) {
+			Point p = solver.points.get(i);
+			solver.XR.addClientPoint(p);
+			if (p.getIndex() != i) {
+				System.out.println("TruckContainerModelBuilder::registerClientPoints, point " + p.getID()
+						+ " has ordinal " + p.getIndex() + " instead of " + i + ", EXIT");
+				System.exit(-1);
+			}
 		}
-		for (int i = 0; i < solver.startMoocPoints.size(); ++i) {
-			solver.XR.addClientPoint(solver.startMoocPoints.get(i));
-			solver.XR.addClientPoint(solver.stopMoocPoints.get(i));
+	}
+
+	// built once the points are registered, since the managers are indexed by point ordinals;
+	// arc weights are read from the location travel times, so no points x points matrix is built
+	private void buildWeightManagersAndMaxTravelTime(TruckContainerSolver solver) {
+		solver.nwMooc = new NodeWeightsManager(solver.points);
+		solver.nwContainer = new NodeWeightsManager(solver.points);
+		int[] location = new int[solver.points.size()];
+		boolean[] used = new boolean[solver.locationCodes.length];
+		for (int i = 0; i < solver.points.size(); i++) {
+			Point p = solver.points.get(i);
+			int l = solver.getLocationIndex(p.getLocationCode());
+			location[p.getIndex()] = l;
+			used[l] = true;
+			solver.nwMooc.setWeight(p, solver.point2moocWeight[i]);
+			solver.nwContainer.setWeight(p, solver.point2containerWeight[i]);
 		}
+		solver.awm = new ArcWeightsManager(solver.points, solver.travelTime, location);
+		double max_time = Double.MIN_VALUE;
+		for (int a = 0; a < used.length; a++) {
+			if (!used[a])
+				continue;
+			for (int b = 0; b < used.length; b++) {
+				if (used[b] && solver.travelTime[a][b] > max_time)
+					max_time = solver.travelTime[a][b];
+			}
+		}
+		solver.maxTravelTime = max_time;
 	}
 
 	private void buildTimeWindows(TruckContainerSolver solver) {
 		solver.eat = new EarliestArrivalTimeVR(solver.XR, solver.awm, solver.earliestAllowedArrivalTime,
-				solver.serviceDuration);
+				solver.serviceDuration, solver.lastestAllowedArrivalTime);
 		solver.cEarliest = new CEarliestArrivalTimeVR(solver.eat, solver.lastestAllowedArrivalTime);
+		// maintained on every move, so only built for a search evaluating 2-opt* moves
+		if (solver.twoOptStarSegments) {
+			solver.timeSegments = new TimeSegmentsVR(solver.XR, solver.awm, solver.earliestAllowedArrivalTime,
+					solver.serviceDuration, solver.lastestAllowedArrivalTime);
+			solver.cEarliest.setTimeSegments(solver.timeSegments);
+		}
 	}
 
 	private void buildAccumulators(TruckContainerSolver solver) {
@@ -68,7 +110,12 @@ public class TruckContainerModelBuilder {
 		solver.S.post(solver.capContCtr);
 		solver.S.post(solver.capMoocCtr);
 		solver.S.post(solver.contmoocCtr);
-		solver.objective = new TotalCostVR(solver.XR, solver.awm);
+		TotalCostVR cost = new TotalCostVR(solver.XR, solver.awm);
+		solver.objective = cost;
+		if (solver.fusedRouteKernel)
+			solver.routeKernel = new RouteKernelVR(solver.XR, solver.awm, solver.lastestAllowedArrivalTime,
+					solver.eat, solver.cEarliest, solver.accContainerInvr, solver.accMoocInvr, cost,
+					solver.capContCtr, solver.capMoocCtr, solver.contmoocCtr);
 		solver.valueSolution = new LexMultiValues();
 		solver.valueSolution.add(solver.S.violations());
 		solver.valueSolution.add(solver.objective.getValue());
@@ -5,8 +5,10 @@ import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Random;
 
 import com.google.gson.Gson;
 
@@ -14,6 +16,7 @@ import constraints.*;
 import models.equipments.*;
 import models.input.ContainerTruckMoocInput;
 import models.output.StatisticInformation;
+import models.output.TruckContainerSolution;
 import models.output.TruckMoocContainerOutputJson;
 import models.places.*;
 import models.requests.*;
@@ -27,6 +30,7 @@ import vrp.*;
 import vrp.constraints.CEarliestArrivalTimeVR;
 import vrp.entities.*;
 import vrp.invariants.EarliestArrivalTimeVR;
+import vrp.invariants.TimeSegmentsVR;
 import vrp.utils.DateTimeUtils;
 
 public class TruckContainerSolver {
@@ -46,11 +50,19 @@ public class TruckContainerSolver {
 	ArrayList<Point> stopPoints;
 	public ArrayList<Point> startMoocPoints;
 	public ArrayList<Point> stopMoocPoints;
-	HashMap<Point, String> point2Type;
 	
-	public HashMap<Point, Integer> earliestAllowedArrivalTime;
-	public HashMap<Point, Integer> serviceDuration;
-	public HashMap<Point, Integer> lastestAllowedArrivalTime;
+	// primitive model of the points, indexed by the point ordinal (Point.getIndex()),
+	// built by TruckContainerInitializer
+	byte[] pointKind;
+	public int[] earliestAllowedArrivalTime;
+	public int[] serviceDuration;
+	public int[] lastestAllowedArrivalTime;
+	public int[] point2Group;
+	public int[] point2moocWeight;
+	public int[] point2containerWeight;
+	public int nGroups;
+	// bit g is set when the group g (truck, mooc or request) is used by the current solution
+	public BitSet markedGroups;
 	public HashMap<Point,Point> pickup2DeliveryOfGood;
 	public HashMap<Point,Point> pickup2DeliveryOfPeople;
 	public HashMap<Point, Point> pickup2Delivery;
@@ -62,28 +74,24 @@ public class TruckContainerSolver {
 	public HashMap<Point, Truck> startPoint2Truck;
 	public HashMap<Point, Mooc> startPoint2Mooc;
 	
-	public HashMap<Point, Integer> point2Group;
-	public HashMap<Integer, Integer> group2marked;
 	public HashMap<Integer, ExportEmptyRequests> group2EE;
 	public HashMap<Integer, ExportLadenRequests> group2EL;
 	public HashMap<Integer, ImportEmptyRequests> group2IE;
 	public HashMap<Integer, ImportLadenRequests> group2IL;
 	
-	public HashMap<Point, Integer> point2moocWeight;
-	public HashMap<Point, Integer> point2containerWeight;
-	
 	public HashMap<Integer, Point> route2DeliveryMooc;
 	
-	public static int nVehicle;
-	public static int nRequest;
+	public int nVehicle;
+	public int nRequest;
 	
 	
 	public String[] locationCodes;
 	public HashMap<String, Integer> mLocationCode2Index;
 	public double[][] distance;// distance[i][j] is the distance from location
 								// index i to location index j
-	public double[][] travelTime;// travelTime[i][j] is the travel time from
-									// location index i to location index j
+	public int[][] travelTime;// travelTime[i][j] is the travel time (seconds) from
+								// location index i to location index j, also backing awm
+	public ShortestTravelTimes shortestTravelTimes;// shortest travel times between two locations through any locations
 	
 	public HashMap<String, Truck> mCode2Truck;
 	public HashMap<String, Mooc> mCode2Mooc;
@@ -108,13 +116,23 @@ public class TruckContainerSolver {
 	CEarliestArrivalTimeVR ceat;
 	LexMultiValues valueSolution;
 	EarliestArrivalTimeVR eat;
-	CEarliestArrivalTimeVR cEarliest;
+	public CEarliestArrivalTimeVR cEarliest;
+	TimeSegmentsVR timeSegments;
 	ContainerCapacityConstraint capContCtr;
 	MoocCapacityConstraint capMoocCtr;
 	ContainerCarriedByTrailerConstraint contmoocCtr;
+	// propagates the moves into the invariants and constraints above when fusedRouteKernel is set
+	RouteKernelVR routeKernel;
 	
 	NodeWeightsManager nwMooc;
 	NodeWeightsManager nwContainer;
+	// routes which may host each request, built once the time windows are known
+	public RequestRouteCompatibility compatibility;
+	// free trailer minimizing a detour, used by the trailer planning of FPIUSInit
+	public NearestMoocIndex moocIndex;
+	// version of each route (XR.getVersion) when the trailers of the routes were last planned,
+	// null if they have never been: see FPIUSInit.insertMoocForChangedRoutes
+	public int[] plannedRouteVersion;
 	public AccumulatedWeightNodesVR accMoocInvr;
 	AccumulatedWeightNodesVR accContainerInvr;
 	public HashMap<Point, IFunctionVR> accDisF;
@@ -142,9 +160,26 @@ public class TruckContainerSolver {
 	public int timeLimit = 36000000;
 	public int nIter = 30000;
 	public int maxStable = 1000;
+	// propagate the moves with a single RouteKernelVR instead of one invariant at a time,
+	// read by stateModel()
+	public boolean fusedRouteKernel = false;
+	// maintain the time window summaries of TimeSegmentsVR, with which CEarliestArrivalTimeVR evaluates
+	// 2-opt* moves (evaluateTwoOptMove5) in O(1), read by stateModel()
+	public boolean twoOptStarSegments = false;
+	// number of threads scanning the routes in the insertion operators, 1 scans them in the calling thread
+	public int nThreads = 1;
+	// random source of the search operators, seeded to repeat a search
+	public Random random = new Random();
+	// number of nearest locations considered around each point by the insertion operators,
+	// 0 considers all the positions
+	public int nbNeighbors = 0;
+	// ALNS only removes and plans again the trailers of the routes modified by each iteration,
+	// instead of those of all the routes
+	public boolean incrementalTrailerPlanning = false;
 	
 	int INF_TIME = Integer.MAX_VALUE;
-	public static double MAX_TRAVELTIME;
+	// max travel time between two locations of the points, scale of the insertion noise
+	public double maxTravelTime;
 	public static final String START_TRUCK 	= "START_TRUCK";
 	public static final String END_TRUCK 	= "END_TRUCK";
 	public static final String START_MOOC 	= "PICKUP_MOOC";
@@ -188,7 +223,74 @@ public class TruckContainerSolver {
 
 		int is = mLocationCode2Index.get(src);
 		int id = mLocationCode2Index.get(dest);
-		return (int) travelTime[is][id];
+		return travelTime[is][id];
+	}
+	
+	/**
+	 * Creates a solver on the data read by this one: the parsed input, the location maps and the
+	 * distance and travel time matrices are shared (the search does not modify them), and the
+	 * search parameters are copied. init() and stateModel() remain to be called on it.
+	 * 
+	 * @return the new solver
+	 */
+	public TruckContainerSolver createSolverOnSameData() {
+		TruckContainerSolver s = new TruckContainerSolver();
+		s.input = input;
+		s.locationCodes = locationCodes;
+		s.mLocationCode2Index = mLocationCode2Index;
+		s.distance = distance;
+		s.travelTime = travelTime;
+		s.shortestTravelTimes = shortestTravelTimes;
+		s.mCode2Truck = mCode2Truck;
+		s.mCode2Mooc = mCode2Mooc;
+		s.mCode2Container = mCode2Container;
+		s.mCode2DepotContainer = mCode2DepotContainer;
+		s.mCode2DepotTruck = mCode2DepotTruck;
+		s.mCode2DepotMooc = mCode2DepotMooc;
+		s.mCode2Warehouse = mCode2Warehouse;
+		s.mCode2Port = mCode2Port;
+		s.additionalContainers = additionalContainers;
+		
+		s.nRemovalOperators = nRemovalOperators;
+		s.nInsertionOperators = nInsertionOperators;
+		s.lower_removal = lower_removal;
+		s.upper_removal = upper_removal;
+		s.sigma1 = sigma1;
+		s.sigma2 = sigma2;
+		s.sigma3 = sigma3;
+		s.rp = rp;
+		s.nw = nw;
+		s.shaw1st = shaw1st;
+		s.shaw2nd = shaw2nd;
+		s.shaw3rd = shaw3rd;
+		s.temperature = temperature;
+		s.cooling_rate = cooling_rate;
+		s.nTabu = nTabu;
+		s.timeLimit = timeLimit;
+		s.nIter = nIter;
+		s.maxStable = maxStable;
+		s.fusedRouteKernel = fusedRouteKernel;
+		s.twoOptStarSegments = twoOptStarSegments;
+		s.nThreads = nThreads;
+		s.nbNeighbors = nbNeighbors;
+		s.incrementalTrailerPlanning = incrementalTrailerPlanning;
+		return s;
+	}
+	
+	public PointKind getKind(Point p) {
+		return PointKind.fromByte(pointKind[p.getIndex()]);
+	}
+	
+	public int getGroup(Point p) {
+		return point2Group[p.getIndex()];
+	}
+	
+	public int getLocationIndex(String locationCode) {
+		if (mLocationCode2Index.get(locationCode) == null) {
+			System.out.println("::getLocationIndex, location " + locationCode
+					+ " NOT COMPLETE, INPUT ERROR??????");
+		}
+		return mLocationCode2Index.get(locationCode);
 	}
 	
 	public void init(){
@@ -225,7 +327,7 @@ public class TruckContainerSolver {
 		initializationStrategy.initialize(this);
 	}
 
-	private static void writeStartInfo(String outputFileTxt) {
+	private void writeStartInfo(String outputFileTxt) {
 		try {
 			FileOutputStream write = new FileOutputStream(outputFileTxt);
 			PrintWriter fo = new PrintWriter(write);
@@ -245,6 +347,39 @@ public class TruckContainerSolver {
 		return new ALNS(this).getNbRejectedRequests();
 	}
 	
+	/**
+	 * Snapshot of the current solution, compared with isBetter and restored with setSolution.
+	 */
+	public TruckContainerSolution getSolution(){
+		return new TruckContainerSolution(XR, rejectPickupPoints, rejectDeliveryPoints, objective.getValue(),
+				getNbUsedTrucks(), rejectPickupPoints.size(), point2Group, markedGroups);
+	}
+	
+	/**
+	 * Restores a solution of this solver or of a solver created by createSolverOnSameData:
+	 * such solvers have the same points, which are matched by ordinal.
+	 */
+	public void setSolution(TruckContainerSolution sol){
+		sol.copy2XR(XR);
+		markedGroups = (BitSet)sol.get_markedGroups().clone();
+		ArrayList<Point> allPoints = XR.getAllPoints();
+		rejectPickupPoints = new ArrayList<Point>();
+		for(Point p : sol.get_rejectPickupPoints())
+			rejectPickupPoints.add(allPoints.get(p.getIndex()));
+		rejectDeliveryPoints = new ArrayList<Point>();
+		for(Point p : sol.get_rejectDeliveryPoints())
+			rejectDeliveryPoints.add(allPoints.get(p.getIndex()));
+	}
+	
+	/**
+	 * Order of the search on the solutions: fewer rejected pickup points first, then lower cost.
+	 */
+	public static boolean isBetter(TruckContainerSolution a, TruckContainerSolution b){
+		int na = a.get_rejectPickupPoints().size();
+		int nb = b.get_rejectPickupPoints().size();
+		return na < nb || (na == nb && a.get_cost() < b.get_cost());
+	}
+	
 	/**
 	 * Optimizes the solution using the configured optimization strategy.
 	 * Default strategy is ALNS (set in constructor).
@@ -264,10 +399,10 @@ public class TruckContainerSolver {
 			s += "route[" + k + "] = ";
 			Point x = XR.getStartingPointOfRoute(k);
 			for(; x != XR.getTerminatingPointOfRoute(k); x = XR.next(x)){
-				s = s + x.getLocationCode() + " (" + point2Type.get(x) + ") -> ";
+				s = s + x.getLocationCode() + " (" + getKind(x).getCode() + ") -> ";
 			}
 			x = XR.getTerminatingPointOfRoute(k);
-			s = s + x.getLocationCode()  + " (" + point2Type.get(x) + ")" + "\n";
+			s = s + x.getLocationCode()  + " (" + getKind(x).getCode() + ")" + "\n";
 		}		
 		System.out.println(s);
 		
@@ -316,9 +451,9 @@ public class TruckContainerSolver {
 			for(Point p = st; p != XR
 					.getTerminatingPointOfRoute(r); p = XR.next(p)) {			
 
-				nodes[g] = new RouteElement(p.getLocationCode(), point2Type.get(p),
+				nodes[g] = new RouteElement(p.getLocationCode(), getKind(p).getCode(),
 						DateTimeUtils.unixTimeStamp2DateTime((long)(eat.getEarliestArrivalTime(p))),
-						DateTimeUtils.unixTimeStamp2DateTime((long)(eat.getEarliestArrivalTime(p) + serviceDuration.get(p))), 
+						DateTimeUtils.unixTimeStamp2DateTime((long)(eat.getEarliestArrivalTime(p) + serviceDuration[p.getIndex()])), 
 						(int)awm.getWeight(p, XR.next(p)));
 				g++;
 			}
@@ -326,9 +461,9 @@ public class TruckContainerSolver {
 			
 
 			nodes[g] = new RouteElement(XR.getTerminatingPointOfRoute(r).getLocationCode(),
-					point2Type.get(XR.getTerminatingPointOfRoute(r)),
+					getKind(XR.getTerminatingPointOfRoute(r)).getCode(),
 					DateTimeUtils.unixTimeStamp2DateTime((long)eat.getEarliestArrivalTime(en)),
-					DateTimeUtils.unixTimeStamp2DateTime((long)(eat.getEarliestArrivalTime(en) + serviceDuration.get(en))), 0);
+					DateTimeUtils.unixTimeStamp2DateTime((long)(eat.getEarliestArrivalTime(en) + serviceDuration[en.getIndex()])), 0);
 			
 			TruckRoute br = new TruckRoute(truck, nb, (int)objective.getValue(), nodes);
 			brArr.add(br);
@@ -345,17 +480,17 @@ public class TruckContainerSolver {
 		HashSet<ImportLadenRequests> unscheduledIL = new HashSet<ImportLadenRequests>();
 		int nbRejects = 0;
 		for(int i = 0; i < rejectPickupPoints.size(); i++){
-			int groupId = point2Group.get(rejectPickupPoints.get(i));
-			if(group2marked.get(groupId) == 0
+			int groupId = getGroup(rejectPickupPoints.get(i));
+			if(!markedGroups.get(groupId)
 					&& group2EE.get(groupId) != null)
 				unscheduledEE.add(group2EE.get(groupId));
-			else if(group2marked.get(groupId) == 0
+			else if(!markedGroups.get(groupId)
 					&& group2EL.get(groupId) != null)
 				unscheduledEL.add(group2EL.get(groupId));
-			else if(group2marked.get(groupId) == 0
+			else if(!markedGroups.get(groupId)
 					&& group2IE.get(groupId) != null)
 				unscheduledIE.add(group2IE.get(groupId));
-			else if(group2marked.get(groupId) == 0
+			else if(!markedGroups.get(groupId)
 					&& group2IL.get(groupId) != null)
 				unscheduledIL.add(group2IL.get(groupId));
 		}
@@ -413,7 +548,7 @@ public class TruckContainerSolver {
 					solver.init();
 					solver.stateModel();
 
-					writeStartInfo(outputALNSfileTxt);
+					solver.writeStartInfo(outputALNSfileTxt);
 
 					solver.setInitializationStrategy(new FPIUSInit());
 					solver.initializeSolution();
@@ -424,8 +559,8 @@ public class TruckContainerSolver {
 					solver.nRemovalOperators = 8;
 					solver.nInsertionOperators = 8;
 					
-					solver.lower_removal = (int) 0.01*nRequest;
-					solver.upper_removal = (int) 0.25*nRequest;
+					solver.lower_removal = (int) 0.01*solver.nRequest;
+					solver.upper_removal = (int) 0.25*solver.nRequest;
 					solver.sigma1 = 5;
 					solver.sigma2 = 1;
 					solver.sigma3 = (int)0.01;
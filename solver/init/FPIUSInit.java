@@ -1,5 +1,6 @@
 package solver.init;
 
+import java.util.ArrayList;
 import java.util.Stack;
 
 import solver.TruckContainerSolver;
@@ -24,11 +25,16 @@ public class FPIUSInit implements InitializationStrategy {
 			stack.push(s);
 		}
 
+		ArrayList<Point> x = new ArrayList<Point>();
+		ArrayList<Point> y = new ArrayList<Point>();
 		for (int i = 0; i < solver.pickup2Delivery.size(); i++) {
+			// interrupted (a member of PortfolioSearch at the time limit): the other requests are rejected
+			if (Thread.currentThread().isInterrupted())
+				break;
 			System.out.println("req " + i + "/" + solver.pickup2Delivery.size());
 			Point pickup = solver.pickupPoints.get(i);
-			int groupId = solver.point2Group.get(pickup);
-			if (solver.XR.route(pickup) != Constants.NULL_POINT || solver.group2marked.get(groupId) == 1)
+			int groupId = solver.getGroup(pickup);
+			if (solver.XR.route(pickup) != Constants.NULL_POINT || solver.markedGroups.get(groupId))
 				continue;
 			Point delivery = solver.deliveryPoints.get(i);
 			// add the request to route
@@ -39,27 +45,27 @@ public class FPIUSInit implements InitializationStrategy {
 				int r = Integer.parseInt(stack.get(k));
 				Point st = solver.XR.getStartingPointOfRoute(r);
 
-				int groupTruck = solver.point2Group.get(st);
-				if (solver.group2marked.get(groupTruck) == 1 && solver.XR.index(solver.XR.getTerminatingPointOfRoute(r)) <= 1)
+				int groupTruck = solver.getGroup(st);
+				if (solver.markedGroups.get(groupTruck) && solver.XR.index(solver.XR.getTerminatingPointOfRoute(r)) <= 1)
+					continue;
+				if (!solver.compatibility.isCompatible(pickup, r))
 					continue;
 				for (Point p = st; p != solver.XR.getTerminatingPointOfRoute(r); p = solver.XR.next(p)) {
 					if (isAdded)
 						break;
 					for (Point q = p; q != solver.XR.getTerminatingPointOfRoute(r); q = solver.XR.next(q)) {
-						solver.mgr.performAddTwoPoints(pickup, p, delivery, q);
-						insertMoocToRoutes(solver, r);
-						if (solver.S.violations() == 0) {
-							solver.group2marked.put(groupTruck, 1);
-							solver.group2marked.put(groupId, 1);
+						buildInsertionMove(solver, pickup, p, delivery, q, x, y);
+						if (screenTimeWindows(solver, x, y)
+								&& solver.S.violations() + solver.S.evaluateAddPoints(x, y) == 0) {
+							solver.mgr.performAddTwoPoints(pickup, p, delivery, q);
+							solver.markedGroups.set(groupTruck);
+							solver.markedGroups.set(groupId);
 							stack.remove(stack.get(k));
 							String s = "" + r;
 							stack.push(s);
 							isAdded = true;
-							removeMoocOnRoutes(solver, r);
 							break;
 						}
-						solver.mgr.performRemoveTwoPoints(pickup, delivery);
-						removeMoocOnRoutes(solver, r);
 					}
 				}
 			}
@@ -75,22 +81,65 @@ public class FPIUSInit implements InitializationStrategy {
 		insertMoocForAllRoutes(solver);
 	}
 
-	private Point getBestStartMoocForRequest(TruckContainerSolver solver, int r, Point p, Point pickup) {
-		Point bestMooc = null;
-		double min_d = Double.MAX_VALUE;
-		for (int i = 0; i < solver.startMoocPoints.size(); i++) {
-			Point stMooc = solver.startMoocPoints.get(i);
-			int groupMooc = solver.point2Group.get(stMooc);
-			if (solver.group2marked.get(groupMooc) == 1 || solver.XR.route(stMooc) != Constants.NULL_POINT)
-				continue;
-			double d = solver.getTravelTime(p.getLocationCode(), stMooc.getLocationCode())
-					+ solver.getTravelTime(stMooc.getLocationCode(), pickup.getLocationCode());
-			if (d < min_d) {
-				min_d = d;
-				bestMooc = stMooc;
+	/**
+	 * Builds in x, y the move adding pickup right-after p and delivery right-after q
+	 * (right-after pickup when p == q) together with the trailer points insertMoocToRoutes
+	 * would add for it, so that the whole insertion is evaluated without modifying the routes.
+	 */
+	public void buildInsertionMove(TruckContainerSolver solver, Point pickup, Point p, Point delivery, Point q,
+			ArrayList<Point> x, ArrayList<Point> y) {
+		x.clear();
+		y.clear();
+		x.add(pickup);
+		y.add(p);
+		x.add(delivery);
+		y.add(p == q ? pickup : q);
+		planMoocToRoutes(solver, x, y);
+	}
+
+	/**
+	 * Screening of a move built by buildInsertionMove against the time windows, without walking the
+	 * route: false only if the move surely breaks a time window, so that it needs no evaluation.
+	 */
+	public boolean screenTimeWindows(TruckContainerSolver solver, ArrayList<Point> x, ArrayList<Point> y) {
+		return solver.cEarliest.canAddPoints(x, y);
+	}
+
+	/**
+	 * Same choices as insertMoocToRoutes on the route of y once x[i] are added right-after y[i],
+	 * but the trailer points and their anchors are appended to x and y instead of being performed.
+	 */
+	public void planMoocToRoutes(TruckContainerSolver solver, ArrayList<Point> x, ArrayList<Point> y) {
+		ArrayList<Point> L = solver.XR.collectRouteAfterAddPoints(x, y);
+		ArrayList<Point> planned = new ArrayList<Point>();
+		Point prev = L.get(0);
+		double w = solver.accMoocInvr.getSumWeights(prev);
+		Point enMooc = null;
+		for (int i = 1; i < L.size() - 1; i++) {
+			Point p = L.get(i);
+			if (w <= 0) {
+				Point stMooc = getBestStartMoocForRequest(solver, prev, p, planned);
+				if (stMooc != null) {
+					x.add(stMooc);
+					y.add(prev);
+					planned.add(stMooc);
+					w += solver.accMoocInvr.getWeights(stMooc);
+					enMooc = solver.start2stopMoocPoint.get(stMooc);
+				}
 			}
+			w += solver.accMoocInvr.getWeights(p);
+			prev = p;
+		}
+		w += solver.accMoocInvr.getWeights(L.get(L.size() - 1));
+		if (w > 0 && enMooc != null) {
+			x.add(enMooc);
+			y.add(prev);
 		}
-		return bestMooc;
+	}
+
+	private Point getBestStartMoocForRequest(TruckContainerSolver solver, Point p, Point pickup,
+			ArrayList<Point> excluded) {
+		return solver.moocIndex.getBestStartMooc(p, pickup, excluded);
 	}
 
 	public void insertMoocToRoutes(TruckContainerSolver solver, int r) {
@@ -99,12 +148,12 @@ public class FPIUSInit implements InitializationStrategy {
 		Point enMooc = null;
 		for (Point p = solver.XR.next(st); p != solver.XR.getTerminatingPointOfRoute(r); p = solver.XR.next(p)) {
 			if (solver.accMoocInvr.getSumWeights(solver.XR.prev(p)) <= 0) {
-				stMooc = getBestStartMoocForRequest(solver, r, solver.XR.prev(p), p);
+				stMooc = getBestStartMoocForRequest(solver, solver.XR.prev(p), p, null);
 				if (stMooc == null)
 					continue;
 				solver.mgr.performAddOnePoint(stMooc, solver.XR.prev(p));
-				int groupMooc = solver.point2Group.get(stMooc);
-				solver.group2marked.put(groupMooc, 1);
+				int groupMooc = solver.getGroup(stMooc);
+				solver.markedGroups.set(groupMooc);
 				enMooc = solver.start2stopMoocPoint.get(stMooc);
 			}
 		}
@@ -121,8 +170,8 @@ public class FPIUSInit implements InitializationStrategy {
 			next_x = solver.XR.next(x);
 			if (solver.startMoocPoints.contains(x) || solver.stopMoocPoints.contains(x)) {
 				solver.mgr.performRemoveOnePoint(x);
-				int groupMooc = solver.point2Group.get(x);
-				solver.group2marked.put(groupMooc, 0);
+				int groupMooc = solver.getGroup(x);
+				solver.markedGroups.clear(groupMooc);
 			}
 		}
 	}
@@ -134,14 +183,14 @@ public class FPIUSInit implements InitializationStrategy {
 		for (int i = 0; i < solver.startMoocPoints.size(); i++) {
 			Point stMooc = solver.startMoocPoints.get(i);
 			Point enMooc = solver.start2stopMoocPoint.get(stMooc);
-			int groupMooc = solver.point2Group.get(stMooc);
-			if ((solver.group2marked.get(groupMooc) == 1 || solver.XR.route(stMooc) != Constants.NULL_POINT)
+			int groupMooc = solver.getGroup(stMooc);
+			if ((solver.markedGroups.get(groupMooc) || solver.XR.route(stMooc) != Constants.NULL_POINT)
 					&& stMooc != curStMooc)
 				continue;
-			double d = solver.getTravelTime(p.getLocationCode(), stMooc.getLocationCode())
-					+ solver.getTravelTime(stMooc.getLocationCode(), np.getLocationCode())
-					+ solver.getTravelTime(q.getLocationCode(), enMooc.getLocationCode())
-					+ solver.getTravelTime(enMooc.getLocationCode(), nq.getLocationCode());
+			double d = solver.awm.getWeight(p, stMooc)
+					+ solver.awm.getWeight(stMooc, np)
+					+ solver.awm.getWeight(q, enMooc)
+					+ solver.awm.getWeight(enMooc, nq);
 			if (d < min_d) {
 				min_d = d;
 				bestMooc = stMooc;
@@ -151,57 +200,132 @@ public class FPIUSInit implements InitializationStrategy {
 	}
 
 	public void removeAllMoocFromRoutes(TruckContainerSolver solver) {
+		solver.mgr.beginBatch();
 		for (int i = 0; i < solver.startMoocPoints.size(); i++) {
 			Point st = solver.startMoocPoints.get(i);
 			Point tp = solver.start2stopMoocPoint.get(st);
 			if (solver.XR.route(st) != Constants.NULL_POINT) {
 				solver.mgr.performRemoveOnePoint(st);
-				int groupMooc = solver.point2Group.get(st);
-				solver.group2marked.put(groupMooc, 0);
+				int groupMooc = solver.getGroup(st);
+				solver.markedGroups.clear(groupMooc);
 			}
 			if (solver.XR.route(tp) != Constants.NULL_POINT) {
 				solver.mgr.performRemoveOnePoint(tp);
-				int groupMooc = solver.point2Group.get(tp);
-				solver.group2marked.put(groupMooc, 0);
+				int groupMooc = solver.getGroup(tp);
+				solver.markedGroups.clear(groupMooc);
 			}
 		}
+		solver.mgr.endBatch();
 	}
 
 	public void insertMoocForAllRoutes(TruckContainerSolver solver) {
 		removeAllMoocFromRoutes(solver);
+		for (int r = 1; r <= solver.XR.getNbRoutes(); r++)
+			insertMoocForRoute(solver, r);
+		markTrailersPlanned(solver);
+	}
+
+	/**
+	 * Records that the trailers of the routes are planned, so that insertMoocForChangedRoutes only
+	 * plans again those of the routes modified since, and those of the routes still missing a
+	 * trailer (none was free when they were planned).
+	 */
+	public void markTrailersPlanned(TruckContainerSolver solver) {
+		int K = solver.XR.getNbRoutes();
+		if (solver.plannedRouteVersion == null || solver.plannedRouteVersion.length != K + 1)
+			solver.plannedRouteVersion = new int[K + 1];
+		for (int r = 1; r <= K; r++)
+			solver.plannedRouteVersion[r] = isMissingMooc(solver, r) ? -1 : solver.XR.getVersion(r);
+	}
+
+	// true if insertMoocForRoute would add a trailer to route r
+	private boolean isMissingMooc(TruckContainerSolver solver, int r) {
+		Point st = solver.XR.getStartingPointOfRoute(r);
+		for (Point p = solver.XR.next(st); p != solver.XR.getTerminatingPointOfRoute(r); p = solver.XR.next(p)) {
+			if (!solver.getKind(p).isMooc() && solver.accMoocInvr.getSumWeights(solver.XR.prev(p)) <= 0)
+				return true;
+		}
+		return false;
+	}
+
+	// true if route r has been modified since its trailers were planned
+	private boolean isChanged(TruckContainerSolver solver, int r) {
+		return solver.plannedRouteVersion == null || solver.XR.getVersion(r) != solver.plannedRouteVersion[r];
+	}
+
+	/**
+	 * Removes the trailers of the routes modified since their trailers were planned, those of the
+	 * other routes stay on them (and their groups marked). The truck of a route left empty is no
+	 * longer marked, as if its trailers had been removed before its requests.
+	 */
+	public void removeMoocFromChangedRoutes(TruckContainerSolver solver) {
+		solver.mgr.beginBatch();
 		for (int r = 1; r <= solver.XR.getNbRoutes(); r++) {
-			Point st = solver.XR.getStartingPointOfRoute(r);
-			Point stMooc = null;
-			Point preP = null;
-			Point nextP = null;
-			Point enMooc = null;
-			for (Point p = solver.XR.next(st); p != solver.XR.getTerminatingPointOfRoute(r); p = solver.XR.next(p)) {
-				if (solver.accMoocInvr.getSumWeights(solver.XR.prev(p)) <= 0) {
-					stMooc = getBestStartMoocForRequest(solver, r, solver.XR.prev(p), p);
-					if (stMooc == null)
-						continue;
-					preP = solver.XR.prev(p);
-					nextP = p;
-					solver.mgr.performAddOnePoint(stMooc, solver.XR.prev(p));
-					int groupMooc = solver.point2Group.get(stMooc);
-					solver.group2marked.put(groupMooc, 1);
-				}
+			if (!isChanged(solver, r))
+				continue;
+			removeMoocOnRoutes(solver, r);
+			if (solver.XR.index(solver.XR.getTerminatingPointOfRoute(r)) <= 1)
+				solver.markedGroups.clear(solver.getGroup(solver.XR.getStartingPointOfRoute(r)));
+		}
+		solver.mgr.endBatch();
+	}
+
+	/**
+	 * Same as insertMoocForAllRoutes but only for the routes modified since their trailers were
+	 * planned: their trailers are removed and planned again, in the order of the routes, with the
+	 * trailers left by the other routes.
+	 */
+	public void insertMoocForChangedRoutes(TruckContainerSolver solver) {
+		if (solver.plannedRouteVersion == null) {
+			insertMoocForAllRoutes(solver);
+			return;
+		}
+		ArrayList<Integer> changed = new ArrayList<Integer>();
+		for (int r = 1; r <= solver.XR.getNbRoutes(); r++) {
+			if (isChanged(solver, r))
+				changed.add(r);
+		}
+		solver.mgr.beginBatch();
+		for (int r : changed)
+			removeMoocOnRoutes(solver, r);
+		solver.mgr.endBatch();
+		for (int r : changed)
+			insertMoocForRoute(solver, r);
+		markTrailersPlanned(solver);
+	}
+
+	private void insertMoocForRoute(TruckContainerSolver solver, int r) {
+		Point st = solver.XR.getStartingPointOfRoute(r);
+		Point stMooc = null;
+		Point preP = null;
+		Point nextP = null;
+		Point enMooc = null;
+		for (Point p = solver.XR.next(st); p != solver.XR.getTerminatingPointOfRoute(r); p = solver.XR.next(p)) {
+			if (solver.accMoocInvr.getSumWeights(solver.XR.prev(p)) <= 0) {
+				stMooc = getBestStartMoocForRequest(solver, solver.XR.prev(p), p, null);
+				if (stMooc == null)
+					continue;
+				preP = solver.XR.prev(p);
+				nextP = p;
+				solver.mgr.performAddOnePoint(stMooc, solver.XR.prev(p));
+				int groupMooc = solver.getGroup(stMooc);
+				solver.markedGroups.set(groupMooc);
 			}
-			if (solver.accMoocInvr.getSumWeights(solver.XR.getTerminatingPointOfRoute(r)) > 0) {
-				Point enPoint = solver.XR.prev(solver.XR.getTerminatingPointOfRoute(r));
-				Point newStMooc = getBestMoocForRequest(solver, stMooc, preP, nextP, enPoint,
-						solver.XR.getTerminatingPointOfRoute(r));
-				if (newStMooc != stMooc) {
-					solver.mgr.performRemoveOnePoint(stMooc);
-					int groupMooc = solver.point2Group.get(stMooc);
-					solver.group2marked.put(groupMooc, 0);
-					solver.mgr.performAddOnePoint(newStMooc, preP);
-					groupMooc = solver.point2Group.get(newStMooc);
-					solver.group2marked.put(groupMooc, 1);
-				}
-				enMooc = solver.start2stopMoocPoint.get(newStMooc);
-				solver.mgr.performAddOnePoint(enMooc, enPoint);
+		}
+		if (solver.accMoocInvr.getSumWeights(solver.XR.getTerminatingPointOfRoute(r)) > 0) {
+			Point enPoint = solver.XR.prev(solver.XR.getTerminatingPointOfRoute(r));
+			Point newStMooc = getBestMoocForRequest(solver, stMooc, preP, nextP, enPoint,
+					solver.XR.getTerminatingPointOfRoute(r));
+			if (newStMooc != stMooc) {
+				solver.mgr.performRemoveOnePoint(stMooc);
+				int groupMooc = solver.getGroup(stMooc);
+				solver.markedGroups.clear(groupMooc);
+				solver.mgr.performAddOnePoint(newStMooc, preP);
+				groupMooc = solver.getGroup(newStMooc);
+				solver.markedGroups.set(groupMooc);
 			}
+			enMooc = solver.start2stopMoocPoint.get(newStMooc);
+			solver.mgr.performAddOnePoint(enMooc, enPoint);
 		}
 	}
 }
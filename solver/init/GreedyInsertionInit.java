@@ -0,0 +1,29 @@
+package solver.init;
+
+import solver.SearchOptimumSolution;
+import solver.TruckContainerSolver;
+import vrp.Constants;
+import vrp.entities.Point;
+
+/**
+ * Greedy insertion initialization strategy.
+ * Implements the InitializationStrategy interface: every request starts rejected and is inserted,
+ * in the order of the requests, at its best feasible position by the greedy insertion operator of
+ * ALNS, the trailers being planned with the insertions. Unlike the first possible insertion of
+ * FPIUSInit, which fills the first routes, the routes start with cheaper insertions, at the cost of
+ * a few more rejected requests on some instances.
+ */
+public class GreedyInsertionInit implements InitializationStrategy {
+
+	@Override
+	public void initialize(TruckContainerSolver solver) {
+		for (int i = 0; i < solver.pickupPoints.size(); i++) {
+			Point pickup = solver.pickupPoints.get(i);
+			if (solver.XR.route(pickup) == Constants.NULL_POINT && !solver.rejectPickupPoints.contains(pickup)) {
+				solver.rejectPickupPoints.add(pickup);
+				solver.rejectDeliveryPoints.add(solver.pickup2Delivery.get(pickup));
+			}
+		}
+		new SearchOptimumSolution(solver).greedyInsertion();
+	}
+}
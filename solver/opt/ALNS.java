@@ -19,10 +19,19 @@ import vrp.entities.Point;
 public class ALNS implements OptimizationStrategy {
 	private final TruckContainerSolver solver;
 	private final FPIUSInit initialSolutionBuilder;
+	// exchanges the best solutions with the other islands when run by IslandALNS, null otherwise
+	private final IslandALNS.Island island;
+	// set by stop() from another thread, ends the search at the next iteration
+	private volatile boolean stopped = false;
 
 	public ALNS(TruckContainerSolver solver) {
+		this(solver, null);
+	}
+
+	ALNS(TruckContainerSolver solver, IslandALNS.Island island) {
 		this.solver = solver;
 		this.initialSolutionBuilder = new FPIUSInit();
+		this.island = island;
 	}
 	
 	@Override
@@ -31,6 +40,13 @@ public class ALNS implements OptimizationStrategy {
 		adaptiveSearchOperators(outputFile);
 	}
 
+	/**
+	 * Ends the search at the next iteration; the best solution found is restored as at the time limit.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
 	public void initParamsForALNS() {
 		solver.nChosed = new HashMap<Point, Integer>();
 		solver.removeAllowed = new HashMap<Point, Boolean>();
@@ -58,9 +74,9 @@ public class ALNS implements OptimizationStrategy {
 		Set<Integer> grs = new HashSet<Integer>();
 		for (int i = 0; i < solver.rejectPickupPoints.size(); i++) {
 			Point pickup = solver.rejectPickupPoints.get(i);
-			int groupId = solver.point2Group.get(pickup);
+			int groupId = solver.getGroup(pickup);
 
-			if (solver.group2marked.get(groupId) == 1)
+			if (solver.markedGroups.get(groupId))
 				continue;
 			grs.add(groupId);
 		}
@@ -105,14 +121,14 @@ public class ALNS implements OptimizationStrategy {
 
 		TruckContainerSolution best_solution = new TruckContainerSolution(solver.XR, solver.rejectPickupPoints,
 				solver.rejectDeliveryPoints, best_cost, getNbUsedTrucks(), getNbRejectedRequests(),
-				solver.point2Group, solver.group2marked);
+				solver.point2Group, solver.markedGroups);
 
 		double start_search_time = System.currentTimeMillis();
 		try {
 			FileOutputStream write = new FileOutputStream(outputfile, true);
 			PrintWriter fo = new PrintWriter(write);
 			fo.println("time limit = " + solver.timeLimit + ", nbIters = " + solver.nIter + ", maxStable = " + solver.maxStable);
-			fo.println("#Request = " + TruckContainerSolver.nRequest);
+			fo.println("#Request = " + solver.nRequest);
 			fo.println("iter=====insertion=====removal=====time=====cost=====nbReject=====nbTrucks");
 			fo.println("0 -1 -1 " + " " + System.currentTimeMillis() / 1000 + " " + best_cost + " "
 					+ getNbRejectedRequests() + " " + getNbUsedTrucks());
@@ -121,16 +137,29 @@ public class ALNS implements OptimizationStrategy {
 			System.out.println(e);
 		}
 
-		while ((System.currentTimeMillis() - start_search_time) < solver.timeLimit && it++ < solver.nIter) {
+		while (!stopped && (System.currentTimeMillis() - start_search_time) < solver.timeLimit && it++ < solver.nIter) {
 			System.out.println("nb of iterator: " + it);
 			double current_cost = solver.objective.getValue();
 			int current_nbTrucks = getNbUsedTrucks();
 			TruckContainerSolution current_solution = new TruckContainerSolution(solver.XR, solver.rejectPickupPoints,
 					solver.rejectDeliveryPoints, current_cost, current_nbTrucks, solver.getNbRejectedRequests(),
-					solver.point2Group, solver.group2marked);
+					solver.point2Group, solver.markedGroups);
+
+			// the routes modified by this iteration are journaled, a rejected iteration is undone by
+			// restoring them instead of copying the whole current solution back
+			solver.mgr.checkpoint();
+
+			// with incrementalTrailerPlanning, the trailers stay on the routes this iteration does not
+			// modify: the current solution (restored or migrated ones included) has its trailers planned
+			if (solver.incrementalTrailerPlanning)
+				initialSolutionBuilder.markTrailersPlanned(solver);
 
+			// the removals only recompute the routes they touch once, when the
+			// invariants are read (shaw and worst removal) or at the end of the batch
+			solver.mgr.beginBatch();
 			// Was solver.removeAllMoocFromRoutes(); but it moved to builder
-			initialSolutionBuilder.removeAllMoocFromRoutes(solver);
+			if (!solver.incrementalTrailerPlanning)
+				initialSolutionBuilder.removeAllMoocFromRoutes(solver);
 
 			int i_selected_removal = -1;
 			if (iS >= solver.maxStable) {
@@ -166,6 +195,9 @@ public class ALNS implements OptimizationStrategy {
 						break;
 				}
 			}
+			solver.mgr.endBatch();
+			if (solver.incrementalTrailerPlanning)
+				initialSolutionBuilder.removeMoocFromChangedRoutes(solver);
 
 			int i_selected_insertion = get_operator(pti);
 			wi[i_selected_insertion]++;
@@ -210,7 +242,7 @@ public class ALNS implements OptimizationStrategy {
 
 					best_cost = new_cost;
 					best_solution = new TruckContainerSolution(solver.XR, solver.rejectPickupPoints, solver.rejectDeliveryPoints,
-							new_cost, new_nbTrucks, new_nb_reject_points, solver.point2Group, solver.group2marked);
+							new_cost, new_nbTrucks, new_nb_reject_points, solver.point2Group, solver.markedGroups);
 					try {
 						FileOutputStream write = new FileOutputStream(outputfile, true);
 						PrintWriter fo = new PrintWriter(write);
@@ -240,18 +272,34 @@ public class ALNS implements OptimizationStrategy {
 				if (i_selected_removal >= 0)
 					sd[i_selected_removal] += solver.sigma3;
 				double v = Math.exp(-(new_cost - current_cost) / solver.temperature);
-				double e = Math.random();
+				double e = solver.random.nextDouble();
 				if (e >= v) {
-					current_solution.copy2XR(solver.XR);
-					solver.group2marked = current_solution.get_group2marked();
+					solver.mgr.rollback();
+					solver.markedGroups = current_solution.get_markedGroups();
 					solver.rejectPickupPoints = current_solution.get_rejectPickupPoints();
 					solver.rejectDeliveryPoints = current_solution.get_rejectDeliveryPoints();
 				}
 				iS++;
 			}
+			solver.mgr.commit();
 
 			solver.temperature = solver.cooling_rate * solver.temperature;
 
+			// the solution taken from another island becomes the current solution
+			if (island != null && it % island.migrationInterval == 0 && island.migrate(best_solution)) {
+				int nb_reject_points = solver.rejectPickupPoints.size();
+				double cost = solver.objective.getValue();
+				int best_nb_reject_points = best_solution.get_rejectPickupPoints().size();
+				if (nb_reject_points < best_nb_reject_points
+						|| (nb_reject_points == best_nb_reject_points && cost < best_cost)) {
+					best_cost = cost;
+					best_solution = new TruckContainerSolution(solver.XR, solver.rejectPickupPoints,
+							solver.rejectDeliveryPoints, cost, getNbUsedTrucks(), nb_reject_points,
+							solver.point2Group, solver.markedGroups);
+				}
+				iS = 0;
+			}
+
 			// update probabilities
 			if (it % solver.nw == 0) {
 				for (int i = 0; i < solver.nInsertionOperators; i++) {
@@ -265,7 +313,7 @@ public class ALNS implements OptimizationStrategy {
 		}
 
 		best_solution.copy2XR(solver.XR);
-		solver.group2marked = best_solution.get_group2marked();
+		solver.markedGroups = best_solution.get_markedGroups();
 
 		solver.rejectPickupPoints = best_solution.get_rejectPickupPoints();
 		solver.rejectDeliveryPoints = best_solution.get_rejectDeliveryPoints();
@@ -288,7 +336,7 @@ public class ALNS implements OptimizationStrategy {
 		for (int i = 1; i < n; i++)
 			s[i] = s[i - 1] + p[i];
 
-		double r = s[n - 1] * Math.random();
+		double r = s[n - 1] * solver.random.nextDouble();
 
 		if (r >= 0 && r <= s[0])
 			return 0;
@@ -0,0 +1,152 @@
+package solver.opt;
+
+import java.util.Random;
+
+import models.output.TruckContainerSolution;
+import solver.TruckContainerSolver;
+
+/**
+ * Island model ALNS optimization strategy.
+ * nIslands ALNS searches run in parallel, each one on its own solver (routes, invariants,
+ * random source and operator weights) built on the data of the given solver, which is the first island.
+ * Every migrationInterval iterations an island publishes its best solution and takes the best
+ * solution published by the other islands when it is better than its current solution.
+ * At the end, the best solution of the islands is restored in the given solver. An island failing
+ * with an exception is reported and left out; the others go on, since the exchange of the solutions
+ * never waits for an island.
+ */
+public class IslandALNS implements OptimizationStrategy {
+	private final TruckContainerSolver solver;
+	private final int nIslands;
+	private final int migrationInterval;
+	private final long seed;
+	// best solution published by each island, null until its first migration
+	private final TruckContainerSolution[] published;
+
+	public IslandALNS(TruckContainerSolver solver, int nIslands, int migrationInterval, long seed) {
+		this.solver = solver;
+		this.nIslands = nIslands;
+		this.migrationInterval = migrationInterval;
+		this.seed = seed;
+		this.published = new TruckContainerSolution[nIslands];
+	}
+
+	@Override
+	public void optimize(final TruckContainerSolver solver, String outputFile) {
+		if (solver != this.solver) {
+			System.out.println("IslandALNS::optimize, EXCEPTION, the solver is not the one the strategy was built for");
+			System.exit(-1);
+		}
+		final TruckContainerSolver[] islands = new TruckContainerSolver[nIslands];
+		// failed[i] if island i ended with an exception, read once its thread has ended
+		final boolean[] failed = new boolean[nIslands];
+		Thread[] threads = new Thread[nIslands];
+		for (int i = 0; i < nIslands; i++) {
+			final int id = i;
+			// the first island logs in outputFile, the others in a file of their own
+			final String file = i == 0 ? outputFile : outputFile + ".island" + i;
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						TruckContainerSolver s;
+						if (id == 0) {
+							s = solver;
+						} else {
+							s = solver.createSolverOnSameData();
+							s.init();
+							s.stateModel();
+							s.initializeSolution();
+						}
+						s.random = new Random(seed + id);
+						islands[id] = s;
+						new ALNS(s, new Island(id, s)).optimize(s, file);
+					} catch (RuntimeException e) {
+						System.out.println("IslandALNS::optimize, island " + id + " failed, exception " + e);
+						e.printStackTrace();
+						failed[id] = true;
+					}
+				}
+			}, "island-" + i);
+			threads[i].start();
+		}
+		for (int i = 0; i < nIslands; i++) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {
+				System.out.println("IslandALNS::optimize, exception " + e);
+				e.printStackTrace();
+				System.exit(-1);
+			}
+		}
+
+		// the solutions of the islands which ended normally; when the given solver failed, the
+		// solutions published by the islands are also candidates, since its own may be broken
+		TruckContainerSolution best = null;
+		int b = -1;
+		for (int i = 0; i < nIslands; i++) {
+			if (failed[i])
+				continue;
+			TruckContainerSolution sol = islands[i].getSolution();
+			if (best == null || TruckContainerSolver.isBetter(sol, best)) {
+				best = sol;
+				b = i;
+			}
+		}
+		if (failed[0]) {
+			for (int i = 0; i < nIslands; i++) {
+				if (published[i] != null && (best == null || TruckContainerSolver.isBetter(published[i], best))) {
+					best = published[i];
+					b = i;
+				}
+			}
+		}
+		if (best == null) {
+			System.out.println("IslandALNS::optimize, EXCEPTION, every island failed before publishing a solution");
+			System.exit(-1);
+		}
+		System.out.println("IslandALNS::optimize, best solution found by island " + b);
+		if (b != 0 || failed[0])
+			solver.setSolution(best);
+	}
+
+	// publishes the best solution of island id and returns the best solution published by the others,
+	// without waiting for them: an island which has failed only keeps its last publication
+	private synchronized TruckContainerSolution exchange(int id, TruckContainerSolution best) {
+		published[id] = best;
+		TruckContainerSolution b = null;
+		for (int i = 0; i < nIslands; i++) {
+			if (i != id && published[i] != null && (b == null || TruckContainerSolver.isBetter(published[i], b)))
+				b = published[i];
+		}
+		return b;
+	}
+
+	// migration point of the ALNS search of an island
+	class Island {
+		final int id;
+		final int migrationInterval;
+		private final TruckContainerSolver s;
+
+		Island(int id, TruckContainerSolver s) {
+			this.id = id;
+			this.migrationInterval = IslandALNS.this.migrationInterval;
+			this.s = s;
+		}
+
+		/**
+		 * Publishes best and restores in the solver of the island the best solution of the other
+		 * islands if it is better than the current solution.
+		 *
+		 * @return true if the current solution has been replaced
+		 */
+		boolean migrate(TruckContainerSolution best) {
+			TruckContainerSolution sol = exchange(id, best);
+			if (sol == null)
+				return false;
+			if (!TruckContainerSolver.isBetter(sol, s.getSolution()))
+				return false;
+			s.setSolution(sol);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package solver.opt;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import models.output.TruckContainerSolution;
+import solver.TruckContainerSolver;
+import solver.init.FPIUSInit;
+import solver.init.GreedyInsertionInit;
+import solver.init.InitializationStrategy;
+
+/**
+ * Portfolio optimization strategy.
+ * Runs one ALNS search per configuration on its own thread. The first one searches from the solution
+ * of the given solver, whose model must have been built and initialized; each other one builds and
+ * initializes its own solver on the data of the given solver (the parsed input and the distance data
+ * are shared). At the time limit of the given solver the searches are stopped, the members still
+ * initializing are interrupted and give up, and the best solution of the members that searched is
+ * restored in the given solver.
+ */
+public class PortfolioSearch implements OptimizationStrategy {
+	private final TruckContainerSolver solver;
+	private final ArrayList<Configuration> configurations;
+	// states of the members: a member still initializing at the time limit is cancelled, and interrupted
+	// so that its initialization strategy ends early; the searching members are stopped
+	private static final int INITIALIZING = 0;
+	private static final int SEARCHING = 1;
+	private static final int CANCELLED = 2;
+
+	public PortfolioSearch(TruckContainerSolver solver) {
+		this(solver, defaultConfigurations(solver));
+	}
+
+	public PortfolioSearch(TruckContainerSolver solver, ArrayList<Configuration> configurations) {
+		this.solver = solver;
+		this.configurations = configurations;
+	}
+
+	/**
+	 * Search parameters of a member of the portfolio, initialized with those of a solver.
+	 * The initialization strategy of the first configuration is not used: the first member searches
+	 * from the solution of the given solver.
+	 */
+	public static class Configuration {
+		public InitializationStrategy initializationStrategy = new FPIUSInit();
+		public long seed;
+		public float sigma1;
+		public float sigma2;
+		public float sigma3;
+		public double rp;
+		public double shaw1st;
+		public double shaw2nd;
+		public double shaw3rd;
+		public double temperature;
+		public double cooling_rate;
+
+		public Configuration(TruckContainerSolver solver, long seed) {
+			this.seed = seed;
+			this.sigma1 = solver.sigma1;
+			this.sigma2 = solver.sigma2;
+			this.sigma3 = solver.sigma3;
+			this.rp = solver.rp;
+			this.shaw1st = solver.shaw1st;
+			this.shaw2nd = solver.shaw2nd;
+			this.shaw3rd = solver.shaw3rd;
+			this.temperature = solver.temperature;
+			this.cooling_rate = solver.cooling_rate;
+		}
+
+		void apply(TruckContainerSolver s) {
+			s.setInitializationStrategy(initializationStrategy);
+			applySearchParameters(s);
+		}
+
+		// the parameters but the initialization strategy, for a solver already initialized
+		void applySearchParameters(TruckContainerSolver s) {
+			s.random = new Random(seed);
+			s.sigma1 = sigma1;
+			s.sigma2 = sigma2;
+			s.sigma3 = sigma3;
+			s.rp = rp;
+			s.shaw1st = shaw1st;
+			s.shaw2nd = shaw2nd;
+			s.shaw3rd = shaw3rd;
+			s.temperature = temperature;
+			s.cooling_rate = cooling_rate;
+		}
+	}
+
+	/**
+	 * The parameters of the solver, a diversifying setting (hot and slowly cooled, high reaction
+	 * factor), an intensifying setting (cold and quickly cooled, new best solutions rewarded more)
+	 * and a setting relating the requests by their time windows in shaw removal, which starts from
+	 * a greedy insertion initialization instead of the first possible insertion.
+	 */
+	public static ArrayList<Configuration> defaultConfigurations(TruckContainerSolver solver) {
+		ArrayList<Configuration> L = new ArrayList<Configuration>();
+		L.add(new Configuration(solver, 0));
+
+		Configuration c = new Configuration(solver, 1);
+		c.temperature = 5 * solver.temperature;
+		c.cooling_rate = 0.9999;
+		c.rp = 0.3;
+		L.add(c);
+
+		c = new Configuration(solver, 2);
+		c.temperature = solver.temperature / 5;
+		c.cooling_rate = 0.999;
+		c.sigma1 = 2 * solver.sigma1;
+		L.add(c);
+
+		c = new Configuration(solver, 3);
+		c.shaw1st = 0.2;
+		c.shaw2nd = 0.6;
+		c.shaw3rd = 0.2;
+		c.initializationStrategy = new GreedyInsertionInit();
+		L.add(c);
+		return L;
+	}
+
+	@Override
+	public void optimize(TruckContainerSolver solver, String outputFile) {
+		// Use this.solver field which was set in constructor
+		long deadline = System.currentTimeMillis() + this.solver.timeLimit;
+		int n = configurations.size();
+		final TruckContainerSolver[] members = new TruckContainerSolver[n];
+		final ALNS[] searches = new ALNS[n];
+		final AtomicIntegerArray state = new AtomicIntegerArray(n);
+		Thread[] threads = new Thread[n];
+		for (int i = 0; i < n; i++) {
+			final int id = i;
+			// the first member logs in outputFile, the others in a file of their own
+			final String file = i == 0 ? outputFile : outputFile + ".portfolio" + i;
+			if (i == 0) {
+				members[i] = this.solver;
+				configurations.get(i).applySearchParameters(members[i]);
+				state.set(i, SEARCHING);
+			} else {
+				members[i] = this.solver.createSolverOnSameData();
+				configurations.get(i).apply(members[i]);
+			}
+			searches[i] = new ALNS(members[i]);
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					TruckContainerSolver s = members[id];
+					if (id != 0) {
+						s.init();
+						if (state.get(id) == CANCELLED)
+							return;
+						s.stateModel();
+						if (state.get(id) == CANCELLED)
+							return;
+						s.initializeSolution();
+						// the search only starts if the member has not been cancelled meanwhile
+						if (!state.compareAndSet(id, INITIALIZING, SEARCHING))
+							return;
+					}
+					searches[id].optimize(s, file);
+				}
+			}, "portfolio-" + i);
+			threads[i].start();
+		}
+		try {
+			for (int i = 0; i < n; i++)
+				threads[i].join(Math.max(1, deadline - System.currentTimeMillis()));
+			for (int i = 0; i < n; i++) {
+				if (state.compareAndSet(i, INITIALIZING, CANCELLED))
+					threads[i].interrupt();
+				else
+					searches[i].stop();
+			}
+			// the searches end at their next iteration, the initializations after their current step
+			for (int i = 0; i < n; i++)
+				threads[i].join();
+		} catch (InterruptedException e) {
+			System.out.println("PortfolioSearch::optimize, exception " + e);
+			e.printStackTrace();
+			System.exit(-1);
+		}
+
+		TruckContainerSolution best = members[0].getSolution();
+		int b = 0;
+		for (int i = 1; i < n; i++) {
+			if (state.get(i) == CANCELLED) {
+				System.out.println("PortfolioSearch::optimize, configuration " + i + " not initialized at the time limit");
+				continue;
+			}
+			TruckContainerSolution sol = members[i].getSolution();
+			if (TruckContainerSolver.isBetter(sol, best)) {
+				best = sol;
+				b = i;
+			}
+		}
+		System.out.println("PortfolioSearch::optimize, best solution found by configuration " + b);
+		if (b != 0)
+			this.solver.setSolution(best);
+	}
+}
@@ -0,0 +1,107 @@
+package solver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import solver.init.FPIUSInit;
+import solver.opt.ALNS;
+import vrp.entities.Point;
+
+/**
+ * Checks that solvers running concurrently in one JVM do not share state: the 8, 20 and 70
+ * request inputs are solved with fixed seeds on one thread each, then one after another, and the
+ * two runs of each input must end with the same routes, objective and violations.
+ * Run from the root of the repository, exits with -1 on a mismatch.
+ */
+public class ConcurrentSolveCheck {
+	static final String[] INPUTS = {
+		"data/truck-container/input/random-8reqs-RealLoc-0.txt",
+		"data/truck-container/input/random-20reqs-RealLoc-0.txt",
+		"data/truck-container/input/random-70reqs-RealLoc-0.txt"
+	};
+	static final int N_ITER = 100;
+
+	static class Result {
+		String routes;
+		double objective;
+		int violations;
+
+		public String toString() {
+			return "objective = " + objective + ", violations = " + violations + "\n" + routes;
+		}
+	}
+
+	static Result solve(String input, long seed) {
+		TruckContainerSolver solver = new TruckContainerSolver();
+		solver.random = new Random(seed);
+		solver.readData(input);
+		solver.init();
+		solver.stateModel();
+		solver.setInitializationStrategy(new FPIUSInit());
+		solver.initializeSolution();
+
+		solver.nIter = N_ITER;
+		solver.lower_removal = 1;
+		solver.upper_removal = Math.max(2, solver.nRequest / 4);
+		String log;
+		try {
+			File f = File.createTempFile("alns", ".txt");
+			f.deleteOnExit();
+			log = f.getPath();
+		} catch (IOException e) {
+			System.out.println("ConcurrentSolveCheck::solve, exception " + e);
+			e.printStackTrace();
+			System.exit(-1);
+			return null;
+		}
+		solver.setOptimizationStrategy(new ALNS(solver));
+		solver.optimizeSolution(log);
+
+		Result res = new Result();
+		StringBuilder sb = new StringBuilder();
+		for (int r = 1; r <= solver.XR.getNbRoutes(); r++) {
+			sb.append("route[" + r + "] =");
+			for (Point p = solver.XR.getStartingPointOfRoute(r); p != null; p = solver.XR.next(p))
+				sb.append(" " + p.getID());
+			sb.append("\n");
+		}
+		res.routes = sb.toString();
+		res.objective = solver.objective.getValue();
+		res.violations = solver.S.violations();
+		return res;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		int n = INPUTS.length;
+		final Result[] concurrent = new Result[n];
+		Thread[] threads = new Thread[n];
+		for (int i = 0; i < n; i++) {
+			final int id = i;
+			threads[i] = new Thread(new Runnable() {
+				public void run() {
+					concurrent[id] = solve(INPUTS[id], 42 + id);
+				}
+			}, "solve-" + i);
+			threads[i].start();
+		}
+		for (int i = 0; i < n; i++)
+			threads[i].join();
+
+		boolean ok = true;
+		for (int i = 0; i < n; i++) {
+			Result sequential = solve(INPUTS[i], 42 + i);
+			if (concurrent[i] == null || !concurrent[i].routes.equals(sequential.routes)
+					|| concurrent[i].objective != sequential.objective
+					|| concurrent[i].violations != sequential.violations) {
+				System.out.println("ConcurrentSolveCheck, " + INPUTS[i] + " MISMATCH\nconcurrent: " + concurrent[i]
+						+ "\nsequential: " + sequential);
+				ok = false;
+			} else {
+				System.out.println("ConcurrentSolveCheck, " + INPUTS[i] + " OK, " + sequential.toString().split("\n")[0]);
+			}
+		}
+		if (!ok)
+			System.exit(-1);
+	}
+}
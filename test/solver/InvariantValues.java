@@ -0,0 +1,111 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import vrp.Constants;
+import vrp.entities.Point;
+
+/**
+ * Reading and comparison of the routes and of every invariant and constraint a solver maintains,
+ * and random moves performed through its VRManager, for the checks of the propagation modes.
+ */
+class InvariantValues {
+	static final int N_KINDS = 5;
+
+	// routes, objective, violations, earliest arrival times and accumulated weights of s, always
+	// listed in the same order but read starting with the values of kind first, so that every getter
+	// is the first one read after some moves
+	static ArrayList<String> read(TruckContainerSolver s, int first) {
+		ArrayList<ArrayList<String>> kinds = new ArrayList<ArrayList<String>>();
+		for (int i = 0; i < N_KINDS; i++)
+			kinds.add(null);
+		for (int i = 0; i < N_KINDS; i++) {
+			int kind = (first + i) % N_KINDS;
+			kinds.set(kind, read(s, kind, new ArrayList<String>()));
+		}
+		ArrayList<String> L = new ArrayList<String>();
+		for (int i = 0; i < N_KINDS; i++)
+			L.addAll(kinds.get(i));
+		return L;
+	}
+
+	private static ArrayList<String> read(TruckContainerSolver s, int kind, ArrayList<String> L) {
+		switch (kind) {
+			case 0:
+				L.add("objective = " + s.objective.getValue());
+				break;
+			case 1:
+				L.add("violations = " + s.S.violations() + ", time windows " + s.cEarliest.violations()
+						+ ", container capacity " + s.capContCtr.violations() + ", trailer capacity "
+						+ s.capMoocCtr.violations() + ", container on trailer " + s.contmoocCtr.violations());
+				break;
+			default:
+				for (int r = 1; r <= s.XR.getNbRoutes(); r++) {
+					StringBuilder sb = new StringBuilder("route[" + r + "]");
+					for (Point p = s.XR.getStartingPointOfRoute(r); p != null; p = s.XR.next(p)) {
+						sb.append(" " + p.getID());
+						if (kind == 2)
+							sb.append(":" + s.eat.getEarliestArrivalTime(p));
+						else if (kind == 3)
+							sb.append(":" + s.accMoocInvr.getSumWeights(p));
+						else
+							sb.append(":" + s.accContainerInvr.getSumWeights(p));
+					}
+					L.add(sb.toString());
+				}
+		}
+		return L;
+	}
+
+	// the first value differing in a and b, null if there is none
+	static String firstDifference(ArrayList<String> a, ArrayList<String> b) {
+		for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+			if (!a.get(i).equals(b.get(i)))
+				return a.get(i) + "\n  instead of\n" + b.get(i);
+		}
+		if (a.size() != b.size())
+			return a.size() + " values instead of " + b.size();
+		return null;
+	}
+
+	/**
+	 * Performs through the VRManager of s one move chosen with R among: removing a routed request,
+	 * inserting a request which is not routed after random points of a route, adding a free
+	 * trailer or removing a routed one. The move only depends on R and on the routes, so that
+	 * solvers with the same routes perform the same move.
+	 */
+	static void performRandomMove(TruckContainerSolver s, Random R) {
+		int kind = R.nextInt(4);
+		if (kind < 2) {
+			Point pickup = s.pickupPoints.get(R.nextInt(s.pickupPoints.size()));
+			Point delivery = s.pickup2Delivery.get(pickup);
+			if (s.XR.route(pickup) != Constants.NULL_POINT) {
+				if (s.XR.route(delivery) == s.XR.route(pickup) && s.XR.index(pickup) < s.XR.index(delivery))
+					s.mgr.performRemoveTwoPoints(pickup, delivery);
+			} else if (s.XR.route(delivery) == Constants.NULL_POINT) {
+				int r = 1 + R.nextInt(s.XR.getNbRoutes());
+				Point p = randomPointAfter(s, s.XR.getStartingPointOfRoute(r), R);
+				Point q = randomPointAfter(s, p, R);
+				s.mgr.performAddTwoPoints(pickup, p, delivery, q);
+			}
+		} else {
+			Point st = s.startMoocPoints.get(R.nextInt(s.startMoocPoints.size()));
+			if (s.XR.route(st) != Constants.NULL_POINT) {
+				s.mgr.performRemoveOnePoint(st);
+			} else {
+				int r = 1 + R.nextInt(s.XR.getNbRoutes());
+				s.mgr.performAddOnePoint(st, randomPointAfter(s, s.XR.getStartingPointOfRoute(r), R));
+			}
+		}
+	}
+
+	// p or a point after p on its route, the terminating point excluded
+	private static Point randomPointAfter(TruckContainerSolver s, Point p, Random R) {
+		int k = s.XR.route(p);
+		int n = s.XR.index(s.XR.getTerminatingPointOfRoute(k)) - s.XR.index(p);
+		for (int i = R.nextInt(n); i > 0; i--)
+			p = s.XR.next(p);
+		return p;
+	}
+}
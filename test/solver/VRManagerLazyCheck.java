@@ -0,0 +1,70 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import solver.init.FPIUSInit;
+
+/**
+ * Checks the lazy mode of VRManager: two solvers on the 20 request input perform the same bursts of
+ * random moves, one with setLazy(true) and one propagating every move. After each burst, the routes
+ * and every invariant and constraint of the lazy solver, read starting with a different getter each
+ * time, must be those of the eager one. Run from the root of the repository, exits with -1 on a
+ * mismatch.
+ */
+public class VRManagerLazyCheck {
+	static final String INPUT = "data/truck-container/input/random-20reqs-RealLoc-0.txt";
+	static final int N_BURSTS = 500;
+	static final int MAX_MOVES = 10;
+
+	static TruckContainerSolver build() {
+		TruckContainerSolver solver = new TruckContainerSolver();
+		solver.random = new Random(42);
+		solver.readData(INPUT);
+		solver.init();
+		solver.stateModel();
+		solver.setInitializationStrategy(new FPIUSInit());
+		solver.initializeSolution();
+		return solver;
+	}
+
+	public static void main(String[] args) {
+		TruckContainerSolver eager = build();
+		TruckContainerSolver lazy = build();
+		lazy.mgr.setLazy(true);
+		if (!lazy.mgr.isLazy()) {
+			System.out.println("VRManagerLazyCheck, setLazy(true) ignored");
+			System.exit(-1);
+		}
+
+		// the moves only depend on the routes, which are the same in both solvers
+		Random Re = new Random(1);
+		Random Rl = new Random(1);
+		for (int burst = 0; burst < N_BURSTS; burst++) {
+			int n = 1 + Re.nextInt(MAX_MOVES);
+			Rl.nextInt(MAX_MOVES);
+			for (int i = 0; i < n; i++) {
+				InvariantValues.performRandomMove(eager, Re);
+				InvariantValues.performRandomMove(lazy, Rl);
+			}
+			int first = burst % InvariantValues.N_KINDS;
+			String d = InvariantValues.firstDifference(InvariantValues.read(lazy, first),
+					InvariantValues.read(eager, first));
+			if (d != null) {
+				System.out.println("VRManagerLazyCheck, burst " + burst + ":\n" + d);
+				System.exit(-1);
+			}
+		}
+
+		// leaving the lazy mode propagates the pending moves
+		InvariantValues.performRandomMove(eager, Re);
+		InvariantValues.performRandomMove(lazy, Rl);
+		lazy.mgr.setLazy(false);
+		String d = InvariantValues.firstDifference(InvariantValues.read(lazy, 0), InvariantValues.read(eager, 0));
+		if (d != null) {
+			System.out.println("VRManagerLazyCheck, after setLazy(false):\n" + d);
+			System.exit(-1);
+		}
+		System.out.println("VRManagerLazyCheck, OK, " + N_BURSTS + " bursts");
+	}
+}
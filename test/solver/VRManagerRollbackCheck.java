@@ -0,0 +1,64 @@
+package solver;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import solver.init.FPIUSInit;
+
+/**
+ * Checks VRManager.checkpoint()/rollback(): from the initial solution of the 20 request input,
+ * trials of random moves are either rolled back, after which the routes and every invariant must be
+ * those of the checkpoint, or committed. After each trial the invariants must also be those a fresh
+ * initPropagation computes on the routes.
+ * Run from the root of the repository, exits with -1 on a mismatch.
+ */
+public class VRManagerRollbackCheck {
+	static final String INPUT = "data/truck-container/input/random-20reqs-RealLoc-0.txt";
+	static final int N_TRIALS = 500;
+	static final int MAX_MOVES = 10;
+
+	static void check(String what, int trial, ArrayList<String> a, ArrayList<String> b) {
+		String d = InvariantValues.firstDifference(a, b);
+		if (d == null)
+			return;
+		System.out.println("VRManagerRollbackCheck, trial " + trial + ", " + what + ":\n" + d);
+		System.exit(-1);
+	}
+
+	public static void main(String[] args) {
+		TruckContainerSolver solver = new TruckContainerSolver();
+		solver.random = new Random(42);
+		solver.readData(INPUT);
+		solver.init();
+		solver.stateModel();
+		solver.setInitializationStrategy(new FPIUSInit());
+		solver.initializeSolution();
+
+		Random R = new Random(1);
+		int nbRolledBack = 0;
+		for (int trial = 0; trial < N_TRIALS; trial++) {
+			int first = trial % InvariantValues.N_KINDS;
+			ArrayList<String> before = InvariantValues.read(solver, first);
+			solver.mgr.checkpoint();
+			int n = 1 + R.nextInt(MAX_MOVES);
+			// some trials are performed in a batch, as the moves of ALNS
+			boolean batch = R.nextBoolean();
+			if (batch)
+				solver.mgr.beginBatch();
+			for (int i = 0; i < n; i++)
+				InvariantValues.performRandomMove(solver, R);
+			if (batch)
+				solver.mgr.endBatch();
+			if (R.nextBoolean()) {
+				solver.mgr.rollback();
+				nbRolledBack++;
+				check("after rollback", trial, InvariantValues.read(solver, first), before);
+			}
+			solver.mgr.commit();
+			ArrayList<String> after = InvariantValues.read(solver, first);
+			solver.mgr.initPropagation();
+			check("after initPropagation", trial, after, InvariantValues.read(solver, first));
+		}
+		System.out.println("VRManagerRollbackCheck, OK, " + N_TRIALS + " trials, " + nbRolledBack + " rolled back");
+	}
+}
@@ -0,0 +1,110 @@
+package vrp.constraints;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+import solver.TruckContainerSolver;
+import solver.init.FPIUSInit;
+import vrp.Constants;
+import vrp.entities.Point;
+
+/**
+ * Checks that the insertion evaluations of CEarliestArrivalTimeVR (evaluateAddPoints and canAddPoints)
+ * allocate nothing: a few requests of the initial solution are removed, the insertions of their
+ * pickup and delivery points after every point of every route are evaluated until the JIT has warmed
+ * up, then the bytes allocated by the thread must not grow with the number of evaluations.
+ * Run from the root of the repository, exits with -1 if they grow.
+ */
+public class CEarliestArrivalTimeVRAllocationCheck {
+	static final String INPUT = "data/truck-container/input/random-20reqs-RealLoc-0.txt";
+	static final int N_REMOVED = 5;
+	static final int N_WARMUP = 2000;
+	static final int N_MEASURED = 10000;
+
+	static ArrayList<ArrayList<Point>> xs = new ArrayList<ArrayList<Point>>();
+	static ArrayList<ArrayList<Point>> ys = new ArrayList<ArrayList<Point>>();
+	static long sink = 0;
+
+	// evaluates all the moves n times, only on primitives
+	static void evaluate(CEarliestArrivalTimeVR cEarliest, int n) {
+		int m = xs.size();
+		for (int k = 0; k < n; k++) {
+			for (int i = 0; i < m; i++) {
+				sink += cEarliest.evaluateAddPoints(xs.get(i), ys.get(i));
+				if (cEarliest.canAddPoints(xs.get(i), ys.get(i)))
+					sink++;
+			}
+		}
+	}
+
+	static long allocatedBytes(com.sun.management.ThreadMXBean mx, long tid) {
+		return mx.getThreadAllocatedBytes(tid);
+	}
+
+	public static void main(String[] args) {
+		TruckContainerSolver solver = new TruckContainerSolver();
+		solver.random = new Random(42);
+		solver.readData(INPUT);
+		solver.init();
+		solver.stateModel();
+		solver.setInitializationStrategy(new FPIUSInit());
+		solver.initializeSolution();
+
+		// remove a few routed requests so that they can be inserted again
+		ArrayList<Point> removed = new ArrayList<Point>();
+		for (Point pickup : solver.pickupPoints) {
+			if (removed.size() == N_REMOVED)
+				break;
+			Point delivery = solver.pickup2Delivery.get(pickup);
+			if (delivery == null || solver.XR.route(pickup) == Constants.NULL_POINT
+					|| solver.XR.route(delivery) != solver.XR.route(pickup))
+				continue;
+			solver.mgr.performRemoveTwoPoints(pickup, delivery);
+			removed.add(pickup);
+		}
+		// insert pickup after y and delivery right after pickup, for each y on a route
+		for (Point pickup : removed) {
+			Point delivery = solver.pickup2Delivery.get(pickup);
+			for (int r = 1; r <= solver.XR.getNbRoutes(); r++) {
+				for (Point y = solver.XR.getStartingPointOfRoute(r); y != solver.XR.getTerminatingPointOfRoute(r); y = solver.XR
+						.next(y)) {
+					ArrayList<Point> x = new ArrayList<Point>();
+					ArrayList<Point> yy = new ArrayList<Point>();
+					x.add(pickup);
+					yy.add(y);
+					x.add(delivery);
+					yy.add(pickup);
+					xs.add(x);
+					ys.add(yy);
+				}
+			}
+		}
+		if (xs.size() == 0) {
+			System.out.println("CEarliestArrivalTimeVRAllocationCheck, no insertion to evaluate");
+			System.exit(-1);
+		}
+
+		CEarliestArrivalTimeVR cEarliest = solver.cEarliest;
+		com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long tid = Thread.currentThread().getId();
+		evaluate(cEarliest, N_WARMUP);
+
+		// the measurement itself may allocate a little: compare a single pass with many passes
+		long b0 = allocatedBytes(mx, tid);
+		evaluate(cEarliest, 1);
+		long b1 = allocatedBytes(mx, tid);
+		evaluate(cEarliest, N_MEASURED);
+		long b2 = allocatedBytes(mx, tid);
+		long one = b1 - b0;
+		long many = b2 - b1;
+
+		System.out.println("CEarliestArrivalTimeVRAllocationCheck, " + xs.size() + " insertions, allocated "
+				+ one + " bytes for 1 pass, " + many + " bytes for " + N_MEASURED + " passes (" + sink + ")");
+		if (many > one) {
+			System.out.println("CEarliestArrivalTimeVRAllocationCheck, allocation grows with the evaluations");
+			System.exit(-1);
+		}
+		System.out.println("CEarliestArrivalTimeVRAllocationCheck, OK");
+	}
+}
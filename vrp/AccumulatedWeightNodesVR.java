@@ -12,7 +12,20 @@ public class AccumulatedWeightNodesVR implements InvariantVR {
 	protected NodeWeightsManager nwm;
 	
 	protected double[] sumWeights;
-	protected HashMap<Point, Integer> map;
+	
+	// segment trees over the positions (XR.index) of the points of each route, giving the max and
+	// the min of sumWeights on a range of positions: the leaf of position i of route k is
+	// treeMax[k][treeSize[k] + i], routeLength[k] leaves are in use
+	protected double[][] treeMax;
+	protected double[][] treeMin;
+	protected int[] treeSize;
+	protected int[] routeLength;
+	// max and min of sumWeights over the positions 0..i (prefix) and i..routeLength[k]-1 (suffix)
+	// of route k, at index i
+	protected double[][] prefixMax;
+	protected double[][] prefixMin;
+	protected double[][] suffixMax;
+	protected double[][] suffixMin;
 	
 	public AccumulatedWeightNodesVR(VarRoutesVR XR, NodeWeightsManager nwm){
 		this.nwm = nwm;
@@ -23,29 +36,85 @@ public class AccumulatedWeightNodesVR implements InvariantVR {
 	
 	private void post(){
 		sumWeights = new double[XR.getTotalNbPoints()];
-		map = new HashMap<Point, Integer>();
-		ArrayList<Point> points = XR.getAllPoints();
-		for (int i = 0; i < points.size(); i++) {
-			map.put(points.get(i), i);
-		}
 		for(int k= 1; k <= XR.getNbRoutes(); k++){
 			Point p = XR.startPoint(k);
 			sumWeights[getIndex(p)] = nwm.getWeight(p);
 		}
+		treeMax = new double[XR.getNbRoutes()+1][];
+		treeMin = new double[XR.getNbRoutes()+1][];
+		treeSize = new int[XR.getNbRoutes()+1];
+		routeLength = new int[XR.getNbRoutes()+1];
+		prefixMax = new double[XR.getNbRoutes()+1][];
+		prefixMin = new double[XR.getNbRoutes()+1][];
+		suffixMax = new double[XR.getNbRoutes()+1][];
+		suffixMin = new double[XR.getNbRoutes()+1][];
 		
 		mgr.post(this);
 	}
 	
 	protected int getIndex(Point p) {
-		return map.get(p);
+		return XR.getIndex(p);
 	}
 	
 	public double getWeights(Point p){
 		return nwm.getWeight(p);
 	}
 	public double getSumWeights(Point p){
+		mgr.flush();
 		return sumWeights[getIndex(p)];
 	}
+	public double getWeights(int i){
+		return nwm.getWeight(i);
+	}
+	public double getSumWeights(int i){
+		mgr.flush();
+		return sumWeights[i];
+	}
+	// indexed by point ordinal
+	public double[] getSumWeights(){
+		mgr.flush();
+		return sumWeights;
+	}
+	// max of sumWeights over the positions from..to (from <= to) of route k, in O(log n)
+	public double getMaxSumWeights(int k, int from, int to){
+		mgr.flush();
+		double[] mx = treeMax[k];
+		double r = -Double.MAX_VALUE;
+		for(int l = treeSize[k] + from, h = treeSize[k] + to + 1; l < h; l >>= 1, h >>= 1){
+			if((l & 1) == 1) r = Math.max(r, mx[l++]);
+			if((h & 1) == 1) r = Math.max(r, mx[--h]);
+		}
+		return r;
+	}
+	// min of sumWeights over the positions from..to (from <= to) of route k, in O(log n)
+	public double getMinSumWeights(int k, int from, int to){
+		mgr.flush();
+		double[] mn = treeMin[k];
+		double r = Double.MAX_VALUE;
+		for(int l = treeSize[k] + from, h = treeSize[k] + to + 1; l < h; l >>= 1, h >>= 1){
+			if((l & 1) == 1) r = Math.min(r, mn[l++]);
+			if((h & 1) == 1) r = Math.min(r, mn[--h]);
+		}
+		return r;
+	}
+	// max and min of sumWeights over the positions 0..to of route k, in O(1)
+	public double getMaxSumWeightsTo(int k, int to){
+		mgr.flush();
+		return prefixMax[k][to];
+	}
+	public double getMinSumWeightsTo(int k, int to){
+		mgr.flush();
+		return prefixMin[k][to];
+	}
+	// max and min of sumWeights over the positions from..index of the terminating point of route k, in O(1)
+	public double getMaxSumWeightsFrom(int k, int from){
+		mgr.flush();
+		return suffixMax[k][from];
+	}
+	public double getMinSumWeightsFrom(int k, int from){
+		mgr.flush();
+		return suffixMin[k][from];
+	}
 	public VarRoutesVR getVarRoutesVR(){
 		return this.XR;
 	}
@@ -62,15 +131,95 @@ public class AccumulatedWeightNodesVR implements InvariantVR {
 		Point sp = XR.startPoint(k);
 		nwm.setWeight(sp, w);		
 		sumWeights[getIndex(sp)] = w;
+		update(k);
 	}
 	// update sumWeight of points of route k
     protected void update(int k) {
     	//System.out.println(name() + "::update(" + k + ")");
-    	Point sp = XR.getStartingPointOfRoute(k);
-        Point tp = XR.getTerminatingPointOfRoute(k);
-        //sumWeights[getIndex(sp)] = nwm.getWeight(sp);
-        for (Point u = sp; u != tp; u = XR.next(u)){
-        	sumWeights[getIndex(XR.next(u))] = sumWeights[getIndex(u)] + nwm.getWeight(XR.next(u));
+    	update(k, XR.getStartingIndexOfRoute(k));
+    }
+    
+    // update sumWeight of points of route k located after u, the points up to u being unchanged
+    protected void update(int k, int u) {
+    	int tp = XR.getTerminatingIndexOfRoute(k);
+    	int n = XR.index(tp) + 1;
+    	if(treeSize[k] < n){
+    		allocateTree(k, n);
+    		u = XR.getStartingIndexOfRoute(k);
+    	}
+    	double[] mx = treeMax[k];
+    	double[] mn = treeMin[k];
+    	int size = treeSize[k];
+    	int from = XR.index(u);
+    	mx[size + from] = mn[size + from] = sumWeights[u];
+        for (; u != tp; u = XR.next(u)){
+        	int v = XR.next(u);
+        	sumWeights[v] = sumWeights[u] + nwm.getWeight(v);
+        	mx[size + XR.index(v)] = mn[size + XR.index(v)] = sumWeights[v];
+        }
+        updateParents(k, from, n);
+    }
+    
+    // the sumWeights of the n points of route k, given in route order in seq, have been
+    // recomputed by the caller: rebuild the segment trees of route k
+    public void updateTree(int k, int[] seq, int n) {
+    	if(treeSize[k] < n)
+    		allocateTree(k, n);
+    	double[] mx = treeMax[k];
+    	double[] mn = treeMin[k];
+    	int size = treeSize[k];
+    	for(int i = 0; i < n; i++)
+    		mx[size + i] = mn[size + i] = sumWeights[seq[i]];
+    	updateParents(k, 0, n);
+    }
+    
+    private void allocateTree(int k, int n) {
+    	int size = 1;
+    	while(size < n) size <<= 1;
+    	treeSize[k] = size;
+    	treeMax[k] = new double[2*size];
+    	treeMin[k] = new double[2*size];
+    	Arrays.fill(treeMax[k], -Double.MAX_VALUE);
+    	Arrays.fill(treeMin[k], Double.MAX_VALUE);
+    	prefixMax[k] = new double[size];
+    	prefixMin[k] = new double[size];
+    	suffixMax[k] = new double[size];
+    	suffixMin[k] = new double[size];
+    	routeLength[k] = 0;
+    }
+    
+    // the leaves of the positions from..n-1 of route k have changed, route k has now n points
+    private void updateParents(int k, int from, int n) {
+    	double[] mx = treeMax[k];
+    	double[] mn = treeMin[k];
+    	int size = treeSize[k];
+        // positions left by removed points
+        for(int i = n; i < routeLength[k]; i++){
+        	mx[size + i] = -Double.MAX_VALUE;
+        	mn[size + i] = Double.MAX_VALUE;
+        }
+        int to = Math.max(n, routeLength[k]) - 1;
+        routeLength[k] = n;
+        for(int l = (size + from) >> 1, h = (size + to) >> 1; l >= 1; l >>= 1, h >>= 1){
+        	for(int i = l; i <= h; i++){
+        		mx[i] = Math.max(mx[2*i], mx[2*i+1]);
+        		mn[i] = Math.min(mn[2*i], mn[2*i+1]);
+        	}
+        }
+        // the prefixes before from are unchanged, all the suffixes may have changed
+        double[] pMax = prefixMax[k];
+        double[] pMin = prefixMin[k];
+        double[] sMax = suffixMax[k];
+        double[] sMin = suffixMin[k];
+        for(int i = from; i < n; i++){
+        	pMax[i] = i == 0 ? mx[size] : Math.max(pMax[i-1], mx[size + i]);
+        	pMin[i] = i == 0 ? mn[size] : Math.min(pMin[i-1], mn[size + i]);
+        }
+        sMax[n-1] = mx[size + n - 1];
+        sMin[n-1] = mn[size + n - 1];
+        for(int i = n - 2; i >= 0; i--){
+        	sMax[i] = Math.max(sMax[i+1], mx[size + i]);
+        	sMin[i] = Math.min(sMin[i+1], mn[size + i]);
         }
     }
     
@@ -284,25 +433,27 @@ public class AccumulatedWeightNodesVR implements InvariantVR {
 	
 	public void propagateAddOnePoint(Point x, Point y) {
 		// TODO Auto-generated method stub
-		update(XR.route(y));
+		update(XR.route(y), getIndex(y));
 	}
 
 	
 	public void propagateRemoveOnePoint(Point x) {
 		// TODO Auto-generated method stub
-		update(XR.oldRoute(x));
+		update(XR.oldRoute(x), getIndex(XR.oldPrev(x)));
 		sumWeights[getIndex(x)] = 0;
 	}
 	
 	public void propagateAddTwoPoints(Point x1, Point y1, Point x2, Point y2) {
 		// TODO Auto-generated method stub
-		update(XR.route(y1));
+		Point u = XR.index(x1) < XR.index(x2) ? XR.prev(x1) : XR.prev(x2);
+		update(XR.route(y1), getIndex(u));
 	}
 
 	
 	public void propagateRemoveTwoPoints(Point x1, Point x2) {
 		// TODO Auto-generated method stub
-		update(XR.oldRoute(x1));
+		// x1 is before x2
+		update(XR.oldRoute(x1), getIndex(XR.oldPrev(x1)));
 		sumWeights[getIndex(x1)] = sumWeights[getIndex(x2)] = 0;
 	}
 	
@@ -314,6 +465,13 @@ public class AccumulatedWeightNodesVR implements InvariantVR {
 			update(XR.oldRoute(z));
 		}
 	}
+
+	public void propagateRoutes(ArrayList<Integer> r, ArrayList<Point> removed) {
+		for(Point p : removed)
+			sumWeights[getIndex(p)] = 0;
+		for(int k : r)
+			update(k);
+	}
 	
 	
 	public void propagateKPointsMove(ArrayList<Point> x, ArrayList<Point> y) {
@@ -27,12 +27,14 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int violations() {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		return _violations;
 	}
 
 	//@Override
 	public int evaluateOnePointMove(Point x, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateOnePointMove(x, y);
 		return eval;
@@ -41,6 +43,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateTwoPointsMove(Point x, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateTwoPointsMove(x, y);
 		return eval;
@@ -49,6 +52,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateTwoOptMove1(Point x, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateTwoOptMove1(x, y);
 		return eval;
@@ -57,6 +61,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateTwoOptMove2(Point x, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateTwoOptMove2(x, y);
 		return eval;
@@ -65,6 +70,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateTwoOptMove3(Point x, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateTwoOptMove3(x, y);
 		return eval;
@@ -73,6 +79,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateTwoOptMove4(Point x, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateTwoOptMove4(x, y);
 		return eval;
@@ -82,6 +89,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateTwoOptMove5(Point x, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateTwoOptMove5(x, y);
 		return eval;
@@ -90,6 +98,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateTwoOptMove6(Point x, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateTwoOptMove6(x, y);
 		return eval;
@@ -98,6 +107,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateTwoOptMove7(Point x, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateTwoOptMove7(x, y);
 		return eval;
@@ -106,6 +116,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateTwoOptMove8(Point x, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) {
 			eval += f.evaluateTwoOptMove8(x, y);
@@ -116,6 +127,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateOrOptMove1(Point x1, Point x2, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateOrOptMove1(x1, x2, y);
 		return eval;
@@ -124,6 +136,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateOrOptMove2(Point x1, Point x2, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateOrOptMove1(x1, x2, y);
 		return eval;
@@ -132,6 +145,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateThreeOptMove1(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateThreeOptMove1(x,y,z);
 		return eval;
@@ -140,6 +154,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateThreeOptMove2(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateThreeOptMove2(x,y,z);
 		return eval;
@@ -148,6 +163,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateThreeOptMove3(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateThreeOptMove3(x,y,z);
 		return eval;
@@ -156,6 +172,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateThreeOptMove4(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateThreeOptMove4(x,y,z);
 		return eval;
@@ -164,6 +181,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateThreeOptMove5(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateThreeOptMove5(x,y,z);
 		return eval;
@@ -172,6 +190,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateThreeOptMove6(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateThreeOptMove6(x,y,z);
 		return eval;
@@ -180,6 +199,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateThreeOptMove7(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateThreeOptMove7(x,y,z);
 		return eval;
@@ -188,6 +208,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateThreeOptMove8(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateThreeOptMove8(x,y,z);
 		return eval;
@@ -196,6 +217,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateCrossExchangeMove(Point x1, Point y1, Point x2, Point y2) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateCrossExchangeMove(x1,y1,x2,y2);
 		return eval;
@@ -382,6 +404,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateTwoPointsMove(Point x1, Point x2, Point y1, Point y2) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateTwoPointsMove(x1, x2, y1, y2);
 		return eval;
@@ -390,6 +413,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	public int evaluateThreePointsMove(Point x1, Point x2, Point x3, Point y1, Point y2,
 			Point y3) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateThreePointsMove(x1, x2, x3, y1, y2, y3);
 		return eval;
@@ -398,6 +422,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	public int evaluateFourPointsMove(Point x1, Point x2, Point x3, Point x4, Point y1,
 			Point y2, Point y3, Point y4) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateFourPointsMove(x1, x2, x3, x4, y1, y2, y3, y4);
 		return eval;
@@ -405,6 +430,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateAddOnePoint(Point x, Point y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateAddOnePoint(x, y);
 		return eval;
@@ -412,6 +438,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateRemoveOnePoint(Point x) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateRemoveOnePoint(x);
 		return eval;
@@ -420,13 +447,22 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateAddTwoPoints(Point x1, Point y1, Point x2, Point y2) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateAddTwoPoints(x1, y1, x2, y2);
 		return eval;
 	}
 	//@Override
+	public int evaluateAddPoints(ArrayList<Point> x, ArrayList<Point> y) {
+		_mgr.flush();
+		int eval = 0;
+		for(IConstraintVR f : _constraints) eval += f.evaluateAddPoints(x, y);
+		return eval;
+	}
+	//@Override
 	public int evaluateRemoveTwoPoints(Point x1, Point x2) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) eval += f.evaluateRemoveTwoPoints(x1, x2);
 		return eval;
@@ -437,9 +473,15 @@ public class ConstraintSystemVR implements IConstraintVR {
 		// TODO Auto-generated method stub
 		initPropagation();
 	}
+
+	//@Override
+	public void propagateRoutes(ArrayList<Integer> r, ArrayList<Point> removed) {
+		initPropagation();
+	}
 	//@Override
 	public int evaluateAddRemovePoints(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) {
 			//System.out.println(f.name() + " " + f.evaluateAddRemovePoints(x, y, z));
@@ -455,6 +497,7 @@ public class ConstraintSystemVR implements IConstraintVR {
 	//@Override
 	public int evaluateKPointsMove(ArrayList<Point> x, ArrayList<Point> y) {
 		// TODO Auto-generated method stub
+		_mgr.flush();
 		int eval = 0;
 		for(IConstraintVR f : _constraints) {
 			eval += f.evaluateKPointsMove(x, y);
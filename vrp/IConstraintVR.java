@@ -187,6 +187,11 @@ public interface IConstraintVR extends InvariantVR {
     // if y1 == y2, the Point x2 is added right-after the Point x1.
     public int evaluateAddTwoPoints(Point x1, Point y1, Point x2, Point y2);
     
+    // add x[i] right-after y[i], forall i = 0,...,x.size()-1 in that order
+    // y[i] is either on the route of the other anchors or is a point x[j] with j < i
+    // application: insertion of a request together with the trailer points it requires
+    public int evaluateAddPoints(ArrayList<Point> x, ArrayList<Point> y);
+    
     // remove two points x1 and x2 from its current route
     // x1 and x2 are on the same route and index[x1] < index[x2]
     public int evaluateRemoveTwoPoints(Point x1, Point x2);
@@ -193,7 +193,12 @@ public interface IFunctionVR extends InvariantVR{
     // y1 and y2 are on the same route and index[y1] < index[y2]
     // if y1 == y2, the Point x2 is added right-after the Point x1.
     double evaluateAddTwoPoints(Point x1, Point y1, Point x2, Point y2);
-    
+
+    // add x[i] right-after y[i], forall i = 0,...,x.size()-1 in that order
+    // y[i] is either on the route of the other anchors or is a point x[j] with j < i
+    // application: insertion of a request together with the trailer points it requires
+    double evaluateAddPoints(ArrayList<Point> x, ArrayList<Point> y);
+
     // remove two points x1 and x2 from its current route
     // x1 and x2 are on the same route and index[x1] < index[x2]
     double evaluateRemoveTwoPoints(Point x1, Point x2);
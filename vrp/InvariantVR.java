@@ -228,6 +228,11 @@ public interface InvariantVR {
     
     public void propagateAddRemovePoints(Point x, Point y, Point z);
     
+    // the routes of r have been modified without propagation (VRManager.rollback() or a batch of moves
+    // ended by VRManager.endBatch()), recompute the data maintained on them; the points of removed
+    // are no longer on a route
+    public void propagateRoutes(ArrayList<Integer> r, ArrayList<Point> removed);
+    
     
     
     public String name();
@@ -1,6 +1,7 @@
 package vrp;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 
 import vrp.entities.Point;
@@ -11,6 +12,16 @@ public class VRManager {
 	private VarRoutesVR X;
 	private ArrayList<ConstraintSystemVR> constraintSystem;
 
+	// batch of moves between beginBatch() and endBatch(), or lazy mode: the moves are not
+	// propagated, the routes they touch and their points are recorded until the invariants are read
+	private int batchDepth;
+	private boolean lazy;
+	private boolean pending;
+	private boolean[] dirtyRoute;
+	private ArrayList<Integer> dirtyRoutes;
+	private BitSet touchedPoint;
+	private ArrayList<Point> touchedPoints;
+
 	public VRManager() {
 		invariants = new ArrayList<InvariantVR>();
 		X = null;
@@ -36,6 +47,11 @@ public class VRManager {
 		invariants.add(f);
 	}
 
+	// f is no longer propagated by the manager, its data is maintained by another invariant
+	public void unpost(InvariantVR f) {
+		invariants.remove(f);
+	}
+
 	public void post(VarRoutesVR XR) {
 		if (X != null) {
 			System.out
@@ -49,6 +65,8 @@ public class VRManager {
 	}
 
 	public void initPropagation() {
+		if (pending)
+			clearDirtyRoutes();
 		for (InvariantVR f : invariants) {
 			// System.out.println(f.name());
 			f.initPropagation();
@@ -69,7 +87,11 @@ public class VRManager {
     	// x and y are in the same route, x is before y
     	// remove (x,next[x]) and (y,next[y])
     	// add (x,y) and (next[x],next[y]), reverse path from y to next[x]
+    	touch(x);
+    	touch(y);
 		X.performTwoOptMoveOneRoute(x, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateTwoOptMoveOneRoute(x, y);
 		}
@@ -77,7 +99,115 @@ public class VRManager {
     		
     }
 
+	// start an undo journal: the routes modified from now on by the perform* methods are saved
+	// before their first modification so that rollback() restores them
+	public void checkpoint() {
+		flush();
+		X.checkpoint();
+	}
+
+	// restore the routes modified since checkpoint() and the invariants maintained on them,
+	// in time proportional to the length of these routes instead of performing the inverse moves
+	public void rollback() {
+		ArrayList<Integer> r = new ArrayList<Integer>();
+		ArrayList<Point> removed = new ArrayList<Point>();
+		X.rollback(r, removed);
+		// the routes touched since checkpoint() are among the restored ones
+		if (pending)
+			clearDirtyRoutes();
+		for (InvariantVR f : invariants) {
+			f.propagateRoutes(r, removed);
+		}
+	}
+
+	// keep the moves performed since checkpoint() and stop journaling
+	public void commit() {
+		X.commit();
+	}
+
+	// the moves performed until the matching endBatch() only modify X, the invariants are
+	// then recomputed once for each route touched by these moves, or before when they are read
+	// (see flush()). Batches can be nested
+	public void beginBatch() {
+		if (batchDepth++ > 0)
+			return;
+		if (dirtyRoute == null || dirtyRoute.length <= X.getNbRoutes()) {
+			dirtyRoute = new boolean[X.getNbRoutes() + 1];
+			dirtyRoutes = new ArrayList<Integer>();
+			touchedPoint = new BitSet(X.getTotalNbPoints());
+			touchedPoints = new ArrayList<Point>();
+		}
+	}
+
+	public void endBatch() {
+		if (--batchDepth > 0)
+			return;
+		flush();
+	}
+
+	// in lazy mode, every move is performed as in a batch: the invariants only recompute the
+	// routes touched since they were last read
+	public void setLazy(boolean lazy) {
+		if (this.lazy == lazy)
+			return;
+		this.lazy = lazy;
+		if (lazy)
+			beginBatch();
+		else
+			endBatch();
+	}
+
+	public boolean isLazy() {
+		return lazy;
+	}
+
+	// called by the invariants before they are read: recompute the routes touched by
+	// the moves that have not been propagated yet
+	public void flush() {
+		if (!pending)
+			return;
+		// the invariants read each other while recomputing
+		pending = false;
+		ArrayList<Point> removed = new ArrayList<Point>();
+		for (Point p : touchedPoints) {
+			if (X.route(p) == Constants.NULL_POINT)
+				removed.add(p);
+		}
+		for (InvariantVR f : invariants) {
+			f.propagateRoutes(dirtyRoutes, removed);
+		}
+		clearDirtyRoutes();
+	}
+
+	private void clearDirtyRoutes() {
+		for (int k : dirtyRoutes)
+			dirtyRoute[k] = false;
+		dirtyRoutes.clear();
+		touchedPoint.clear();
+		touchedPoints.clear();
+		pending = false;
+	}
+
+	// the route of p is about to be modified by a move
+	private void touch(Point p) {
+		X.saveRoute(p);
+		if (batchDepth == 0)
+			return;
+		pending = true;
+		int k = X.route(p);
+		if (k != Constants.NULL_POINT && !dirtyRoute[k]) {
+			dirtyRoute[k] = true;
+			dirtyRoutes.add(k);
+		}
+		int i = X.getIndex(p);
+		if (i != Constants.NULL_POINT && !touchedPoint.get(i)) {
+			touchedPoint.set(i);
+			touchedPoints.add(p);
+		}
+	}
+
 	public void performRemoveAllClientPoints() {
+		beginBatch();
 		for (int k = 1; k <= X.getNbRoutes(); k++) {
 			Point p = X.next(X.startPoint(k));
 			while (p != X.endPoint(k)) {
@@ -87,6 +217,7 @@ public class VRManager {
 				p = X.next(X.startPoint(k));
 			}
 		}
+		endBatch();
 	}
 
 	// move of type a [Groer et al., 2010]
@@ -94,7 +225,11 @@ public class VRManager {
 	// position between y and next[y]
 	// x and y are not the depot
 	public void performOnePointMove(Point x, Point y) {
+		touch(x);
+		touch(y);
 		X.performOnePointMove(x, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateOnePointMove(x, y);
 		}
@@ -106,7 +241,11 @@ public class VRManager {
 	// remove (prev[x],x) and (x,next[x]) and (prev[y], y) and (y, next(y)
 	// insert (x,prev[y]) and (next[y],x) and (next[x],y) and (y, prev[x])
 	public void performTwoPointsMove(Point x, Point y) {
+		touch(x);
+		touch(y);
 		X.performTwoPointsMove(x, y);
+		if (batchDepth > 0)
+			return;
 		Iterator<InvariantVR> it = invariants.iterator();
 		for (InvariantVR f : invariants) {
 			f.propagateTwoPointsMove(x, y);
@@ -118,7 +257,11 @@ public class VRManager {
 	// remove (x,next[x]) and (y,next[y])
 	// insert (x,y) and (next[x],next(y))
 	public void performTwoOptMove1(Point x, Point y) {
+		touch(x);
+		touch(y);
 		X.performTwoOptMove1(x, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateTwoOptMove1(x, y);
 		}
@@ -129,7 +272,11 @@ public class VRManager {
 	// remove (x,next[x]) and (y,next[y])
 	// insert (y,x) and (next[x],next(y))
 	public void performTwoOptMove2(Point x, Point y) {
+		touch(x);
+		touch(y);
 		X.performTwoOptMove2(x, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateTwoOptMove2(x, y);
 		}
@@ -140,7 +287,11 @@ public class VRManager {
 	// remove (x,next[x]) and (y,next[y])
 	// insert (x,y) and (next[y],next(x))
 	public void performTwoOptMove3(Point x, Point y) {
+		touch(x);
+		touch(y);
 		X.performTwoOptMove3(x, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateTwoOptMove3(x, y);
 		}
@@ -151,7 +302,11 @@ public class VRManager {
 	// remove (x,next[x]) and (y,next[y])
 	// insert (y,x) and (next[y],next(x))
 	public void performTwoOptMove4(Point x, Point y) {
+		touch(x);
+		touch(y);
 		X.performTwoOptMove4(x, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateTwoOptMove4(x, y);
 		}
@@ -162,7 +317,11 @@ public class VRManager {
 	// remove (x,next[x]) and (y,next[y])
 	// insert (x,next[y]) and (y,next[x])
 	public void performTwoOptMove5(Point x, Point y) {
+		touch(x);
+		touch(y);
 		X.performTwoOptMove5(x, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateTwoOptMove5(x, y);
 		}
@@ -173,7 +332,11 @@ public class VRManager {
 	// remove (x,next[x]) and (y,next[y])
 	// insert (next[y],x) and (y,next[x])
 	public void performTwoOptMove6(Point x, Point y) {
+		touch(x);
+		touch(y);
 		X.performTwoOptMove6(x, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateTwoOptMove6(x, y);
 		}
@@ -184,7 +347,11 @@ public class VRManager {
 	// remove (x,next[x]) and (y,next[y])
 	// insert (x,next[y]) and (next[x],y)
 	public void performTwoOptMove7(Point x, Point y) {
+		touch(x);
+		touch(y);
 		X.performTwoOptMove7(x, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateTwoOptMove7(x, y);
 		}
@@ -195,7 +362,11 @@ public class VRManager {
 	// remove (x,next[x]) and (y,next[y])
 	// insert (next[y],x) and (next[x],y)
 	public void performTwoOptMove8(Point x, Point y) {
+		touch(x);
+		touch(y);
 		X.performTwoOptMove8(x, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateTwoOptMove8(x, y);
 		}
@@ -207,7 +378,12 @@ public class VRManager {
 	// remove (prev[x1],x1) and (x2,next[x2]), and (y,next[y])
 	// add (y, x1) and (x2, next[y]) and (prev[x1], next[x2])
 	public void performOrOptMove1(Point x1, Point x2, Point y) {
+		touch(x1);
+		touch(x2);
+		touch(y);
 		X.performOrOptMove1(x1, x2, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateOrOptMove1(x1, x2, y);
 		}
@@ -219,7 +395,12 @@ public class VRManager {
 	// remove (prev[x1],x1) and (x2,next[x2]), and (y,next[y])
 	// add (y, x2) and (x1, next[y]) and (prev[x1], next[x2])
 	public void performOrOptMove2(Point x1, Point x2, Point y) {
+		touch(x1);
+		touch(x2);
+		touch(y);
 		X.performOrOptMove2(x1, x2, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateOrOptMove2(x1, x2, y);
 		}
@@ -231,7 +412,12 @@ public class VRManager {
 	// remove (x, next[x]), (y, next[y]), and (z, next[z])
 	// insert (x,z) and (next[y], next[x]) and(y, next[z])
 	public void performThreeOptMove1(Point x, Point y, Point z) {
+		touch(x);
+		touch(y);
+		touch(z);
 		X.performThreeOptMove1(x, y, z);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateThreeOptMove1(x, y, z);
 		}
@@ -243,7 +429,12 @@ public class VRManager {
 	// remove (x, next[x]), (y, next[y]), and (z, next[z])
 	// insert (z,x) and (next[x], next[y]) and(next[z],y)
 	public void performThreeOptMove2(Point x, Point y, Point z) {
+		touch(x);
+		touch(y);
+		touch(z);
 		X.performThreeOptMove2(x, y, z);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateThreeOptMove2(x, y, z);
 		}
@@ -255,7 +446,12 @@ public class VRManager {
 	// remove (x, next[x]), (y, next[y]), and (z, next[z])
 	// insert (x,y) and (next[x], z) and(next[y], next[z])
 	public void performThreeOptMove3(Point x, Point y, Point z) {
+		touch(x);
+		touch(y);
+		touch(z);
 		X.performThreeOptMove3(x, y, z);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateThreeOptMove3(x, y, z);
 		}
@@ -267,7 +463,12 @@ public class VRManager {
 	// remove (x, next[x]), (y, next[y]), and (z, next[z])
 	// insert (y,x) and (z,next[x]) and(next[z], next[y])
 	public void performThreeOptMove4(Point x, Point y, Point z) {
+		touch(x);
+		touch(y);
+		touch(z);
 		X.performThreeOptMove4(x, y, z);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateThreeOptMove4(x, y, z);
 		}
@@ -279,7 +480,12 @@ public class VRManager {
 	// remove (x, next[x]), (y, next[y]), and (z, next[z])
 	// insert (x,next[y]) and (z,next[x]) and(y, next[z])
 	public void performThreeOptMove5(Point x, Point y, Point z) {
+		touch(x);
+		touch(y);
+		touch(z);
 		X.performThreeOptMove5(x, y, z);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateThreeOptMove5(x, y, z);
 		}
@@ -291,7 +497,12 @@ public class VRManager {
 	// remove (x, next[x]), (y, next[y]), and (z, next[z])
 	// insert (next[y],x) and (next[x],z) and(next[z],y)
 	public void performThreeOptMove6(Point x, Point y, Point z) {
+		touch(x);
+		touch(y);
+		touch(z);
 		X.performThreeOptMove6(x, y, z);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateThreeOptMove6(x, y, z);
 		}
@@ -303,7 +514,12 @@ public class VRManager {
 	// remove (x, next[x]), (y, next[y]), and (z, next[z])
 	// insert (x,next[y]) and (z,y) and(next[x], next[z])
 	public void performThreeOptMove7(Point x, Point y, Point z) {
+		touch(x);
+		touch(y);
+		touch(z);
 		X.performThreeOptMove7(x, y, z);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateThreeOptMove7(x, y, z);
 		}
@@ -315,7 +531,12 @@ public class VRManager {
 	// remove (x, next[x]), (y, next[y]), and (z, next[z])
 	// insert (next[y],x) and (y,z) and(next[z], next[x])
 	public void performThreeOptMove8(Point x, Point y, Point z) {
+		touch(x);
+		touch(y);
+		touch(z);
 		X.performThreeOptMove8(x, y, z);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateThreeOptMove8(x, y, z);
 		}
@@ -329,14 +550,26 @@ public class VRManager {
 	// insert (x1, next[x2]) and (y2, next[y1])
 	// insert (x2, next[x1]) and (y1, next[y2])
 	public void performCrossExchangeMove(Point x1, Point y1, Point x2, Point y2) {
+		touch(x1);
+		touch(y1);
+		touch(x2);
+		touch(y2);
 		X.performCrossExchangeMove(x1, y1, x2, y2);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateCrossExchangeMove(x1, y1, x2, y2);
 		}
 	}
 
 	public void performTwoPointsMove(Point x1, Point x2, Point y1, Point y2) {
+		touch(x1);
+		touch(x2);
+		touch(y1);
+		touch(y2);
 		X.performTwoPointsMove(x1, x2, y1, y2);
+		if (batchDepth > 0)
+			return;
 		;
 		for (InvariantVR f : invariants) {
 			f.propagateTwoPointsMove(x1, x2, y1, y2);
@@ -346,7 +579,15 @@ public class VRManager {
 
 	public void performThreePointsMove(Point x1, Point x2, Point x3, Point y1,
 			Point y2, Point y3) {
+		touch(x1);
+		touch(x2);
+		touch(x3);
+		touch(y1);
+		touch(y2);
+		touch(y3);
 		X.performThreePointsMove(x1, x2, x3, y1, y2, y3);
+		if (batchDepth > 0)
+			return;
 		;
 		for (InvariantVR f : invariants) {
 			f.propagateThreePointsMove(x1, x2, x3, y1, y2, y3);
@@ -355,49 +596,87 @@ public class VRManager {
 
 	public void performFourPointsMove(Point x1, Point x2, Point x3, Point x4,
 			Point y1, Point y2, Point y3, Point y4) {
+		touch(x1);
+		touch(x2);
+		touch(x3);
+		touch(x4);
+		touch(y1);
+		touch(y2);
+		touch(y3);
+		touch(y4);
 		X.performFourPointsMove(x1, x2, x3, x4, y1, y2, y3, y4);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateFourPointsMove(x1, x2, x3, x4, y1, y2, y3, y4);
 		}
 	}
 
 	public void performAddOnePoint(Point x, Point y) {
+		touch(x);
+		touch(y);
 		X.performAddOnePoint(x, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateAddOnePoint(x, y);
 		}
 	}
 
 	public void performRemoveOnePoint(Point x) {
+		touch(x);
 		X.performRemoveOnePoint(x);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateRemoveOnePoint(x);
 		}
 	}
-	
+
 	public void performAddTwoPoints(Point x1, Point y1, Point x2, Point y2) {
+		touch(x1);
+		touch(y1);
+		touch(x2);
+		touch(y2);
 		X.performAddTwoPoints(x1, y1, x2, y2);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateAddTwoPoints(x1, y1, x2, y2);
 		}
 	}
 
 	public void performRemoveTwoPoints(Point x1, Point x2) {
+		touch(x1);
+		touch(x2);
 		X.performRemoveTwoPoints(x1, x2);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateRemoveTwoPoints(x1, x2);
 		}
 	}
 
 	public void performAddRemovePoints(Point x, Point y, Point z) {
+		touch(x);
+		touch(y);
+		touch(z);
 		X.performAddRemovePoints(x, y, z);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateAddRemovePoints(x, y, z);
 		}
 	}
 
 	public void performKPointsMove(ArrayList<Point> x, ArrayList<Point> y) {
+		for (Point p : x)
+			touch(p);
+		for (Point p : y)
+			touch(p);
 		X.performKPointsMove(x, y);
+		if (batchDepth > 0)
+			return;
 		for (InvariantVR f : invariants) {
 			f.propagateKPointsMove(x, y);
 		}
@@ -1,45 +1,41 @@
 package vrp;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 
 import vrp.entities.Point;
 
+// snapshot of the routes of a VarRoutesVR: next, prev and route of each point ordinal
 public class ValueRoutesVR {
-	private HashMap<Point, Point> next;
-	private HashMap<Point, Point> prev;
-	private HashMap<Point, Integer> route;
+	int[] next;
+	int[] prev;
+	int[] route;
 	private VarRoutesVR XR;
 	private ArrayList<Point> allPoints;
 	
 	public ValueRoutesVR(VarRoutesVR XR){
 		this.XR = XR;
-		this.next = new HashMap<Point, Point>();
-		this.prev = new HashMap<Point, Point>();
-		this.route = new HashMap<Point, Integer>();
-		
 		allPoints = XR.getAllPoints();
-		for(Point p : allPoints){
-			next.put(p, XR.next(p));
-			prev.put(p, XR.prev(p));
-			route.put(p, XR.route(p));
-		}
+		store();
 	}
 	public Point next(Point p){
-		return next.get(p);
+		int x = next[p.getIndex()];
+		return x == Constants.NULL_POINT ? null : allPoints.get(x);
 	}
 	public Point prev(Point p){
-		return prev.get(p);
+		int x = prev[p.getIndex()];
+		return x == Constants.NULL_POINT ? null : allPoints.get(x);
 	}
 	public int route(Point p){
-		return route.get(p);
+		return route[p.getIndex()];
 	}
 	public void store(){
-		for(Point p : allPoints){
-			next.put(p, XR.next(p));
-			prev.put(p, XR.prev(p));
-			route.put(p, XR.route(p));
+		int N = XR.getTotalNbPoints();
+		if(next == null || next.length != N){
+			next = new int[N];
+			prev = new int[N];
+			route = new int[N];
 		}
+		XR.copyRoutes(next, prev, route);
 	}
 	public String toString() {
 		String s = "";
@@ -48,11 +44,10 @@ public class ValueRoutesVR {
 			Point x = XR.getStartingPointOfRoute(k);
 			while(x != XR.getTerminatingPointOfRoute(k)){
 				s = s + x.getID() + " " + " -> ";
-				x = next.get(x);
+				x = next(x);
 			}
 			s = s + x.getID() + "\n";
 		}
 		return s;
 	}
 }
-
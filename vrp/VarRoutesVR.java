@@ -23,13 +23,24 @@ public class VarRoutesVR{
 	private int[] old_route;
 	
 	private int[] index;
+	// modification counter of each route, increased each time the route is modified
+	private int[] version;
+	
+	// undo journal of VRManager.checkpoint(): the points of each route (from its starting point
+	// to its terminating point) saved before the first modification of the route since the checkpoint,
+	// savedSequence[savedOffset[i]...] for the route savedRoutes.get(i)
+	private boolean journaling;
+	private boolean[] savedRoute;
+	private ArrayList<Integer> savedRoutes;
+	private int[] savedOffset;
+	private int[] savedSequence;
+	private int nbSavedPoints;
 	
 	private PointType[] pointType;
 	private ArrayList<Point> startingPoints;
 	private ArrayList<Point> terminatingPoints;
 	private ArrayList<Point> clientPoints;
 	private ArrayList<Point> allPoints;
-	private HashMap<Point, Integer> mPoint2Index;
 	private int maxNbPoints;
 	private VRManager mgr;
 	
@@ -53,10 +64,9 @@ public class VarRoutesVR{
 		old_route = new int[maxNbPoints];
 		
 		index = new int[maxNbPoints];
+		version = new int[maxNbPoints];
 		pointType = new PointType[maxNbPoints];
 		
-		mPoint2Index = new HashMap<Point, Integer>();
-		
 		this.mgr = mgr;
 		mgr.post(this);
 	}
@@ -67,6 +77,7 @@ public class VarRoutesVR{
 		int[] _prev = new int[maxNbPoints];
 		int[] _route = new int[maxNbPoints];
 		int[] _index = new int[maxNbPoints];
+		int[] _version = new int[maxNbPoints];
 		int[] _old_next = new int[maxNbPoints];
 		int[] _old_prev = new int[maxNbPoints];
 		int[] _old_route = new int[maxNbPoints];
@@ -75,6 +86,7 @@ public class VarRoutesVR{
 		System.arraycopy(prev, 0, _prev, 0, next.length);
 		System.arraycopy(route, 0, _route, 0, next.length);
 		System.arraycopy(index, 0, _index, 0, next.length);
+		System.arraycopy(version, 0, _version, 0, version.length);
 		System.arraycopy(old_next, 0, _old_next, 0, next.length);
 		System.arraycopy(old_prev, 0, _old_prev, 0, next.length);
 		System.arraycopy(old_route, 0, _old_route, 0, next.length);
@@ -83,6 +95,7 @@ public class VarRoutesVR{
 		prev = _prev;
 		route = _route;
 		index = _index;
+		version = _version;
 		old_next = _old_next;
 		old_prev = _old_prev;
 		old_route = _old_route;
@@ -97,12 +110,12 @@ public class VarRoutesVR{
 		K++;
 		allPoints.add(sp);
 		startingPoints.add(sp);
-		mPoint2Index.put(sp, N++);
+		sp.setIndex(N++);
 		pointType[N - 1] = PointType.STARTING_ROUTE;
 		
 		allPoints.add(tp);
 		terminatingPoints.add(tp);
-		mPoint2Index.put(tp, N++);
+		tp.setIndex(N++);
 		pointType[N - 1] = PointType.TERMINATING_ROUTE;
 		
 		next[N - 2] = N - 1;
@@ -115,13 +128,13 @@ public class VarRoutesVR{
 	}
 	
 	public void addClientPoint(Point p){
-		if(mPoint2Index.get(p) != null) return;
+		if(getIndex(p) != Constants.NULL_POINT) return;
 		if (N + 1 > maxNbPoints) {
 			scaleUp();
 		}
 		allPoints.add(p);
 		clientPoints.add(p);
-		mPoint2Index.put(p, N++);
+		p.setIndex(N++);
 		pointType[N - 1] = PointType.CLIENT;
 		n++;
 		
@@ -145,18 +158,111 @@ public class VarRoutesVR{
 		return terminatingPoints;
 	}
 	
-	public void setValue(ValueRoutesVR val){
-		copySolution();
-		for (Point p : allPoints) {
-			int x = getIndex(p);
-			if (val.next(p) != null) {
-				next[x] = getIndex(val.next(p));
+	// start journaling the routes modified by the moves performed through VRManager
+	public void checkpoint(){
+		if(savedRoute == null || savedRoute.length <= K){
+			savedRoute = new boolean[K+1];
+			savedOffset = new int[K+1];
+			savedRoutes = new ArrayList<Integer>();
+		}
+		if(savedSequence == null || savedSequence.length < N)
+			savedSequence = new int[N];
+		for(int k : savedRoutes)
+			savedRoute[k] = false;
+		savedRoutes.clear();
+		nbSavedPoints = 0;
+		journaling = true;
+	}
+	
+	// stop journaling, the routes are kept as they are
+	public void commit(){
+		for(int k : savedRoutes)
+			savedRoute[k] = false;
+		savedRoutes.clear();
+		nbSavedPoints = 0;
+		journaling = false;
+	}
+	
+	public boolean isJournaling(){
+		return journaling;
+	}
+	
+	// save the route of p if it is about to be modified for the first time since the checkpoint
+	public void saveRoute(Point p){
+		if(!journaling) return;
+		int k = route(p);
+		if(k == Constants.NULL_POINT || savedRoute[k]) return;
+		savedRoute[k] = true;
+		savedOffset[savedRoutes.size()] = nbSavedPoints;
+		savedRoutes.add(k);
+		int t = getTerminatingIndexOfRoute(k);
+		for(int x = getStartingIndexOfRoute(k); x != t; x = next[x])
+			savedSequence[nbSavedPoints++] = x;
+		savedSequence[nbSavedPoints++] = t;
+	}
+	
+	// restore the saved routes to their state at the checkpoint, in O(length of the saved routes):
+	// the restored routes are appended to r and the points which were added to them since
+	// the checkpoint to removed. Journaling goes on from the restored state
+	public void rollback(ArrayList<Integer> r, ArrayList<Point> removed){
+		int nbRemoved = removed.size();
+		for(int k : savedRoutes){
+			int t = getTerminatingIndexOfRoute(k);
+			for(int x = next[getStartingIndexOfRoute(k)]; x != t; x = next[x]){
+				route[x] = Constants.NULL_POINT;
+				removed.add(allPoints.get(x));
 			}
-			if (val.prev(p) != null) {
-				prev[x] = getIndex(val.prev(p));
+		}
+		for(int i = 0; i < savedRoutes.size(); i++){
+			int k = savedRoutes.get(i);
+			int end = i + 1 < savedRoutes.size() ? savedOffset[i+1] : nbSavedPoints;
+			for(int j = savedOffset[i]; j < end; j++){
+				int x = savedSequence[j];
+				prev[x] = j == savedOffset[i] ? Constants.NULL_POINT : savedSequence[j-1];
+				next[x] = j == end - 1 ? Constants.NULL_POINT : savedSequence[j+1];
+				route[x] = k;
+				index[x] = j - savedOffset[i];
 			}
-			route[x] = val.route(p);
-		}	
+			version[k]++;
+			r.add(k);
+		}
+		// keep the points which are back on a route at the checkpoint
+		int j = nbRemoved;
+		for(int i = nbRemoved; i < removed.size(); i++){
+			int x = getIndex(removed.get(i));
+			if(route[x] != Constants.NULL_POINT) continue;
+			next[x] = prev[x] = index[x] = Constants.NULL_POINT;
+			removed.set(j++, removed.get(i));
+		}
+		while(removed.size() > j)
+			removed.remove(removed.size() - 1);
+		for(int k : savedRoutes)
+			savedRoute[k] = false;
+		savedRoutes.clear();
+		nbSavedPoints = 0;
+	}
+	
+	// copy next, prev and route of the points into n, p and r
+	void copyRoutes(int[] n, int[] p, int[] r){
+		System.arraycopy(next, 0, n, 0, N);
+		System.arraycopy(prev, 0, p, 0, N);
+		System.arraycopy(route, 0, r, 0, N);
+	}
+	
+	// restore the routes of the snapshot val with bulk copies, the invariants are then
+	// recomputed by a single initPropagation
+	public void setValue(ValueRoutesVR val){
+		// the whole routes are replaced, the journal is dropped
+		if(journaling)
+			commit();
+		copySolution();
+		System.arraycopy(val.next, 0, next, 0, N);
+		System.arraycopy(val.prev, 0, prev, 0, N);
+		System.arraycopy(val.route, 0, route, 0, N);
+		for(int x = 0; x < N; x++){
+			if(route[x] == Constants.NULL_POINT)
+				index[x] = Constants.NULL_POINT;
+		}
 		for(int k= 1; k <= getNbRoutes(); k++){
 			update(k);
 		}
@@ -196,9 +302,21 @@ public class VarRoutesVR{
 		return K;
 	}
 	
+	// the dense ordinal of p, or NULL_POINT if p is not registered to this VarRoutesVR
 	public int getIndex(Point p) {
-		if( mPoint2Index.get(p) != null) return mPoint2Index.get(p);
-		return Constants.NULL_POINT;
+		if(p == null) return Constants.NULL_POINT;
+		int i = p.getIndex();
+		if(i < 0 || i >= N || allPoints.get(i) != p) return Constants.NULL_POINT;
+		return i;
+	}
+	public Point getPoint(int i){
+		return allPoints.get(i);
+	}
+	public int getStartingIndexOfRoute(int k){
+		return getIndex(getStartingPointOfRoute(k));
+	}
+	public int getTerminatingIndexOfRoute(int k){
+		return getIndex(getTerminatingPointOfRoute(k));
 	}
 	public Point startPoint(int k){
 		return getStartingPointOfRoute(k);
@@ -247,6 +365,7 @@ public class VarRoutesVR{
     }
 
     private void update(int k) {
+    	version[k]++;
     	int s = getIndex(getStartingPointOfRoute(k));
     	int t = getIndex(getTerminatingPointOfRoute(k));
     	index[s] = 0;
@@ -255,42 +374,71 @@ public class VarRoutesVR{
     	}
     }
     
+    // modification counter of route k: the route is unchanged as long as it keeps the same value
+    public int getVersion(int k) {
+    	return version[k];
+    }
+    
+    // int-indexed accessors, x being the ordinal of a registered point
+    public int next(int x) {
+    	return next[x];
+    }
+    
+    public int prev(int x) {
+    	return prev[x];
+    }
+    
+    public int route(int x) {
+    	return route[x];
+    }
+    
+    public int index(int x) {
+    	return index[x];
+    }
+
+    public int oldNext(int x) {
+    	return old_next[x];
+    }
+    
     public Point next(Point x) {
     	int idx = getIndex(x);
     	if(idx == Constants.NULL_POINT) return null;
-    	return (next[idx] == Constants.NULL_POINT) ? null : allPoints.get(next[getIndex(x)]);
+    	return (next[idx] == Constants.NULL_POINT) ? null : allPoints.get(next[idx]);
     }
     
     public Point prev(Point x) {
     	int idx = getIndex(x);
     	if(idx == Constants.NULL_POINT) return null;
-    	return (prev[idx] == Constants.NULL_POINT) ? null : allPoints.get(prev[getIndex(x)]);
+    	return (prev[idx] == Constants.NULL_POINT) ? null : allPoints.get(prev[idx]);
     }
     
     public int route(Point x) {
     	//System.out.println(name() + "::route of point " + x.ID);
-    	if(getIndex(x) == Constants.NULL_POINT) return Constants.NULL_POINT;
-    	return route[getIndex(x)];
+    	int idx = getIndex(x);
+    	if(idx == Constants.NULL_POINT) return Constants.NULL_POINT;
+    	return route[idx];
     }
     
     public int index(Point x) {
-    	if(getIndex(x) == Constants.NULL_POINT) return Constants.NULL_POINT;
-    	return index[getIndex(x)];
+    	int idx = getIndex(x);
+    	if(idx == Constants.NULL_POINT) return Constants.NULL_POINT;
+    	return index[idx];
     }
     
     public Point oldNext(Point x) {
     	int idx = getIndex(x);
-    	return (old_next[idx] == Constants.NULL_POINT) ? null : allPoints.get(old_next[getIndex(x)]);
+    	return (old_next[idx] == Constants.NULL_POINT) ? null : allPoints.get(old_next[idx]);
     }
     
     public Point oldPrev(Point x) {
     	int idx = getIndex(x);
-    	return (old_prev[idx] == Constants.NULL_POINT) ? null : allPoints.get(old_prev[getIndex(x)]);
+    	return (old_prev[idx] == Constants.NULL_POINT) ? null : allPoints.get(old_prev[idx]);
     }
     
     public int oldRoute(Point x) {
-    	if(getIndex(x) == Constants.NULL_POINT) return Constants.NULL_POINT;
-    	return old_route[getIndex(x)];
+    	int idx = getIndex(x);
+    	if(idx == Constants.NULL_POINT) return Constants.NULL_POINT;
+    	return old_route[idx];
     }
     
 	public String name(){
@@ -330,6 +478,65 @@ public class VarRoutesVR{
 		}
 		return L;
 	}
+
+	// return the point of y which is on a route and has the smallest index,
+	// i.e., the first position modified when adding points right-after the points of y
+	public Point getFirstAnchor(ArrayList<Point> y){
+		Point first = null;
+		for(Point p : y){
+			if(route(p) == Constants.NULL_POINT) continue;
+			if(first == null || index(p) < index(first))
+				first = p;
+		}
+		return first;
+	}
+
+	// return the point of y which is on a route and has the smallest index not smaller than that of v
+	// (v being on the same route), or null if there is none
+	public Point getNextAnchor(Point v, ArrayList<Point> y){
+		Point a = null;
+		for(Point p : y){
+			if(route(p) == Constants.NULL_POINT || index(p) < index(v)) continue;
+			if(a == null || index(p) < index(a))
+				a = p;
+		}
+		return a;
+	}
+
+	// return the successor of v after adding x[i] right-after y[i], forall i = 0,...,x.size()-1 in that order,
+	// without collecting the route
+	public Point nextAfterAddPoints(Point v, ArrayList<Point> x, ArrayList<Point> y){
+		return nextAfterAddPoints(v, x.size(), x, y);
+	}
+
+	// same as above considering only the first n points of x
+	private Point nextAfterAddPoints(Point v, int n, ArrayList<Point> x, ArrayList<Point> y){
+		for(int j = n - 1; j >= 0; j--){
+			if(y.get(j) == v)
+				return x.get(j);
+		}
+		if(route(v) != Constants.NULL_POINT)
+			return next(v);
+		int i = x.indexOf(v);
+		return nextAfterAddPoints(y.get(i), i, x, y);
+	}
+
+	// return the points of the route containing y, from its starting point to its terminating point,
+	// as they would be after adding x[i] right-after y[i], forall i = 0,...,x.size()-1 in that order
+	// y[i] is either on the route or is a point x[j] with j < i
+	// the route itself is not modified
+	public ArrayList<Point> collectRouteAfterAddPoints(ArrayList<Point> x, ArrayList<Point> y){
+		int k = route(getFirstAnchor(y));
+		ArrayList<Point> L = new ArrayList<Point>();
+		for(Point p = startPoint(k); p != endPoint(k); p = next(p)){
+			L.add(p);
+		}
+		L.add(endPoint(k));
+		for(int i = 0; i < x.size(); i++){
+			L.add(L.indexOf(y.get(i)) + 1, x.get(i));
+		}
+		return L;
+	}
 	private void initRandom(){
 		
 		initStartingTerminatingPoints();
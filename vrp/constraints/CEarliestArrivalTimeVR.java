@@ -8,44 +8,64 @@ import vrp.IConstraintVR;
 import vrp.VarRoutesVR;
 import vrp.entities.Point;
 import vrp.invariants.EarliestArrivalTimeVR;
+import vrp.invariants.TimeSegmentsVR;
 import vrp.VRManager;
 
 public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
-	private HashMap<Point, Integer> latestAllowedArrivalTime;
+	// indexed by point ordinal (Point.getIndex())
+	private int[] latestAllowedArrivalTime;
 	private VarRoutesVR XR;
 	private EarliestArrivalTimeVR eat;
 	private int violations;
-	private HashMap<Point, Double> earliestArrivalTime;
-	private HashMap<Point, Integer> vio;
-
-	// temporary data structure
-	private HashMap<Point, Point> t_next;
-	public CEarliestArrivalTimeVR(EarliestArrivalTimeVR eat, HashMap<Point, Integer> latestAllowedArrivalTime){
+	// vio[i] is the violation of the point of ordinal i on its route, 0 if it is not on a route
+	private int[] vio;
+
+	// temporary data structures, preallocated so that evaluations do not allocate:
+	// t_next[i] is the ordinal of the successor of the point of ordinal i in the evaluated move
+	private int[] t_next;
+	// moves of evaluateAddOnePoint and evaluateAddTwoPoints, one list per thread since the insertions
+	// may be evaluated by several threads at the same time (SearchOptimumSolution.scanRoutes)
+	private final ThreadLocal<ArrayList<Point>> tX = newScratchList();
+	private final ThreadLocal<ArrayList<Point>> tY = newScratchList();
+	// prefix and suffix summaries of the routes, checking some moves in O(1), may be null
+	private TimeSegmentsVR timeSegments;
+	public CEarliestArrivalTimeVR(EarliestArrivalTimeVR eat, int[] latestAllowedArrivalTime){
 		this.eat = eat;
 		this.latestAllowedArrivalTime = latestAllowedArrivalTime;
 		
-		earliestArrivalTime = eat.getEarliestArrivalTime();
 		XR = eat.getVarRouteVR();
-		t_next = new HashMap<Point,Point>();
-		vio = new HashMap<Point,Integer>();
+		vio = new int[XR.getTotalNbPoints()];
+		t_next = new int[XR.getTotalNbPoints()];
 		getVRManager().post(this);
 	}
 	
+	private static ThreadLocal<ArrayList<Point>> newScratchList(){
+		return new ThreadLocal<ArrayList<Point>>(){
+			protected ArrayList<Point> initialValue(){
+				return new ArrayList<Point>();
+			}
+		};
+	}
+	
+	public void setTimeSegments(TimeSegmentsVR timeSegments){
+		this.timeSegments = timeSegments;
+	}
+	
 	public VRManager getVRManager() {
 		// TODO Auto-generated method stub
 		return XR.getVRManager();
 	}
 
 	private int computeViolations(Point i) {
-		double v = earliestArrivalTime.get(i) <= latestAllowedArrivalTime.get(i) ? 0
-					: earliestArrivalTime.get(i) - latestAllowedArrivalTime.get(i);
+		double v = eat.getEarliestArrivalTime(i) <= latestAllowedArrivalTime[i.getIndex()] ? 0
+					: eat.getEarliestArrivalTime(i) - latestAllowedArrivalTime[i.getIndex()];
 		return (int) Math.ceil(v);
 	}
 
 	private int computeViolations(Point i, double arrivalTime) {
-		double v = arrivalTime <= latestAllowedArrivalTime.get(i) ? 0 : arrivalTime
-				- latestAllowedArrivalTime.get(i);
+		double v = arrivalTime <= latestAllowedArrivalTime[i.getIndex()] ? 0 : arrivalTime
+				- latestAllowedArrivalTime[i.getIndex()];
 		return (int) Math.ceil(v);
 	}
 	
@@ -53,53 +73,68 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	public void initPropagation() {
 		// TODO Auto-generated method stub
 		violations = 0;
-		vio = new HashMap<Point, Integer>();
-		t_next = new HashMap<Point, Point>();
+		if(vio.length < XR.getTotalNbPoints()){
+			vio = new int[XR.getTotalNbPoints()];
+			t_next = new int[XR.getTotalNbPoints()];
+		}else
+			Arrays.fill(vio, 0);
 		int nr = XR.getNbRoutes();
 		for(int k = 1; k <= nr; ++k)
 		{
 			Point s = XR.getStartingPointOfRoute(k);
-			do{		
+			// as in the propagation, the terminating point is only checked by the evaluations
+			for(; s != XR.getTerminatingPointOfRoute(k); s = XR.next(s)){
 				int svio  = computeViolations(s);
 				violations += svio;
-				vio.put(s, svio);
-				//System.out.println(s+"("+svio+","+eat.getEarliestArrivalTime(s)+") ");
-				if(XR.isTerminatingPoint(s))
-					break;
-				s  = XR.next(s);
-			}while(true);
+				vio[s.getIndex()] = svio;
+			}
 			//System.out.println();
 		}
 	}
 
+	// the point of ordinal i, not a terminating point, starts its service at arrivalTime
+	public void updateViolations(int i, double arrivalTime){
+		double v = arrivalTime <= latestAllowedArrivalTime[i] ? 0 : arrivalTime - latestAllowedArrivalTime[i];
+		violations -= vio[i];
+		vio[i] = (int) Math.ceil(v);
+		violations += vio[i];
+	}
+	
+	// the point of ordinal i has been removed from its route
+	public void clearViolations(int i){
+		violations -= vio[i];
+		vio[i] = 0;
+	}
+
 	private void propagate(int k)
 	{
 		for(Point v = XR.getStartingPointOfRoute(k); v!= XR.getTerminatingPointOfRoute(k); v = XR.oldNext(v))
 		{
-			violations -= vio.get(v);
-			vio.put(v,computeViolations(v));
-			violations += vio.get(v);
+			violations -= vio[v.getIndex()];
+			vio[v.getIndex()] = computeViolations(v);
+			violations += vio[v.getIndex()];
 		}
 	}
 	
 	private void propagateAddPoint(int k)
 	{
 		for(Point v = XR.getStartingPointOfRoute(k); v!= XR.getTerminatingPointOfRoute(k); v = XR.next(v)){
-			violations -= vio.get(v);
-			vio.put(v,computeViolations(v));
-			violations += vio.get(v);
+			violations -= vio[v.getIndex()];
+			vio[v.getIndex()] = computeViolations(v);
+			violations += vio[v.getIndex()];
 		}
 	}
 	
 	private void propagateRemovePoint(int k)
 	{
 		for(Point v = XR.getStartingPointOfRoute(k); v!= XR.getTerminatingPointOfRoute(k); v = XR.oldNext(v)){
-			if(XR.route(v) == Constants.NULL_POINT)
-				violations -= vio.get(v);
-			else{
-				violations -= vio.get(v);
-				vio.put(v,computeViolations(v));
-				violations += vio.get(v);
+			if(XR.route(v) == Constants.NULL_POINT){
+				violations -= vio[v.getIndex()];
+				vio[v.getIndex()] = 0;
+			}else{
+				violations -= vio[v.getIndex()];
+				vio[v.getIndex()] = computeViolations(v);
+				violations += vio[v.getIndex()];
 			}
 		}
 	}
@@ -370,7 +405,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	public void propagateAddOnePoint(Point x, Point y) {
 		// TODO Auto-generated method stub
 		int k = XR.oldRoute(y);
-		vio.put(x, 0);
+		vio[x.getIndex()] = 0;
 		propagateAddPoint(k);
 	}
 
@@ -383,8 +418,8 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public void propagateAddTwoPoints(Point x1, Point y1, Point x2, Point y2){
 		int k = XR.oldRoute(y1);
-		vio.put(x1, 0);
-		vio.put(x2, 0);
+		vio[x1.getIndex()] = 0;
+		vio[x2.getIndex()] = 0;
 		propagateAddPoint(k);
 	}
 
@@ -398,6 +433,15 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 
 	}
 
+	public void propagateRoutes(ArrayList<Integer> r, ArrayList<Point> removed) {
+		for(Point p : removed){
+			violations -= vio[p.getIndex()];
+			vio[p.getIndex()] = 0;
+		}
+		for(int k : r)
+			propagateAddPoint(k);
+	}
+
 	
 	public String name() {
 		// TODO Auto-generated method stub
@@ -407,15 +451,25 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int violations() {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		return violations;
 	}
 
+	private void setTNext(Point v, Point nv){
+		t_next[v.getIndex()] = nv == null ? Constants.NULL_POINT : nv.getIndex();
+	}
+	
+	private Point tNext(Point v){
+		int i = t_next[v.getIndex()];
+		return i == Constants.NULL_POINT ? null : XR.getPoint(i);
+	}
+
 	void getSegment(Point begin,Point end)
 	{
 		Point v = begin;
 		while(v!=end)
 		{
-			t_next.put(v , XR.next(v));
+			setTNext(v, XR.next(v));
 			v = XR.next(v);
 		}
 	}
@@ -425,7 +479,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 		while(v!=end)
 		{
 			//System.out.println(v);
-			t_next.put(v , XR.prev(v));
+			setTNext(v, XR.prev(v));
 			v = XR.prev(v);
 		}
 	}
@@ -440,11 +494,11 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 
 		while (v != end) {
 			//System.out.println(v);
-			Point nv = t_next.get(v);
+			Point nv = tNext(v);
 			double at = dt + eat.getTravelTime(v,nv);
-			delta = delta - vio.get(nv);
+			delta = delta - vio[nv.getIndex()];
 			delta = delta + computeViolations(nv, at);
-			//System.out.println(vio.get(nv)+"  -   "+computeViolations(nv,at));
+			//System.out.println(vio[nv.getIndex()]+"  -   "+computeViolations(nv,at));
 			dt = (at < eat.getEarliestAllowedArrivalTime(nv) ? eat
 					.getEarliestAllowedArrivalTime(nv) : at )
 					+ eat.getServiceDuration(nv);
@@ -456,6 +510,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateOnePointMove(Point x, Point y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		//System.out.println(x+"  "+y);
 		//System.out.println(XR.index(x)+"  "+XR.index(y));
 		int kx = XR.route(x);
@@ -466,17 +521,17 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 			if (XR.index(x) < XR.index(y)) {
 				v = XR.prev(x);
 				nv = XR.next(x);
-				t_next.put(v,nv);
+				setTNext(v, nv);
 				v = nv;
 				while (v != y) {
-					t_next.put(v,XR.next(v));
+					setTNext(v, XR.next(v));
 					v = XR.next(v);
 				}
-				t_next.put(y,x);
-				t_next.put(x,XR.next(y));
+				setTNext(y, x);
+				setTNext(x, XR.next(y));
 				v = XR.next(y);
 				while (v != XR.getTerminatingPointOfRoute(kx)) {
-					t_next.put(v,XR.next(v));
+					setTNext(v, XR.next(v));
 					v = XR.next(v);
 				}
 				v = XR.prev(x);
@@ -485,14 +540,14 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 				v = y;
 				if(XR.next(v)!=x)
 				{
-					t_next.put(v, x);
-					t_next.put(x, XR.next(v));
+					setTNext(v, x);
+					setTNext(x, XR.next(v));
 					v = XR.next(y);
 					while(v != XR.prev(x)){
-						t_next.put(v, XR.next(v));
+						setTNext(v, XR.next(v));
 						v = XR.next(v);
 					}
-					t_next.put(XR.prev(x),XR.next(x));
+					setTNext(XR.prev(x), XR.next(x));
 					getSegment(XR.next(x), XR.endPoint(kx));
 					v = y;
 				}
@@ -503,9 +558,9 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 			double dt = eat.getEarliestArrivalTime(v)
 					+ eat.getServiceDuration(v);
 			while (v != XR.getTerminatingPointOfRoute(kx)) {
-				nv = t_next.get(v);
+				nv = tNext(v);
 				double at = dt + eat.getTravelTime(v,nv);
-				delta = delta - vio.get(nv);
+				delta = delta - vio[nv.getIndex()];
 				delta = delta + computeViolations(nv, at);
 				dt = (at < eat.getEarliestAllowedArrivalTime(nv) ? eat
 						.getEarliestAllowedArrivalTime(nv) : at )
@@ -522,7 +577,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 					+ eat.getServiceDuration(v);
 			nv = XR.next(x);
 			double at = dt + eat.getTravelTime(v,nv);
-			delta = delta - vio.get(nv);
+			delta = delta - vio[nv.getIndex()];
 			delta = delta + computeViolations(nv,at);
 			v = nv;
 			dt = (at < eat.getEarliestAllowedArrivalTime(nv) ? eat
@@ -532,7 +587,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 			while (v != XR.getTerminatingPointOfRoute(kx)) {
 				nv = XR.next(v);
 				at = dt + eat.getTravelTime(v,nv);
-				delta = delta - vio.get(nv);
+				delta = delta - vio[nv.getIndex()];
 				delta = delta + computeViolations(nv, at);
 				dt = (at < eat.getEarliestAllowedArrivalTime(nv) ? eat
 						.getEarliestAllowedArrivalTime(nv) : at )
@@ -547,7 +602,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 					+ eat.getServiceDuration(v);
 			nv = x;
 			at = dt + eat.getTravelTime(v,nv);
-			delta = delta - vio.get(nv);
+			delta = delta - vio[nv.getIndex()];
 			delta = delta + computeViolations(nv,at);
 			
 			v = x;
@@ -556,7 +611,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 					+ eat.getServiceDuration(nv);
 			nv = XR.next(y);
 			at = dt + eat.getTravelTime(v,nv);
-			delta = delta - vio.get(nv);
+			delta = delta - vio[nv.getIndex()];
 			delta = delta + computeViolations(nv,at);
 			
 			v = nv;
@@ -566,7 +621,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 			while (v != XR.getTerminatingPointOfRoute(ky)) {
 				nv = XR.next(v);
 				at = dt + eat.getTravelTime(v,nv);
-				delta = delta - vio.get(nv);
+				delta = delta - vio[nv.getIndex()];
 				delta = delta + computeViolations(nv, at);
 				dt = ( at < eat.getEarliestAllowedArrivalTime(nv) ? eat
 						.getEarliestAllowedArrivalTime(nv) : at )
@@ -586,23 +641,24 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateTwoPointsMove(Point x, Point y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int kx = XR.oldRoute(x);
 		int delta = 0;
 		Point v,nv;
 		if (XR.index(x) < XR.index(y)) {
 			v = XR.prev(x);
 			nv = XR.next(x);
-			t_next.put(v,nv);
+			setTNext(v, nv);
 			v = nv;
 			while (v != y) {
-				t_next.put(v,XR.next(v));
+				setTNext(v, XR.next(v));
 				v = XR.next(v);
 			}
-			t_next.put(y,x);
-			t_next.put(x,XR.next(y));
+			setTNext(y, x);
+			setTNext(x, XR.next(y));
 			v = XR.next(y);
 			while (v != XR.getTerminatingPointOfRoute(kx)) {
-				t_next.put(v,XR.next(v));
+				setTNext(v, XR.next(v));
 				v = XR.next(v);
 			}
 			v = XR.prev(x);
@@ -611,14 +667,14 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 			v = y;
 			if(XR.next(v)!=x)
 			{
-				t_next.put(v, x);
-				t_next.put(x, XR.next(v));
+				setTNext(v, x);
+				setTNext(x, XR.next(v));
 				v = XR.next(y);
 				while(v != XR.prev(x)){
-					t_next.put(v, XR.next(v));
+					setTNext(v, XR.next(v));
 					v = XR.next(v);
 				}
-				t_next.put(XR.prev(x),XR.next(x));
+				setTNext(XR.prev(x), XR.next(x));
 				getSegment(XR.next(x), XR.endPoint(kx));
 				v = y;
 			}
@@ -629,9 +685,9 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 		double dt = eat.getEarliestArrivalTime(v)
 				+ eat.getServiceDuration(v);
 		while (v != XR.getTerminatingPointOfRoute(kx)) {
-			nv = t_next.get(v);
+			nv = tNext(v);
 			double at = dt + eat.getTravelTime(v,nv);
-			delta = delta - vio.get(nv);
+			delta = delta - vio[nv.getIndex()];
 			delta = delta + computeViolations(nv, at);
 			dt = (at < eat.getEarliestAllowedArrivalTime(nv) ? eat
 					.getEarliestAllowedArrivalTime(nv) : at )
@@ -649,18 +705,19 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateTwoOptMove1(Point x, Point y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 
 		int kx = XR.route(x);
 		int ky = XR.route(y);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		
-		t_next.put(x,y);
+		setTNext(x, y);
 		
 		getRevSegment(y,XR.getStartingPointOfRoute(ky));
 		
 		
-		t_next.put(nx,ny);
+		setTNext(nx, ny);
 		getRevSegment(XR.getTerminatingPointOfRoute(kx),nx);
 		getSegment(ny,XR.getTerminatingPointOfRoute(ky));
 		
@@ -675,17 +732,18 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateTwoOptMove2(Point x, Point y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int kx = XR.route(x);
 		int ky = XR.route(y);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		
-		t_next.put(y, x);
+		setTNext(y, x);
 		
 		getRevSegment(x,XR.getStartingPointOfRoute(kx));
 		
 		
-		t_next.put(nx,ny);
+		setTNext(nx, ny);
 		getRevSegment(XR.getTerminatingPointOfRoute(kx),nx);
 		getSegment(ny,XR.getTerminatingPointOfRoute(ky));
 		
@@ -700,17 +758,18 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateTwoOptMove3(Point x, Point y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int kx = XR.route(x);
 		int ky = XR.route(y);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		
-		t_next.put(x,y);
+		setTNext(x, y);
 		
 		getRevSegment(y,XR.getStartingPointOfRoute(ky));
 		
 		
-		t_next.put(ny, nx);
+		setTNext(ny, nx);
 		getRevSegment(XR.getTerminatingPointOfRoute(ky),ny);
 		getSegment(nx,XR.getTerminatingPointOfRoute(kx));
 		
@@ -725,17 +784,18 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateTwoOptMove4(Point x, Point y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int kx = XR.route(x);
 		int ky = XR.route(y);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		
-		t_next.put(y, x);
+		setTNext(y, x);
 		
 		getRevSegment(x,XR.getStartingPointOfRoute(kx));
 		
 		
-		t_next.put(ny,nx);
+		setTNext(ny, nx);
 		getRevSegment(XR.getTerminatingPointOfRoute(ky),ny);
 		
 		getSegment(nx,XR.getTerminatingPointOfRoute(kx));
@@ -750,17 +810,21 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateTwoOptMove5(Point x, Point y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
+		// no point is late before and after the move
+		if(timeSegments != null && violations == 0 && timeSegments.isFeasibleTwoOptMove5(x, y))
+			return 0;
 		int kx = XR.route(x);
 		int ky = XR.route(y);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 
-		t_next.put(x, ny);
+		setTNext(x, ny);
 		
 		getSegment(ny,XR.getTerminatingPointOfRoute(ky));
 		
 		
-		t_next.put(y, nx);
+		setTNext(y, nx);
 		//getRevSegment(XR.getTerminatingPointOfRoute(ky),ny);
 		getSegment(nx,XR.getTerminatingPointOfRoute(kx));
 
@@ -774,17 +838,18 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateTwoOptMove6(Point x, Point y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int kx = XR.route(x);
 		int ky = XR.route(y);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		
-		t_next.put(ny, x);
+		setTNext(ny, x);
 		
 		getRevSegment(x,XR.getStartingPointOfRoute(kx));
 		getRevSegment(XR.getTerminatingPointOfRoute(ky),ny);
 		
-		t_next.put(y, nx);
+		setTNext(y, nx);
 		getSegment(nx,XR.getTerminatingPointOfRoute(kx));
 		
 		
@@ -798,16 +863,17 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateTwoOptMove7(Point x, Point y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int kx = XR.route(x);
 		int ky = XR.route(y);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		
-		t_next.put(x, ny);
+		setTNext(x, ny);
 		
 		getSegment(ny,XR.getTerminatingPointOfRoute(ky));
 		
-		t_next.put(nx, y);
+		setTNext(nx, y);
 		getRevSegment(XR.getTerminatingPointOfRoute(kx),nx);
 		getRevSegment(y,XR.getStartingPointOfRoute(ky));
 		
@@ -821,17 +887,18 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateTwoOptMove8(Point x, Point y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int kx = XR.route(x);
 		int ky = XR.route(y);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		
-		t_next.put(ny, x);
+		setTNext(ny, x);
 		
 		getRevSegment(x,XR.getStartingPointOfRoute(kx));
 		getRevSegment(XR.getTerminatingPointOfRoute(ky),ny);
 		
-		t_next.put(nx, y);
+		setTNext(nx, y);
 		getRevSegment(XR.getTerminatingPointOfRoute(kx),nx);
 		getRevSegment(y,XR.getStartingPointOfRoute(ky));
 		
@@ -846,18 +913,19 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateOrOptMove1(Point x1, Point x2, Point y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int kx = XR.route(x1);
 		int ky = XR.route(y);
 		Point px1 = XR.prev(x1);
 		Point nx2 = XR.next(x2);
 		Point ny = XR.next(y);
 		
-		t_next.put(px1,nx2);
+		setTNext(px1, nx2);
 		getSegment(nx2, XR.getTerminatingPointOfRoute(kx));
 		
-		t_next.put(y, x1);
+		setTNext(y, x1);
 		getSegment(x1,x2);
-		t_next.put(x2,ny);
+		setTNext(x2, ny);
 		getSegment(ny,XR.getTerminatingPointOfRoute(ky));
 		
 		int delta  = 0;
@@ -870,18 +938,19 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateOrOptMove2(Point x1, Point x2, Point y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int kx = XR.route(x1);
 		int ky = XR.route(y);
 		Point px1 = XR.prev(x1);
 		Point nx2 = XR.next(x2);
 		Point ny = XR.next(y);
 		
-		t_next.put(px1, nx2);
+		setTNext(px1, nx2);
 		getSegment(nx2, XR.getTerminatingPointOfRoute(kx));
 		
-		t_next.put(y, x2);
+		setTNext(y, x2);
 		getRevSegment(x2,x1);
-		t_next.put(x1, ny);
+		setTNext(x1, ny);
 		getSegment(ny,XR.getTerminatingPointOfRoute(ky));
 		
 		int delta  = 0;
@@ -894,17 +963,18 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateThreeOptMove1(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int k = XR.route(x);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		Point nz = XR.next(z);
 
 		
-		t_next.put(x,z);
+		setTNext(x, z);
 		getRevSegment(z,ny);
-		t_next.put(ny,nx);
+		setTNext(ny, nx);
 		getSegment(nx,y);
-		t_next.put(y,nz);
+		setTNext(y, nz);
 		getSegment(nz,XR.getTerminatingPointOfRoute(k));
 		
 		int delta  = 0;
@@ -915,6 +985,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateThreeOptMove2(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int k = XR.route(x);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
@@ -922,11 +993,11 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 
 		
 		getRevSegment(XR.getTerminatingPointOfRoute(k),nz);
-		t_next.put(nz, y);
+		setTNext(nz, y);
 		getRevSegment(y,nx);
-		t_next.put(nx,ny);
+		setTNext(nx, ny);
 		getSegment(ny,z);
-		t_next.put(z, x);
+		setTNext(z, x);
 		getRevSegment(x,XR.getStartingPointOfRoute(k));
 		
 		int delta  = 0;
@@ -937,17 +1008,18 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateThreeOptMove3(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int k = XR.route(x);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		Point nz = XR.next(z);
 
 	
-		t_next.put(x,y);
+		setTNext(x, y);
 		getRevSegment(y,nx);
-		t_next.put(nx, z);
+		setTNext(nx, z);
 		getRevSegment(z,ny);
-		t_next.put(ny,nz);
+		setTNext(ny, nz);
 		getSegment(nz,XR.getTerminatingPointOfRoute(k));
 		
 		int delta  = 0;
@@ -959,6 +1031,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateThreeOptMove4(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int k = XR.route(x);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
@@ -966,11 +1039,11 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 
 		
 		getRevSegment(XR.getTerminatingPointOfRoute(k),nz);
-		t_next.put(nz,ny);
+		setTNext(nz, ny);
 		getSegment(ny,z);
-		t_next.put(z, nx);
+		setTNext(z, nx);
 		getSegment(nx,y);
-		t_next.put(y,x);
+		setTNext(y, x);
 		getRevSegment(x,XR.getStartingPointOfRoute(k));
 		
 		int delta  = 0;
@@ -982,16 +1055,17 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateThreeOptMove5(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int k = XR.route(x);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		Point nz = XR.next(z);
 
-		t_next.put(x, ny);
+		setTNext(x, ny);
 		getSegment(ny,z);
-		t_next.put(z,nx);
+		setTNext(z, nx);
 		getSegment(nx,y);
-		t_next.put(y,nz);
+		setTNext(y, nz);
 		getSegment(nz,XR.getTerminatingPointOfRoute(k));
 		
 		int delta  = 0;
@@ -1003,17 +1077,18 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateThreeOptMove6(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int k = XR.route(x);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		Point nz = XR.next(z);
 
 		getRevSegment(XR.getTerminatingPointOfRoute(k),nz);
-		t_next.put(nz, y);
+		setTNext(nz, y);
 		getRevSegment(y,nx);
-		t_next.put(nx, z);
+		setTNext(nx, z);
 		getRevSegment(z,ny);
-		t_next.put(ny, x);
+		setTNext(ny, x);
 		getRevSegment(x,XR.getStartingPointOfRoute(k));
 		
 		int delta  = 0;
@@ -1025,16 +1100,17 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateThreeOptMove7(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int k = XR.route(x);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		Point nz = XR.next(z);
 
-		t_next.put(x, ny);
+		setTNext(x, ny);
 		getSegment(ny,z);
-		t_next.put(z,y);
+		setTNext(z, y);
 		getRevSegment(y,nx);
-		t_next.put(nx, nz);
+		setTNext(nx, nz);
 		getSegment(nz,XR.getTerminatingPointOfRoute(k));
 		
 		int delta  = 0;
@@ -1046,17 +1122,18 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateThreeOptMove8(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int k = XR.route(x);
 		Point nx = XR.next(x);
 		Point ny = XR.next(y);
 		Point nz = XR.next(z);
 
 		getRevSegment(XR.getTerminatingPointOfRoute(k),nz);
-		t_next.put(nz, nx);
+		setTNext(nz, nx);
 		getSegment(nx,y);
-		t_next.put(y, z);
+		setTNext(y, z);
 		getRevSegment(z,ny);
-		t_next.put(ny, x);
+		setTNext(ny, x);
 		getRevSegment(x,XR.getStartingPointOfRoute(k));
 		
 		int delta  = 0;
@@ -1068,6 +1145,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateCrossExchangeMove(Point x1, Point y1, Point x2, Point y2) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		Point nx1 = XR.next(x1);
 		Point ny1 = XR.next(y1);
 		Point nx2 = XR.next(x2);
@@ -1075,14 +1153,14 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 		int k1 = XR.route(x1);
 		int k2 = XR.route(x2);
 		
-		t_next.put(x1, nx2);
+		setTNext(x1, nx2);
 		getSegment(nx2, y2);
-		t_next.put(y2,ny1);
+		setTNext(y2, ny1);
 		getSegment(ny1, XR.getTerminatingPointOfRoute(k1));
 		
-		t_next.put(x2, nx1);
+		setTNext(x2, nx1);
 		getSegment(nx1, y1);
-		t_next.put(y1, ny2);
+		setTNext(y1, ny2);
 		getSegment(ny2, XR.getTerminatingPointOfRoute(k2));
 		
 		int delta  = 0;
@@ -1100,6 +1178,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 		// re-insert x2 between y2 and next[y2]	
 		
 		public int evaluateTwoPointsMove(Point x1, Point x2, Point y1, Point y2) {
+			getVRManager().flush();
 			// TODO Auto-generated method stub
 			ArrayList<Point> x = new ArrayList<Point>();
 			ArrayList<Point> y = new ArrayList<Point>();
@@ -1114,6 +1193,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	public int evaluateThreePointsMove(Point x1, Point x2, Point x3, Point y1,
 			Point y2, Point y3) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		ArrayList<Point> x = new ArrayList<Point>();
 		ArrayList<Point> y = new ArrayList<Point>();
 		x.add(x1);
@@ -1129,6 +1209,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	public int evaluateFourPointsMove(Point x1, Point x2, Point x3, Point x4,
 			Point y1, Point y2, Point y3, Point y4) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		ArrayList<Point> x = new ArrayList<Point>();
 		ArrayList<Point> y = new ArrayList<Point>();
 		x.add(x1);
@@ -1142,69 +1223,127 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 
 	
 	public int evaluateAddOnePoint(Point x, Point y) {
-		// TODO Auto-generated method stub
-		int k = XR.route(y);
-		Point ny = XR.next(y);
-		t_next.put(y, x);
-		t_next.put(x, ny);
-		vio.put(x, 0);
-		getSegment(ny, XR.getTerminatingPointOfRoute(k));
-		int delta = 0;
-		//System.out.println("tnexxt");
-		//for(int i  =0; i < t_next.size(); i++)
-			//System.out.println(t_next.get(i));
-		delta += calDeltaSegment(y, XR.getTerminatingPointOfRoute(k));
-		return delta;
+		getVRManager().flush();
+		ArrayList<Point> X = tX.get();
+		ArrayList<Point> Y = tY.get();
+		X.clear();
+		Y.clear();
+		X.add(x);
+		Y.add(y);
+		return evaluateAddPoints(X, Y);
 	}
 
 	
 	public int evaluateRemoveOnePoint(Point x) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		int k = XR.route(x);
 		Point px = XR.prev(x);
 		Point nx = XR.next(x);
-		t_next.put(px,nx);
+		setTNext(px, nx);
 		getSegment(nx, XR.getTerminatingPointOfRoute(k));
 		
 		return calDeltaSegment(px, XR.getTerminatingPointOfRoute(k));
 	}
 
 	public int evaluateAddTwoPoints(Point x1, Point y1, Point x2, Point y2){
-		int k = XR.route(y1);
-		Point ny1 = XR.next(y1);
-		t_next.put(y1, x1);
-		vio.put(x1, 0);
-		vio.put(x2, 0);
-		if(y1 != y2){
-			t_next.put(x1, ny1);
-			getSegment(ny1, y2);
-			Point ny2 = XR.next(y2);
-			t_next.put(y2, x2);
-			t_next.put(x2, ny2);
-			getSegment(ny2, XR.getTerminatingPointOfRoute(k));
+		getVRManager().flush();
+		ArrayList<Point> X = tX.get();
+		ArrayList<Point> Y = tY.get();
+		X.clear();
+		Y.clear();
+		X.add(x1);
+		Y.add(y1);
+		X.add(x2);
+		Y.add(y1 == y2 ? x1 : y2);
+		return evaluateAddPoints(X, Y);
+	}
+	
+	// walk the route from the first modified position following the successors after the move,
+	// nothing is allocated and vio and t_next are not modified
+	public int evaluateAddPoints(ArrayList<Point> x, ArrayList<Point> y){
+		getVRManager().flush();
+		Point v = XR.getFirstAnchor(y);
+		Point t = XR.endPoint(XR.route(v));
+		int delta = 0;
+		double dt = eat.getEarliestArrivalTime(v)
+				+ eat.getServiceDuration(v);
+		while(v != t){
+			Point nv = XR.nextAfterAddPoints(v, x, y);
+			double at = dt + eat.getTravelTime(v,nv);
+			if(XR.route(nv) != Constants.NULL_POINT)
+				delta = delta - vio[nv.getIndex()];
+			delta = delta + computeViolations(nv, at);
+			dt = (at < eat.getEarliestAllowedArrivalTime(nv) ? eat
+					.getEarliestAllowedArrivalTime(nv) : at )
+					+ eat.getServiceDuration(nv);
+			v = nv;
 		}
-		else{
-			t_next.put(x1, x2);
-			t_next.put(x2, ny1);
-			getSegment(ny1, XR.getTerminatingPointOfRoute(k));
+		return delta;
+	}
+	
+	// check of adding x[i] right-after y[i] (in the order of evaluateAddPoints) which does not walk the route:
+	// only the added points are visited, the unchanged parts of the route are skipped using the current
+	// start times as lower bounds and the forward time slack of eat after the last modified position.
+	// Returns false only if the move surely violates a time window; true is returned when it cannot be
+	// decided this way or when the current routes already violate time windows
+	public boolean canAddPoints(ArrayList<Point> x, ArrayList<Point> y){
+		getVRManager().flush();
+		if(violations > 0)
+			return true;
+		Point v = XR.getFirstAnchor(y);
+		for(Point p : y){
+			if(XR.route(p) != Constants.NULL_POINT && XR.route(p) != XR.route(v))
+				return true;
+		}
+		double st = eat.getEarliestArrivalTime(v);
+		while(true){
+			Point w = XR.nextAfterAddPoints(v, x, y);
+			double at = arrivalAfter(v, w, st);
+			if(computeViolations(w, at) > 0)
+				return false;
+			st = startAt(w, at);
+			if(XR.route(w) == Constants.NULL_POINT){
+				v = w;
+				continue;
+			}
+			// back on the route: the points up to the next anchor keep their successor, so they start
+			// no earlier than now as long as w does
+			if(st < eat.getEarliestArrivalTime(w))
+				return true;
+			Point a = XR.getNextAnchor(w, y);
+			if(a == null)
+				return st <= eat.getLatestStart(w);
+			if(a != w)
+				st = eat.getEarliestArrivalTime(a);
+			v = a;
 		}
-		return calDeltaSegment(y1, XR.getTerminatingPointOfRoute(k));
+	}
+	
+	// arrival time at b when b directly follows a and the service at a starts at st
+	private double arrivalAfter(Point a, Point b, double st){
+		return st + eat.getServiceDuration(a) + eat.getTravelTime(a, b);
+	}
+	
+	private double startAt(Point a, double arrivalTime){
+		return arrivalTime < eat.getEarliestAllowedArrivalTime(a) ? eat.getEarliestAllowedArrivalTime(a) : arrivalTime;
 	}
 	
 	public int evaluateRemoveTwoPoints(Point x1, Point x2){
+		getVRManager().flush();
 		int k = XR.route(x1);
 		Point px1 = XR.prev(x1);
 		Point nx1 = XR.next(x1);
 		Point px2 = XR.prev(x2);
 		Point nx2 = XR.next(x2);
 		if(x2 == nx1){
-			t_next.put(px1, nx2);
+			setTNext(px1, nx2);
 			getSegment(nx2, XR.getTerminatingPointOfRoute(k));
 		}
 		else{
-			t_next.put(px1, nx1);
+			setTNext(px1, nx1);
 			getSegment(nx1, px2);
-			t_next.put(px2, nx2);
+			setTNext(px2, nx2);
 			getSegment(nx2, XR.getTerminatingPointOfRoute(k));
 		}
 		
@@ -1239,14 +1378,14 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 		int delta = 0;
 		Point s = XR.getStartingPointOfRoute(k);
 		Point pre = s;
-		delta -= vio.get(s);
+		delta -= vio[s.getIndex()];
 		while(!XR.isTerminatingPoint(s))
 		{
 			Point ns = XR.next(s);
-			delta -= vio.get(ns);
+			delta -= vio[ns.getIndex()];
 			if(!out.contains(ns))
 			{
-				t_next.put(pre, ns);
+				setTNext(pre, ns);
 				pre = ns;
 			}
 			s = ns;
@@ -1255,9 +1394,9 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 		{
 			Point inp = in.get(i);
 			Point preP = preIn.get(i);
-			Point nex = t_next.get(preP);
-			t_next.put(preP, inp);
-			t_next.put(inp, nex);
+			Point nex = tNext(preP);
+			setTNext(preP, inp);
+			setTNext(inp, nex);
 		}
 		Point v = XR.getStartingPointOfRoute(k);
 		double dt = eat.getEarliestArrivalTime(v)
@@ -1265,9 +1404,9 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 
 		while (v != XR.endPoint(k)) {
 			//System.out.println(v);
-			Point nv = t_next.get(v);
+			Point nv = tNext(v);
 			double at = dt + eat.getTravelTime(v,nv);
-			//delta = delta - vio.get(nv);
+			//delta = delta - vio[nv.getIndex()];
 			delta = delta + computeViolations(nv, at);
 			dt = (at < eat.getEarliestAllowedArrivalTime(nv) ? eat
 					.getEarliestAllowedArrivalTime(nv) : at )
@@ -1279,6 +1418,7 @@ public class CEarliestArrivalTimeVR implements IConstraintVR {
 	
 	public int evaluateKPointsMove(ArrayList<Point> x, ArrayList<Point> y) {
 		// TODO Auto-generated method stub
+		getVRManager().flush();
 		HashMap<Integer,Set<Point>> mout= new HashMap<Integer,Set<Point>>();
 		HashMap<Integer,ArrayList<Point>> min = new HashMap<Integer,ArrayList<Point>>();
 		HashMap<Integer,ArrayList<Point>> mPrein = new HashMap<Integer,ArrayList<Point>>();
@@ -6,34 +6,50 @@ import vrp.IDistanceManager;
 
 public class ArcWeightsManager implements IDistanceManager{
 	private ArrayList<Point> points;
-	private HashMap<Point, Integer> map;
-	private double[][] weights;
-	
+	// location[i] is the location index of the point of ordinal i (Point.getIndex())
+	private int[] location;
+	// weights[a][b] is the weight (travel time in seconds) from location a to location b,
+	// shared by all the points located at a and b
+	private int[][] weights;
+
+	// the points must have been registered to VarRoutesVR beforehand
+	public ArcWeightsManager(ArrayList<Point> points, int[][] weights, int[] location){
+		this.points = points;
+		this.weights = weights;
+		this.location = location;
+	}
+	// each point is its own location, weights are given by setWeight
 	public ArcWeightsManager(ArrayList<Point> points){
 		this.points = points;
-		map = new HashMap<Point, Integer>();
-		for(int i = 0; i < points.size(); i++){
-			map.put(points.get(i), i);
-			//System.out.println(name() + "::constructor, map.put(" + points.get(i).ID + "," + i + ")");
-		}
-		weights = new double[points.size()][points.size()];
+		weights = new int[points.size()][points.size()];
+		location = new int[points.size()];
+		for(int i = 0; i < points.size(); i++)
+			location[points.get(i).getIndex()] = points.get(i).getIndex();
 	}
 	public String name(){
 		return "ArcWeightsManager";
 	}
+	// set the weight from the location of p1 to the location of p2, truncated to int
 	public void setWeight(Point p1, Point p2, double w){
-		//System.out.println(name() + "::setWeight p1 = " + p1.ID + ", p2 = " + p2.ID + 
-		//		", map p1 = " + map.get(p1) + ", map p2 = " + map.get(p2) + ", w = " + w);
-		weights[map.get(p1)][map.get(p2)] = w;
+		weights[location[p1.getIndex()]][location[p2.getIndex()]] = (int)w;
 	}
 	public double getWeight(Point p1, Point p2){
-		return weights[map.get(p1)][map.get(p2)];
+		return weights[location[p1.getIndex()]][location[p2.getIndex()]];
+	}
+	public double getWeight(int i1, int i2){
+		return weights[location[i1]][location[i2]];
+	}
+	public int getLocation(Point p){
+		return location[p.getIndex()];
+	}
+	public int getLocation(int i){
+		return location[i];
 	}
 
 	public double getDistance(Point x, Point y){
 		return getWeight(x,y);
 	}
-	public double[][] getWeight() {
+	public int[][] getWeight() {
 		return weights;
 	}
 	public ArrayList<Point> getPoints(){
@@ -5,12 +5,11 @@ import java.util.*;
 public class NodeWeightsManager {
 	protected ArrayList<Point> points;
 	protected double[] weights;
-	protected HashMap<Point, Integer> map;
+	
+	// weights are indexed by the ordinals of the points (Point.getIndex()),
+	// so the points must have been registered to VarRoutesVR beforehand
 	public NodeWeightsManager(ArrayList<Point> points){
 		this.points = points;
-		map = new HashMap<Point, Integer>();
-		for(int i = 0; i < points.size(); i++)
-			map.put(points.get(i), i);
 		//weights = new double[points.size()];
 		weights = new double[points.size() < 100 ? 100 : points.size()];
 	}
@@ -21,16 +20,18 @@ public class NodeWeightsManager {
 		weights = t_w;
 	}
 	public void addPoint(Point p){
-		if(weights.length == points.size()) scaleUp();
+		while(p.getIndex() >= weights.length) scaleUp();
 		points.add(p);
-		map.put(p, points.size()-1);
 	}
 
 	public double getWeight(Point p){
-		return weights[map.get(p)];
+		return weights[p.getIndex()];
+	}
+	public double getWeight(int i){
+		return weights[i];
 	}
 	public void setWeight(Point p, double w){
-		weights[map.get(p)] = w;
+		weights[p.getIndex()] = w;
 	}
 	public ArrayList<Point> getPoints(){
 		return this.points;
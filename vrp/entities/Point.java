@@ -5,6 +5,8 @@ public class Point {
 	public int ID;
     double x, y;
     String locationCode;
+    // dense ordinal of the point, assigned when it is registered to VarRoutesVR
+    int index = -1;
     //ArrayList<Integer> bucketIDs;
 	public Point(int ID, double x, double y){
     	this.ID = ID;
@@ -35,6 +37,13 @@ public class Point {
 		ID = iD;
 	}
 
+	public int getIndex() {
+		return index;
+	}
+	public void setIndex(int index) {
+		this.index = index;
+	}
+
     public int getID() {
     	return ID;
     }
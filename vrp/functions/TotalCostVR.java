@@ -23,8 +23,6 @@ public class TotalCostVR implements IFunctionVR {
 	private double[] costLeft;
 	private double[] costRight;
 
-	HashMap<Point, Integer> map;
-
 	public TotalCostVR(VarRoutesVR XR, ArcWeightsManager awm) {
 		this.XR = XR;
 		this.awm = awm;
@@ -35,16 +33,11 @@ public class TotalCostVR implements IFunctionVR {
 	private void post() {
 		costLeft = new double[XR.getTotalNbPoints()];
 		costRight = new double[XR.getTotalNbPoints()];
-		ArrayList<Point> points = XR.getAllPoints();
-		map = new HashMap<Point, Integer>();
-		for (int i = 0; i < points.size(); i++) {
-			map.put(points.get(i), i);
-		}
 		mgr.post(this);
 	}
 
 	private int getIndex(Point p) {
-		return map.get(p);
+		return XR.getIndex(p);
 	}
 
 	private double getCostLeft(Point p) {
@@ -60,26 +53,41 @@ public class TotalCostVR implements IFunctionVR {
 	}
 
 	private void update(int k) {
-		Point sp = XR.getStartingPointOfRoute(k);
-		Point tp = XR.getTerminatingPointOfRoute(k);
-		costRight[getIndex(sp)] = 0;
-		costLeft[getIndex(tp)] = 0;
+		int sp = XR.getStartingIndexOfRoute(k);
+		int tp = XR.getTerminatingIndexOfRoute(k);
+		costRight[sp] = 0;
+		costLeft[tp] = 0;
 		if(XR.next(sp) == tp){
-			costRight[getIndex(tp)] = 0;
-			costLeft[getIndex(sp)] = 0;
+			costRight[tp] = 0;
+			costLeft[sp] = 0;
 			return;
 		}
-		for (Point u = sp; u != tp; u = XR.next(u)) {
-			costRight[getIndex(XR.next(u))] = costRight[getIndex(u)]
+		for (int u = sp; u != tp; u = XR.next(u)) {
+			costRight[XR.next(u)] = costRight[u]
 					+ awm.getWeight(u, XR.next(u));
 		}
 		
-		for (Point u = tp; u != sp; u = XR.prev(u)) {
-			costLeft[getIndex(XR.prev(u))] = costLeft[getIndex(u)]
+		for (int u = tp; u != sp; u = XR.prev(u)) {
+			costLeft[XR.prev(u)] = costLeft[u]
 					+ awm.getWeight(u, XR.prev(u));
 		}
 	}
 
+	// indexed by point ordinal: cost of the route from its starting point to the point,
+	// and from its terminating point back to the point
+	public double[] getCostRight() {
+		return costRight;
+	}
+
+	public double[] getCostLeft() {
+		return costLeft;
+	}
+
+	// the cost of a route maintained through getCostRight() changed by d
+	public void addValue(double d) {
+		value += d;
+	}
+
 	private double calc(Point s, Point t) {
 		if (XR.route(s) != XR.route(t)) {
 			System.out.println(name() + "::calc(" + s + "," + t
@@ -501,6 +509,17 @@ public class TotalCostVR implements IFunctionVR {
 		}
 	}
 
+	// @Override
+	public void propagateRoutes(ArrayList<Integer> r, ArrayList<Point> removed) {
+		for (Point p : removed)
+			costRight[getIndex(p)] = costLeft[getIndex(p)] = 0;
+		for (int k : r) {
+			value -= getCostRight(XR.getTerminatingPointOfRoute(k));
+			update(k);
+			value += getCostRight(XR.getTerminatingPointOfRoute(k));
+		}
+	}
+
 	// @Override
 	public String name() {
 		// TODO Auto-generated method stub
@@ -510,6 +529,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double getValue() {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		return value;
 	}
 
@@ -517,6 +537,7 @@ public class TotalCostVR implements IFunctionVR {
 	// remove (x, next[x]) and (y,next[y])
 	// add (x,y) and (next[x],next[y])
 	public double evaluateTwoOptMoveOneRoute(Point x, Point y) {
+		mgr.flush();
 		if (!XR.checkPerformTwoOptMoveOneRoute(x, y)) {
 			System.out.println(name()
 					+ "::evaluateTwoOptMoveOneRoute, check failed");
@@ -550,6 +571,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateOnePointMove(Point x, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformOnePointMove(x, y)) {
 			System.out.println(name() + ":: Error evaluateOnePointMove: " + x
 					+ " " + y + "\n" + XR.toString());
@@ -594,6 +616,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateTwoPointsMove(Point x, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformTwoPointsMove(x, y)) {
 			System.out.println(name() + ":: Error evaluateTwoPointsMove: " + x
 					+ " " + y + "\n" + XR.toString());
@@ -611,6 +634,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateTwoOptMove1(Point x, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformTwoOptMove(x, y)) {
 			System.out.println(name() + ":: Error evaluateTwoOptMove1: " + x
 					+ " " + y + "\n" + XR.toString());
@@ -640,6 +664,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateTwoOptMove2(Point x, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformTwoOptMove(x, y)) {
 			System.out.println(name() + ":: Error evaluateTwoOptMove2: " + x
 					+ " " + y + "\n" + XR.toString());
@@ -671,6 +696,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateTwoOptMove3(Point x, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformTwoOptMove(x, y)) {
 			System.out.println(name() + ":: Error evaluateTwoOptMove3: " + x
 					+ " " + y + "\n" + XR.toString());
@@ -721,6 +747,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateTwoOptMove4(Point x, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformTwoOptMove(x, y)) {
 			System.out.println(name() + ":: Error evaluateTwoOptMove4: " + x
 					+ " " + y + "\n" + XR.toString());
@@ -771,6 +798,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateTwoOptMove5(Point x, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformTwoOptMove(x, y)) {
 			System.out.println(name() + ":: Error evaluateTwoOptMove5: " + x
 					+ " " + y + "\n" + XR.toString());
@@ -810,6 +838,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateTwoOptMove6(Point x, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformTwoOptMove(x, y)) {
 			System.out.println(name() + ":: Error evaluateTwoOptMove6: " + x
 					+ " " + y + "\n" + XR.toString());
@@ -852,6 +881,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateTwoOptMove7(Point x, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformTwoOptMove(x, y)) {
 			System.out.println(name() + ":: Error evaluateTwoOptMove7: " + x
 					+ " " + y + "\n" + XR.toString());
@@ -863,6 +893,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateTwoOptMove8(Point x, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformTwoOptMove(x, y)) {
 			System.out.println(name() + ":: Error evaluateTwoOptMove8: " + x
 					+ " " + y + "\n" + XR.toString());
@@ -908,6 +939,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateOrOptMove1(Point x1, Point x2, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformOrOptMove(x1, x2, y)) {
 			System.out.println(name() + ":: Error evaluateOrOptMove1: " + x1
 					+ " " + x2 + " " + y + "\n" + XR.toString());
@@ -928,6 +960,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateOrOptMove2(Point x1, Point x2, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformOrOptMove(x1, x2, y)) {
 			System.out.println(name() + ":: Error evaluateOrOptMove2: " + x1
 					+ " " + x2 + " " + y + "\n" + XR.toString());
@@ -948,6 +981,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateThreeOptMove1(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformThreeOptMove(x, y, z)) {
 			System.out.println(name() + ":: Error evaluateThreeOptMove1: " + x
 					+ " " + y + " " + z + "\n" + XR.toString());
@@ -964,6 +998,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateThreeOptMove2(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformThreeOptMove(x, y, z)) {
 			System.out.println(name() + ":: Error evaluateThreeOptMove2: " + x
 					+ " " + y + " " + z + "\n" + XR.toString());
@@ -994,6 +1029,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateThreeOptMove3(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformThreeOptMove(x, y, z)) {
 			System.out.println(name() + ":: Error evaluateThreeOptMove3: " + x
 					+ " " + y + " " + z + "\n" + XR.toString());
@@ -1010,6 +1046,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateThreeOptMove4(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformThreeOptMove(x, y, z)) {
 			System.out.println(name() + ":: Error evaluateThreeOptMove4: " + x
 					+ " " + y + " " + z + "\n" + XR.toString());
@@ -1038,6 +1075,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateThreeOptMove5(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformThreeOptMove(x, y, z)) {
 			System.out.println(name() + ":: Error evaluateThreeOptMove5: " + x
 					+ " " + y + " " + z + "\n" + XR.toString());
@@ -1054,6 +1092,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateThreeOptMove6(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformThreeOptMove(x, y, z)) {
 			System.out.println(name() + ":: Error evaluateThreeOptMove6: " + x
 					+ " " + y + " " + z + "\n" + XR.toString());
@@ -1082,6 +1121,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateThreeOptMove7(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformThreeOptMove(x, y, z)) {
 			System.out.println(name() + ":: Error evaluateThreeOptMove7: " + x
 					+ " " + y + " " + z + "\n" + XR.toString());
@@ -1099,6 +1139,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateThreeOptMove8(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformThreeOptMove(x, y, z)) {
 			System.out.println(name() + ":: Error evaluateThreeOptMove8: " + x
 					+ " " + y + " " + z + "\n" + XR.toString());
@@ -1128,6 +1169,7 @@ public class TotalCostVR implements IFunctionVR {
 	public double evaluateCrossExchangeMove(Point x1, Point y1, Point x2,
 			Point y2) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformCrossExchangeMove(x1, y1, x2, y2)) {
 			System.out.println(name() + ":: Error evaluateCrossExchangeMove: "
 					+ x1 + " " + y1 + " " + x2 + " " + y2 + "\n"
@@ -1147,6 +1189,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateTwoPointsMove(Point x1, Point x2, Point y1, Point y2) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformTwoPointsMove(x1, x2, y1, y2)) {
 			System.out.println(name() + ":: Error evaluateTwoPointsMove: " + x1
 					+ " " + y1 + " " + x2 + " " + y2 + "\n" + XR.toString());
@@ -1191,6 +1234,7 @@ public class TotalCostVR implements IFunctionVR {
 	public double evaluateThreePointsMove(Point x1, Point x2, Point x3,
 			Point y1, Point y2, Point y3) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformThreePointsMove(x1, x2, x3, y1, y2, y3)) {
 			System.out.println(name() + ":: Error evaluateThreePointsMove: "
 					+ x1 + " " + y1 + " " + x2 + " " + y2 + " " + x3 + " " + y3
@@ -1236,6 +1280,7 @@ public class TotalCostVR implements IFunctionVR {
 	public double evaluateFourPointsMove(Point x1, Point x2, Point x3,
 			Point x4, Point y1, Point y2, Point y3, Point y4) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformFourPointsMove(x1, x2, x3, x4, y1, y2, y3, y4)) {
 			System.out.println(name() + ":: Error evaluateFourPointsMove: "
 					+ x1 + " " + y1 + " " + x2 + " " + y2 + " " + x3 + " " + y3
@@ -1280,6 +1325,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateAddOnePoint(Point x, Point y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformAddOnePoint(x, y)) {
 			System.out.println(name() + ":: Error evaluateAddOnePoint: " + x
 					+ " " + y + "\n" + XR.toString());
@@ -1291,6 +1337,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateRemoveOnePoint(Point x) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformRemoveOnePoint(x)) {
 			System.out.println(name() + ":: Error evaluate RemoveOnePoint: "
 					+ x + "\n" + XR.toString());
@@ -1303,6 +1350,7 @@ public class TotalCostVR implements IFunctionVR {
 	//@Override
 	public double evaluateAddTwoPoints(Point x1, Point y1, Point x2, Point y2) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformAddTwoPoints(x1, y1, x2, y2)) {
 			System.out.println(name() + ":: Error evaluateAddTwoPoints: " + x1 + " " + y1 + " " + x2 + " " + y2 + "\n" + XR.toString());
     		System.exit(-1);
@@ -1313,10 +1361,33 @@ public class TotalCostVR implements IFunctionVR {
 		return getCost(y1, x1) + getCost(x1, XR.next(y1)) - getCost(y1, XR.next(y1))
 			+ getCost(y2, x2) + getCost(x2, XR.next(y2)) - getCost(y2, XR.next(y2));
 	}
-	
+
+	//@Override
+	public double evaluateAddPoints(ArrayList<Point> x, ArrayList<Point> y) {
+		mgr.flush();
+		// from[j] -> to[j] are the arcs created by the previous insertions
+		ArrayList<Point> from = new ArrayList<Point>();
+		ArrayList<Point> to = new ArrayList<Point>();
+		double eval = 0;
+		for(int i = 0; i < x.size(); i++){
+			Point yi = y.get(i);
+			Point ny = null;
+			for(int j = from.size() - 1; j >= 0 && ny == null; j--)
+				if(from.get(j) == yi) ny = to.get(j);
+			if(ny == null) ny = XR.next(yi);
+			eval += getCost(yi, x.get(i)) + getCost(x.get(i), ny) - getCost(yi, ny);
+			from.add(yi);
+			to.add(x.get(i));
+			from.add(x.get(i));
+			to.add(ny);
+		}
+		return eval;
+	}
+
 	//@Override
 	public double evaluateRemoveTwoPoints(Point x1, Point x2) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformRemoveTwoPoints(x1, x2)) {
 			System.out.println(name() + ":: Error evaluate RemoveTwoPoints: " + x1 + " " + x2 + "\n" + XR.toString());
     		System.exit(-1);
@@ -1332,6 +1403,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateAddRemovePoints(Point x, Point y, Point z) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformAddRemovePoints(x, y, z)) {
 			System.out.println(name() + ":: Error evaluate AddRemovePoints: "
 					+ x + " " + y + " " + z + "\n" + XR.toString());
@@ -1377,6 +1449,7 @@ public class TotalCostVR implements IFunctionVR {
 	// @Override
 	public double evaluateKPointsMove(ArrayList<Point> x, ArrayList<Point> y) {
 		// TODO Auto-generated method stub
+		mgr.flush();
 		if (!XR.checkPerformKPointsMove(x, y)) {
 			System.out.println(name() + ":: Error evaluateKPointsMove: \n"
 					+ XR.toString());
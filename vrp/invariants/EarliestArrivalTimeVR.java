@@ -12,16 +12,32 @@ import vrp.VRManager;
 public class EarliestArrivalTimeVR implements InvariantVR {
 	VarRoutesVR XR;
 	ArcWeightsManager awm;
-	HashMap<Point, Integer> earliestAllowedArrivalTime;
-	HashMap<Point, Integer> serviceDuration;
-	private HashMap<Point, Double> earliestArrivalTime;
+	// indexed by point ordinal (Point.getIndex())
+	int[] earliestAllowedArrivalTime;
+	int[] serviceDuration;
+	// null when the points have no deadline
+	int[] latestAllowedArrivalTime;
+	// earliest start of service, waiting time before it (time window not yet open) and
+	// Savelsbergh forward time slack, i.e. the largest delay of the start of service of a point
+	// that keeps the deadlines of this point and of the following points of its route,
+	// indexed by point ordinal
+	private double[] earliestArrivalTime;
+	private double[] waitingTime;
+	private double[] forwardSlack;
 	public EarliestArrivalTimeVR(VarRoutesVR XR, ArcWeightsManager awm, 
-			HashMap<Point, Integer> earliestAllowedArrivalTime, HashMap<Point, Integer> serviceDuration){
+			int[] earliestAllowedArrivalTime, int[] serviceDuration){
+		this(XR, awm, earliestAllowedArrivalTime, serviceDuration, null);
+	}
+	public EarliestArrivalTimeVR(VarRoutesVR XR, ArcWeightsManager awm, 
+			int[] earliestAllowedArrivalTime, int[] serviceDuration, int[] latestAllowedArrivalTime){
 		this.XR = XR;
 		this.awm = awm;
 		this.earliestAllowedArrivalTime = earliestAllowedArrivalTime;
 		this.serviceDuration = serviceDuration;
-		earliestArrivalTime = new HashMap<Point,Double>();
+		this.latestAllowedArrivalTime = latestAllowedArrivalTime;
+		earliestArrivalTime = new double[XR.getAllPoints().size()];
+		waitingTime = new double[XR.getAllPoints().size()];
+		forwardSlack = new double[XR.getAllPoints().size()];
 		getVRManager().post(this);
 	}
 	
@@ -34,33 +50,85 @@ public class EarliestArrivalTimeVR implements InvariantVR {
 	
 	public void initPropagation() {
 		// TODO Auto-generated method stub
+		if(earliestArrivalTime.length < XR.getAllPoints().size()){
+			earliestArrivalTime = new double[XR.getAllPoints().size()];
+			waitingTime = new double[XR.getAllPoints().size()];
+			forwardSlack = new double[XR.getAllPoints().size()];
+		}
 		int nr = XR.getNbRoutes();
 		for(int i=1;i<=nr;++i)
 			update(i);
 	}
 
 	private void update(int k){
-		Point s = XR.getStartingPointOfRoute(k);
-		earliestArrivalTime.put( s ,1.0*earliestAllowedArrivalTime.get(s));
-
-		for(Point x = s; x != XR.getTerminatingPointOfRoute(k); x = XR.next(x)){
-			Point nx = XR.next(x);
-			//System.out.println(earliestArrivalTime.get(x) + "  "+serviceDuration.get(x) + "   "+ awm.getDistance(x, nx));
-			double tnx = earliestArrivalTime.get(x) + serviceDuration.get(x) + awm.getDistance(x, nx);
-			double tmp = tnx > earliestAllowedArrivalTime.get(nx) ? 
-					tnx : earliestAllowedArrivalTime.get(nx);
-				earliestArrivalTime.put(nx, tmp);
-			//System.out.println(x+"  "+nx+"  "+awm.getDistance(x, nx)+"   "+tmp);
+		int s = XR.getStartingIndexOfRoute(k);
+		int t = XR.getTerminatingIndexOfRoute(k);
+		earliestArrivalTime[s] = 1.0*earliestAllowedArrivalTime[s];
+		waitingTime[s] = 0;
+
+		for(int x = s; x != t; x = XR.next(x)){
+			int nx = XR.next(x);
+			setArrivalTime(nx, earliestArrivalTime[x] + serviceDuration[x] + awm.getWeight(x, nx));
+		}
+		for(int x = t; x != Constants.NULL_POINT; x = XR.prev(x))
+			updateForwardSlack(x);
+	}
+	
+	// v is reached at time arrivalTime, its service starts when its time window opens
+	private void setArrivalTime(int v, double arrivalTime){
+		if(earliestAllowedArrivalTime[v] > arrivalTime){
+			earliestArrivalTime[v] = 1.0*earliestAllowedArrivalTime[v];
+			waitingTime[v] = earliestArrivalTime[v] - arrivalTime;
+		}else{
+			earliestArrivalTime[v] = arrivalTime;
+			waitingTime[v] = 0;
 		}
 	}
-	public HashMap<Point,Double> getEarliestArrivalTime(){
+	
+	// F(v) = min(l(v) - t(v), W(next(v)) + F(next(v))), returns true if F(v) changed
+	private boolean updateForwardSlack(int v){
+		double f = (latestAllowedArrivalTime == null ? Constants.MAX_INT : latestAllowedArrivalTime[v])
+				- earliestArrivalTime[v];
+		int nv = XR.next(v);
+		if(nv != Constants.NULL_POINT && waitingTime[nv] + forwardSlack[nv] < f)
+			f = waitingTime[nv] + forwardSlack[nv];
+		if(f == forwardSlack[v])
+			return false;
+		forwardSlack[v] = f;
+		return true;
+	}
+	public double[] getEarliestArrivalTime(){
+		getVRManager().flush();
 		return earliestArrivalTime;
 	}
 	public double getEarliestArrivalTime(Point v){
-		return earliestArrivalTime.get(v);
+		getVRManager().flush();
+		return earliestArrivalTime[v.getIndex()];
+	}
+	// indexed by point ordinal, as getEarliestArrivalTime()
+	public double[] getWaitingTime(){
+		getVRManager().flush();
+		return waitingTime;
+	}
+	public double[] getForwardSlack(){
+		getVRManager().flush();
+		return forwardSlack;
+	}
+	public double getWaitingTime(Point v){
+		getVRManager().flush();
+		return waitingTime[v.getIndex()];
+	}
+	public double getForwardSlack(Point v){
+		getVRManager().flush();
+		return forwardSlack[v.getIndex()];
+	}
+	// latest start of service at v keeping the deadlines of v and of the following points of its route
+	public double getLatestStart(Point v){
+		getVRManager().flush();
+		return earliestArrivalTime[v.getIndex()] + forwardSlack[v.getIndex()];
 	}
 	
-	public HashMap<Point,Integer> getEarliestAllowedArrivalTime(){
+	public int[] getEarliestAllowedArrivalTime(){
 		return earliestAllowedArrivalTime;
 	}
 	public VarRoutesVR getVarRouteVR()
@@ -69,9 +137,9 @@ public class EarliestArrivalTimeVR implements InvariantVR {
 	}
 	public double getServiceDuration(Point v)
 	{
-		return serviceDuration.get(v);
+		return serviceDuration[v.getIndex()];
 	}
-	public HashMap<Point,Integer> getServiceDuration()
+	public int[] getServiceDuration()
 	{
 		return serviceDuration;
 	}
@@ -81,43 +149,37 @@ public class EarliestArrivalTimeVR implements InvariantVR {
 	}
 	public double getEarliestAllowedArrivalTime(Point v)
 	{
-		return earliestAllowedArrivalTime.get(v);
+		return earliestAllowedArrivalTime[v.getIndex()];
 	}
 	void updateFromPoint(Point x)
 	{
-		//System.out.println(name() + "::updateFromPoint(" + x.ID + "), earliestArrivalTime = " + earliestArrivalTime.get(x));
-		Point pX = XR.prev(x);
-		Point p = pX;
-		Point nP = x;
-		if(XR.isStartingPoint(x))
-		{
-			p = x;
-			nP = XR.next(x);
-		}
-		//System.out.println(name() + "::updateFromPoint(" + x.ID + "), earliestArrivalTime = " + earliestArrivalTime.get(x) + ", p = " + p.ID + ", nP = " + nP.ID);
+		updateFromPoint(x, false);
+	}
+	// recompute the times of the points following the predecessor of x (of x itself if x is a starting point).
+	// With cutoff, the forward pass stops at the first point whose time is unchanged and whose successor
+	// is the same as before the move, so the caller must update from every place changed by the move;
+	// otherwise it walks to the end of the route. The forward slacks are then recomputed backward
+	// and stop at the first unchanged slack before the recomputed points.
+	void updateFromPoint(Point x, boolean cutoff)
+	{
+		int p = XR.getIndex(x);
+		if(!XR.isStartingPoint(x))
+			p = XR.prev(p);
+		int first = p;
+		int nP;
 		do{
-			double curTime = earliestArrivalTime.get(p) + serviceDuration.get(p);
-			if(earliestAllowedArrivalTime.get(nP) > curTime + awm.getDistance(p, nP))
-			{
-				earliestArrivalTime.put(nP, 1.0*earliestAllowedArrivalTime.get(nP));
-			}
-			else{
-				earliestArrivalTime.put(nP,curTime + awm.getDistance(p, nP)) ;
-			}
-			//System.out.println(name() + "::updateFromPoint(" + x.ID + "), set earliestArrivalTime(" + nP.ID + ") = " + earliestArrivalTime.get(nP));
-			p = nP;
 			nP = XR.next(p);
-		}while(!XR.isTerminatingPoint(p));
-		/*
-		System.out.println(name() + "::updateFromPoint(" + x.ID + "), after propagate: ");
-		for(int k = 1; k <= XR.getNbRoutes(); k++){
-			for(Point z = XR.startPoint(k); z != XR.endPoint(k); z = XR.next(z)){
-				System.out.println("earliestArrivalTime(" + z.ID + ") = " + earliestArrivalTime.get(z));
-			}
-			Point z = XR.endPoint(k);
-			System.out.println("earliestArrivalTime(" + z.ID + ") = " + earliestArrivalTime.get(z));
+			double old = earliestArrivalTime[nP];
+			setArrivalTime(nP, earliestArrivalTime[p] + serviceDuration[p] + awm.getWeight(p, nP));
+			if(cutoff && earliestArrivalTime[nP] == old && XR.next(nP) == XR.oldNext(nP))
+				break;
+			p = nP;
+		}while(XR.next(p) != Constants.NULL_POINT);
+
+		for(int v = nP; v != Constants.NULL_POINT; v = XR.prev(v)){
+			if(!updateForwardSlack(v) && XR.index(v) <= XR.index(first))
+				break;
 		}
-		*/
 	}
 	// x is before y on the same route
 	// remove (x, next[x]) and (y,next[y])
@@ -348,27 +410,30 @@ public class EarliestArrivalTimeVR implements InvariantVR {
 	
 	public void propagateAddOnePoint(Point x, Point y) {
 		// TODO Auto-generated method stub
-		updateFromPoint(x);
+		updateFromPoint(x, true);
 	}
 
 	
 	public void propagateRemoveOnePoint(Point x) {
 		// TODO Auto-generated method stub
-		updateFromPoint(XR.oldNext(x));
+		updateFromPoint(XR.oldNext(x), true);
 	}
 
 	public void propagateAddTwoPoints(Point x1, Point y1, Point x2, Point y2) {
 		// TODO Auto-generated method stub
-		updateFromPoint(x1);
+		updateFromPoint(x1, true);
+		updateFromPoint(x2, true);
 	}
 
 	
 	public void propagateRemoveTwoPoints(Point x1, Point x2) {
 		// TODO Auto-generated method stub
 		if(x2 != XR.oldNext(x1))
-			updateFromPoint(XR.oldNext(x1));
+			updateFromPoint(XR.oldNext(x1), true);
 		else
-			updateFromPoint(XR.oldNext(x2));
+			updateFromPoint(XR.oldNext(x2), true);
+		if(x2 != XR.oldNext(x1) && x1 != XR.oldNext(x2))
+			updateFromPoint(XR.oldNext(x2), true);
 	}
 	
 	public void propagateAddRemovePoints(Point x, Point y, Point z) {
@@ -376,6 +441,11 @@ public class EarliestArrivalTimeVR implements InvariantVR {
 		
 	}
 
+	public void propagateRoutes(ArrayList<Integer> r, ArrayList<Point> removed) {
+		for(int k : r)
+			update(k);
+	}
+
 	
 	public String name() {
 		// TODO Auto-generated method stub
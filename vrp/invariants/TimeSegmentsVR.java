@@ -0,0 +1,411 @@
+package vrp.invariants;
+
+import java.util.*;
+
+import vrp.CBLSVR;
+import vrp.Constants;
+import vrp.InvariantVR;
+import vrp.VRManager;
+import vrp.VarRoutesVR;
+import vrp.entities.ArcWeightsManager;
+import vrp.entities.Point;
+
+// time window summaries of the prefixes and suffixes of the routes [Vidal et al., 2013]: a sequence
+// of points is summarized by its duration D (travel, service and waiting times), its time warp TW
+// (total lateness that cannot be avoided), and the earliest and latest starts E and L of its first
+// service giving this duration and time warp. The summary of the concatenation of two sequences is
+// computed in O(1) from theirs, so that a route made of a prefix, a few points and a suffix of
+// existing routes is checked in constant time.
+// Only the 2-opt* move (CEarliestArrivalTimeVR.evaluateTwoOptMove5) is evaluated with them so far, the
+// other move types still walk the routes. The summaries are recomputed on every move, so that they are
+// only worth maintaining for a search evaluating 2-opt* moves (TruckContainerSolver.twoOptStarSegments)
+public class TimeSegmentsVR implements InvariantVR {
+	VarRoutesVR XR;
+	ArcWeightsManager awm;
+	// indexed by point ordinal (Point.getIndex())
+	int[] earliestAllowedArrivalTime;
+	int[] serviceDuration;
+	// null when the points have no deadline
+	int[] latestAllowedArrivalTime;
+
+	// summary of the sequence from the starting point of the route to the point
+	private double[] prefixD;
+	private double[] prefixTW;
+	private double[] prefixE;
+	private double[] prefixL;
+	// summary of the sequence from the point to the point before the terminating point of the route,
+	// empty for the terminating point
+	private double[] suffixD;
+	private double[] suffixTW;
+	private double[] suffixE;
+	private double[] suffixL;
+
+	// routes modified by the current move
+	private boolean[] marked;
+	private int[] markedRoutes;
+	private int nbMarked;
+
+	// sequence being concatenated by beginPrefix, appendPoint and appendSuffix
+	private double cD;
+	private double cTW;
+	private double cE;
+	private double cL;
+	private int cLast;
+
+	public TimeSegmentsVR(VarRoutesVR XR, ArcWeightsManager awm, int[] earliestAllowedArrivalTime,
+			int[] serviceDuration, int[] latestAllowedArrivalTime){
+		this.XR = XR;
+		this.awm = awm;
+		this.earliestAllowedArrivalTime = earliestAllowedArrivalTime;
+		this.serviceDuration = serviceDuration;
+		this.latestAllowedArrivalTime = latestAllowedArrivalTime;
+		getVRManager().post(this);
+	}
+
+	public VRManager getVRManager() {
+		return XR.getVRManager();
+	}
+
+	public void initPropagation() {
+		int n = XR.getTotalNbPoints();
+		prefixD = new double[n];
+		prefixTW = new double[n];
+		prefixE = new double[n];
+		prefixL = new double[n];
+		suffixD = new double[n];
+		suffixTW = new double[n];
+		suffixE = new double[n];
+		suffixL = new double[n];
+		marked = new boolean[XR.getNbRoutes() + 1];
+		markedRoutes = new int[XR.getNbRoutes()];
+		nbMarked = 0;
+		for(int k = 1; k <= XR.getNbRoutes(); k++)
+			update(k);
+	}
+
+	private double latest(int v){
+		return latestAllowedArrivalTime == null ? Constants.MAX_INT : latestAllowedArrivalTime[v];
+	}
+
+	// the current sequence becomes its concatenation with the sequence (D, TW, E, L) starting at first
+	private void concat(int first, double D, double TW, double E, double L){
+		double delta = cD - cTW + awm.getWeight(cLast, first);
+		double waiting = Math.max(E - delta - cL, 0);
+		double warp = Math.max(cE + delta - L, 0);
+		cD = cD + D + awm.getWeight(cLast, first) + waiting;
+		cTW = cTW + TW + warp;
+		cE = Math.max(E - delta, cE) - waiting;
+		cL = Math.min(L - delta, cL) + warp;
+	}
+
+	private void update(int k){
+		int s = XR.getStartingIndexOfRoute(k);
+		int t = XR.getTerminatingIndexOfRoute(k);
+		cD = serviceDuration[s];
+		cTW = 0;
+		cE = earliestAllowedArrivalTime[s];
+		cL = latest(s);
+		cLast = s;
+		setPrefix(s);
+		for(int v = XR.next(s); v != Constants.NULL_POINT; v = XR.next(v)){
+			concat(v, serviceDuration[v], 0, earliestAllowedArrivalTime[v], latest(v));
+			cLast = v;
+			setPrefix(v);
+		}
+
+		suffixD[t] = suffixTW[t] = suffixE[t] = suffixL[t] = 0;
+		for(int v = XR.prev(t); v != Constants.NULL_POINT; v = XR.prev(v)){
+			cD = serviceDuration[v];
+			cTW = 0;
+			cE = earliestAllowedArrivalTime[v];
+			cL = latest(v);
+			cLast = v;
+			int nv = XR.next(v);
+			if(nv != t)
+				concat(nv, suffixD[nv], suffixTW[nv], suffixE[nv], suffixL[nv]);
+			suffixD[v] = cD;
+			suffixTW[v] = cTW;
+			suffixE[v] = cE;
+			suffixL[v] = cL;
+		}
+	}
+
+	private void setPrefix(int v){
+		prefixD[v] = cD;
+		prefixTW[v] = cTW;
+		prefixE[v] = cE;
+		prefixL[v] = cL;
+	}
+
+	// start a sequence with the prefix of the route of v ending at v
+	public void beginPrefix(Point v){
+		int i = v.getIndex();
+		cD = prefixD[i];
+		cTW = prefixTW[i];
+		cE = prefixE[i];
+		cL = prefixL[i];
+		cLast = i;
+	}
+
+	// append the point v alone to the sequence
+	public void appendPoint(Point v){
+		int i = v.getIndex();
+		concat(i, serviceDuration[i], 0, earliestAllowedArrivalTime[i], latest(i));
+		cLast = i;
+	}
+
+	// append the suffix of the route of v starting at v, without its terminating point
+	public void appendSuffix(Point v){
+		int i = v.getIndex();
+		if(XR.isTerminatingPoint(v))
+			return;
+		concat(i, suffixD[i], suffixTW[i], suffixE[i], suffixL[i]);
+		cLast = XR.prev(XR.getTerminatingIndexOfRoute(XR.route(v)));
+	}
+
+	// time warp of the sequence, 0 if and only if its deadlines can be kept
+	public double getTimeWarp(){
+		return cTW;
+	}
+
+	// time warp of the route of v, in O(1)
+	public double getTimeWarp(int k){
+		getVRManager().flush();
+		return prefixTW[XR.getTerminatingIndexOfRoute(k)];
+	}
+
+	// x and y are on different routes: true if both routes keep their deadlines after
+	// performTwoOptMove5(x, y) exchanges the points following x and y, in O(1)
+	public boolean isFeasibleTwoOptMove5(Point x, Point y){
+		getVRManager().flush();
+		Point tx = XR.getTerminatingPointOfRoute(XR.route(x));
+		Point ty = XR.getTerminatingPointOfRoute(XR.route(y));
+		beginPrefix(x);
+		appendSuffix(XR.next(y));
+		appendPoint(tx);
+		if(cTW > 0)
+			return false;
+		beginPrefix(y);
+		appendSuffix(XR.next(x));
+		appendPoint(ty);
+		return cTW == 0;
+	}
+
+	// the route of x before the move is modified
+	private void mark(Point x){
+		if(x == null || x == CBLSVR.NULL_POINT)
+			return;
+		int k = XR.oldRoute(x);
+		if(k == Constants.NULL_POINT || marked[k])
+			return;
+		marked[k] = true;
+		markedRoutes[nbMarked++] = k;
+	}
+
+	private void updateMarked(){
+		for(int i = 0; i < nbMarked; i++){
+			update(markedRoutes[i]);
+			marked[markedRoutes[i]] = false;
+		}
+		nbMarked = 0;
+	}
+
+	public void propagateTwoOptMoveOneRoute(Point x, Point y) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateOnePointMove(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoPointsMove(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove1(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove2(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove3(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove4(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove5(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove6(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove7(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateTwoOptMove8(Point x, Point y) {
+		mark(x);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateOrOptMove1(Point x1, Point x2, Point y) {
+		mark(x1);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateOrOptMove2(Point x1, Point x2, Point y) {
+		mark(x1);
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove1(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove2(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove3(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove4(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove5(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove6(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove7(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateThreeOptMove8(Point x, Point y, Point z) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateCrossExchangeMove(Point x1, Point y1, Point x2, Point y2) {
+		mark(x1);
+		mark(x2);
+		updateMarked();
+	}
+
+	public void propagateTwoPointsMove(Point x1, Point x2, Point y1, Point y2) {
+		mark(x1);
+		mark(x2);
+		mark(y1);
+		mark(y2);
+		updateMarked();
+	}
+
+	public void propagateThreePointsMove(Point x1, Point x2, Point x3, Point y1, Point y2, Point y3) {
+		mark(x1);
+		mark(x2);
+		mark(x3);
+		mark(y1);
+		mark(y2);
+		mark(y3);
+		updateMarked();
+	}
+
+	public void propagateFourPointsMove(Point x1, Point x2, Point x3, Point x4, Point y1, Point y2, Point y3,
+			Point y4) {
+		mark(x1);
+		mark(x2);
+		mark(x3);
+		mark(x4);
+		mark(y1);
+		mark(y2);
+		mark(y3);
+		mark(y4);
+		updateMarked();
+	}
+
+	public void propagateKPointsMove(ArrayList<Point> x, ArrayList<Point> y) {
+		for(Point p : x)
+			mark(p);
+		for(Point p : y)
+			mark(p);
+		updateMarked();
+	}
+
+	public void propagateAddOnePoint(Point x, Point y) {
+		mark(y);
+		updateMarked();
+	}
+
+	public void propagateRemoveOnePoint(Point x) {
+		mark(x);
+		updateMarked();
+	}
+
+	public void propagateAddTwoPoints(Point x1, Point y1, Point x2, Point y2) {
+		mark(y1);
+		mark(y2);
+		updateMarked();
+	}
+
+	public void propagateRemoveTwoPoints(Point x1, Point x2) {
+		mark(x1);
+		updateMarked();
+	}
+
+	// remove x from its route, add y between z and next[z]
+	public void propagateAddRemovePoints(Point x, Point y, Point z) {
+		mark(x);
+		mark(z);
+		updateMarked();
+	}
+
+	public void propagateRoutes(ArrayList<Integer> r, ArrayList<Point> removed) {
+		for(int k : r)
+			update(k);
+	}
+
+	public String name() {
+		return "TimeSegmentsVR";
+	}
+}